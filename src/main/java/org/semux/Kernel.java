@@ -120,7 +120,7 @@ public class Kernel {
                 coinbase);
         printSystemInfo();
 
-        dbFactory = new LevelDbFactory(config.dataDir());
+        dbFactory = new LevelDbFactory(config.dataDir(), config::dbOptions);
         chain = new BlockchainImpl(config, dbFactory);
         long number = chain.getLatestBlockNumber();
         logger.info("Latest block number = {}", number);
@@ -10,9 +10,11 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
@@ -23,6 +25,8 @@ import org.semux.config.exception.ConfigException;
 import org.semux.core.TransactionType;
 import org.semux.core.Unit;
 import org.semux.crypto.Hash;
+import org.semux.db.DbName;
+import org.semux.db.DbOptions;
 import org.semux.net.NodeManager.Node;
 import org.semux.net.msg.MessageCode;
 import org.semux.util.Bytes;
@@ -66,6 +70,7 @@ public abstract class AbstractConfig implements Config {
     protected int netMaxInboundConnections = 512;
     protected int netMaxInboundConnectionsPerIp = 5;
     protected int netMaxMessageQueueSize = 4096;
+    protected int netMaxBytesPerFlush = 256 * 1024;
     protected int netMaxFrameBodySize = 128 * 1024;
     protected int netMaxPacketSize = 8 * 1024 * 1024;
     protected int netRelayRedundancy = 16;
@@ -107,6 +112,11 @@ public abstract class AbstractConfig implements Config {
     protected int vmMaxStackSize = 1024;
     protected int vmInitHeapSize = 128;
 
+    // =========================
+    // Database
+    // =========================
+    protected Map<DbName, DbOptions> dbOptions = new EnumMap<>(DbName.class);
+
     // =========================
     // UI
     // =========================
@@ -157,8 +167,8 @@ public abstract class AbstractConfig implements Config {
 
     @Override
     public String getPrimaryValidator(List<String> validators, long height, int view) {
-        byte[] key = Bytes.merge(Bytes.of(height), Bytes.of(view));
-        return validators.get((Hash.h256(key)[0] & 0xff) % validators.size());
+        byte[] hash = Hash.h256(Bytes.of(height), Bytes.of(view));
+        return validators.get((hash[0] & 0xff) % validators.size());
     }
 
     @Override
@@ -281,6 +291,11 @@ public abstract class AbstractConfig implements Config {
         return netMaxMessageQueueSize;
     }
 
+    @Override
+    public int netMaxBytesPerFlush() {
+        return netMaxBytesPerFlush;
+    }
+
     @Override
     public int netMaxFrameBodySize() {
         return netMaxFrameBodySize;
@@ -396,6 +411,11 @@ public abstract class AbstractConfig implements Config {
         return vmInitHeapSize;
     }
 
+    @Override
+    public DbOptions dbOptions(DbName name) {
+        return dbOptions.computeIfAbsent(name, DbOptions::defaults);
+    }
+
     @Override
     public Locale locale() {
         return locale;
@@ -462,6 +482,9 @@ public abstract class AbstractConfig implements Config {
                 case "net.maxMessageQueueSize":
                     netMaxMessageQueueSize = Integer.parseInt(props.getProperty(name).trim());
                     break;
+                case "net.maxBytesPerFlush":
+                    netMaxBytesPerFlush = Integer.parseInt(props.getProperty(name).trim());
+                    break;
                 case "net.relayRedundancy":
                     netRelayRedundancy = Integer.parseInt(props.getProperty(name).trim());
                     break;
@@ -507,7 +530,9 @@ public abstract class AbstractConfig implements Config {
                     break;
                 }
                 default:
-                    logger.error("Unsupported option: {} = {}", name, props.getProperty(name));
+                    if (!setDbOption(name, props.getProperty(name).trim())) {
+                        logger.error("Unsupported option: {} = {}", name, props.getProperty(name));
+                    }
                     break;
                 }
             }
@@ -516,6 +541,28 @@ public abstract class AbstractConfig implements Config {
         }
     }
 
+    /**
+     * Sets a database option, in the format of
+     * <code>db.[database].[option] = [value]</code>.
+     *
+     * @param name
+     * @param value
+     * @return whether the option is supported
+     */
+    protected boolean setDbOption(String name, String value) {
+        String[] tokens = name.split("\\.");
+        if (tokens.length != 3 || !tokens[0].equals("db")) {
+            return false;
+        }
+
+        for (DbName db : DbName.values()) {
+            if (db.name().equalsIgnoreCase(tokens[1])) {
+                return dbOptions(db).set(tokens[2], value);
+            }
+        }
+        return false;
+    }
+
     private void validate() {
         if (apiEnabled &&
                 ("YOUR_API_USERNAME".equals(apiUsername) || "YOUR_API_PASSWORD".equals(apiPassword))) {
@@ -14,6 +14,8 @@ import java.util.Set;
 
 import org.semux.Network;
 import org.semux.core.TransactionType;
+import org.semux.db.DbName;
+import org.semux.db.DbOptions;
 import org.semux.net.CapabilitySet;
 import org.semux.net.NodeManager.Node;
 import org.semux.net.msg.MessageCode;
@@ -207,6 +209,15 @@ public interface Config {
      */
     int netMaxMessageQueueSize();
 
+    /**
+     * Returns the max size of the messages written to a channel in one flush, in
+     * bytes. The rest of the queue is flushed after the other channels of the
+     * same event loop.
+     *
+     * @return
+     */
+    int netMaxBytesPerFlush();
+
     /**
      * Returns the max size of frame body, in bytes.
      *
@@ -381,6 +392,18 @@ public interface Config {
      */
     int vmInitialHeapSize();
 
+    // =========================
+    // Database
+    // =========================
+
+    /**
+     * Returns the tuning options of a database.
+     *
+     * @param name
+     * @return
+     */
+    DbOptions dbOptions(DbName name);
+
     // =========================
     // UI
     // =========================
@@ -6,7 +6,10 @@
  */
 package org.semux.config;
 
+import static org.semux.net.Capability.BATCH_SYNC;
+import static org.semux.net.Capability.COMPACT_PROPOSAL;
 import static org.semux.net.Capability.SEM_TESTNET;
+import static org.semux.net.Capability.TX_INVENTORY;
 
 import org.semux.Network;
 import org.semux.net.CapabilitySet;
@@ -20,6 +23,6 @@ public class DevnetConfig extends AbstractConfig {
 
     @Override
     public CapabilitySet capabilitySet() {
-        return CapabilitySet.of(SEM_TESTNET);
+        return CapabilitySet.of(SEM_TESTNET, BATCH_SYNC, TX_INVENTORY, COMPACT_PROPOSAL);
     }
 }
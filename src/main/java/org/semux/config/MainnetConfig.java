@@ -6,7 +6,10 @@
  */
 package org.semux.config;
 
+import static org.semux.net.Capability.BATCH_SYNC;
+import static org.semux.net.Capability.COMPACT_PROPOSAL;
 import static org.semux.net.Capability.SEM;
+import static org.semux.net.Capability.TX_INVENTORY;
 
 import org.semux.Network;
 import org.semux.net.CapabilitySet;
@@ -19,6 +22,6 @@ public class MainnetConfig extends AbstractConfig {
 
     @Override
     public CapabilitySet capabilitySet() {
-        return CapabilitySet.of(SEM);
+        return CapabilitySet.of(SEM, BATCH_SYNC, TX_INVENTORY, COMPACT_PROPOSAL);
     }
 }
\ No newline at end of file
@@ -7,11 +7,14 @@
 package org.semux.consensus;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalLong;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
 import java.util.stream.Collectors;
@@ -32,18 +35,22 @@ import org.semux.core.TransactionExecutor;
 import org.semux.core.TransactionResult;
 import org.semux.core.state.AccountState;
 import org.semux.core.state.DelegateState;
-import org.semux.crypto.Hash;
 import org.semux.crypto.Hex;
 import org.semux.crypto.Key;
 import org.semux.crypto.Key.Signature;
+import org.semux.crypto.cache.SignatureCache;
+import org.semux.net.Capability;
 import org.semux.net.Channel;
 import org.semux.net.ChannelManager;
 import org.semux.net.msg.Message;
 import org.semux.net.msg.MessageCode;
 import org.semux.net.msg.ReasonCode;
+import org.semux.net.msg.consensus.CompactProposalMessage;
+import org.semux.net.msg.consensus.GetProposalTransactionsMessage;
 import org.semux.net.msg.consensus.NewHeightMessage;
 import org.semux.net.msg.consensus.NewViewMessage;
 import org.semux.net.msg.consensus.ProposalMessage;
+import org.semux.net.msg.consensus.ProposalTransactionsMessage;
 import org.semux.net.msg.consensus.VoteMessage;
 import org.semux.util.ArrayUtil;
 import org.semux.util.ByteArray;
@@ -111,9 +118,18 @@ public class SemuxBft implements Consensus {
     protected Proof proof;
     protected Proposal proposal;
 
-    protected Cache<ByteArray, Block> validBlocks = Caffeine.newBuilder().maximumSize(8).build();
+    /**
+     * Compact proposals waiting for their missing transactions, by peer ID.
+     */
+    protected Map<String, PartialProposal> partialProposals = new ConcurrentHashMap<>();
+
+    /**
+     * Validated blocks, with the state updates of their execution, by block hash.
+     */
+    protected Cache<ByteArray, ValidBlock> validBlocks = Caffeine.newBuilder().maximumSize(8).build();
 
     protected List<String> validators;
+    protected Set<ByteArray> validatorAddresses;
     protected List<Channel> activeValidators;
     protected long lastUpdate;
 
@@ -267,6 +283,7 @@ public class SemuxBft implements Consensus {
         view = 0;
         proof = new Proof(height, view);
         proposal = null;
+        partialProposals.clear();
 
         // update validators
         updateValidators();
@@ -276,6 +293,8 @@ public class SemuxBft implements Consensus {
         clearTimerAndEvents();
 
         logger.info("Entered new_height: height = {}, # validators = {}", height, validators.size());
+        logger.debug("Signature cache: hits = {}, misses = {}", SignatureCache.getHitCount(),
+                SignatureCache.getMissCount());
         if (isValidator()) {
             if (this.config.network() == Network.MAINNET && !SystemUtil.bench()) {
                 logger.error("You need to upgrade your computer to join the BFT consensus!");
@@ -409,8 +428,12 @@ public class SemuxBft implements Consensus {
                 precommitVotes, commitVotes);
 
         Optional<byte[]> blockHash = precommitVotes.anyApproved();
-        Block block;
-        if (blockHash.isPresent() && (block = validBlocks.getIfPresent(ByteArray.of(blockHash.get()))) != null) {
+        ValidBlock validBlock;
+        if (blockHash.isPresent()
+                && (validBlock = validBlocks.getIfPresent(ByteArray.of(blockHash.get()))) != null) {
+            validBlocks.invalidate(ByteArray.of(blockHash.get()));
+            Block block = validBlock.block;
+
             // [1] update view and votes
             List<Signature> votes = new ArrayList<>();
             for (Vote vote : precommitVotes.getApprovals(blockHash.get())) {
@@ -421,7 +444,7 @@ public class SemuxBft implements Consensus {
 
             // [2] add the block to chain
             logger.info(block.toString());
-            applyBlock(block);
+            applyBlock(validBlock);
         } else {
             sync(height + 1);
         }
@@ -511,10 +534,6 @@ public class SemuxBft implements Consensus {
             }
             logger.trace("Proposal accepted: height = {}, view = {}", p.getHeight(), p.getView());
 
-            // forward proposal
-            ProposalMessage msg = new ProposalMessage(p);
-            broadcaster.broadcast(msg);
-
             if (view == p.getView()) {
                 proposal = p;
             } else {
@@ -522,6 +541,113 @@ public class SemuxBft implements Consensus {
                 logger.debug("Switching view because of PROPOSE message");
                 jumpToView(p.getView(), p.getProof(), p);
             }
+
+            // forward proposal, after it's kept to serve the missing transactions
+            ProposalMessage msg = new ProposalMessage(p);
+            broadcaster.broadcast(msg);
+        }
+    }
+
+    /**
+     * Rebuilds a compact proposal from the pending transactions, or requests the
+     * missing ones from the peer.
+     *
+     * @param channel
+     * @param m
+     */
+    protected void onCompactProposal(Channel channel, CompactProposalMessage m) {
+        Proposal current = proposal;
+        if (current != null && current.getHeight() == m.getHeight() && current.getView() == m.getView()) {
+            return;
+        }
+
+        long[] shortIds = m.getShortIds();
+        Transaction[] txs = new Transaction[shortIds.length];
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < shortIds.length; i++) {
+            txs[i] = pendingMgr.getTransactionByShortId(shortIds[i]);
+            if (txs[i] == null) {
+                missing.add(i);
+            }
+        }
+
+        PartialProposal pp = new PartialProposal(m, txs);
+        if (missing.isEmpty()) {
+            completeProposal(channel, pp);
+        } else {
+            requestTransactions(channel, pp, missing.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    /**
+     * Fills in the missing transactions of a compact proposal.
+     *
+     * @param channel
+     * @param m
+     */
+    protected void onProposalTransactions(Channel channel, ProposalTransactionsMessage m) {
+        PartialProposal pp = partialProposals.remove(channel.getRemotePeer().getPeerId());
+        if (pp == null || pp.msg.getHeight() != m.getHeight() || pp.msg.getView() != m.getView()) {
+            return;
+        }
+
+        List<Transaction> txs = m.getTransactions();
+        if (txs.size() != pp.missing.length) {
+            logger.debug("Invalid proposal transactions from {}", channel.getRemotePeer().getPeerId());
+            channel.getMessageQueue().disconnect(ReasonCode.BAD_PEER);
+            return;
+        }
+        for (int i = 0; i < pp.missing.length; i++) {
+            pp.txs[pp.missing[i]] = txs.get(i);
+        }
+
+        completeProposal(channel, pp);
+    }
+
+    /**
+     * Serves the transactions of the current proposal.
+     *
+     * @param channel
+     * @param m
+     */
+    protected void onGetProposalTransactions(Channel channel, GetProposalTransactionsMessage m) {
+        Proposal p = proposal;
+        if (p == null || p.getHeight() != m.getHeight() || p.getView() != m.getView()) {
+            return;
+        }
+
+        List<Transaction> txs = new ArrayList<>();
+        for (int index : m.getIndexes()) {
+            if (index < 0 || index >= p.getTransactions().size()) {
+                return;
+            }
+            txs.add(p.getTransactions().get(index));
+        }
+        channel.getMessageQueue().sendMessage(new ProposalTransactionsMessage(m.getHeight(), m.getView(), txs));
+    }
+
+    private void requestTransactions(Channel channel, PartialProposal pp, int[] missing) {
+        pp.missing = missing;
+        partialProposals.put(channel.getRemotePeer().getPeerId(), pp);
+        channel.getMessageQueue()
+                .sendMessage(new GetProposalTransactionsMessage(pp.msg.getHeight(), pp.msg.getView(), missing));
+    }
+
+    private void completeProposal(Channel channel, PartialProposal pp) {
+        CompactProposalMessage m = pp.msg;
+        Proposal p = new Proposal(m.getProof(), m.getBlockHeader(), Arrays.asList(pp.txs), m.getSignature());
+
+        if (p.validate()) {
+            events.add(new Event(Event.Type.PROPOSAL, p));
+        } else if (!pp.refetched) {
+            // a short ID may match another transaction, fetch them all
+            pp.refetched = true;
+            int[] all = new int[pp.txs.length];
+            Arrays.setAll(all, i -> i);
+            requestTransactions(channel, pp, all);
+        } else {
+            logger.debug("Invalid compact proposal from {}", channel.getRemotePeer().getPeerId());
+            channel.getMessageQueue().disconnect(ReasonCode.BAD_PEER);
         }
     }
 
@@ -633,6 +759,27 @@ public class SemuxBft implements Consensus {
             }
             break;
         }
+        case BFT_COMPACT_PROPOSAL: {
+            CompactProposalMessage m = (CompactProposalMessage) msg;
+
+            if (m.getHeight() == height) {
+                if (m.validate()) {
+                    onCompactProposal(channel, m);
+                } else {
+                    logger.debug("Invalid compact proposal from {}", channel.getRemotePeer().getPeerId());
+                    channel.getMessageQueue().disconnect(ReasonCode.BAD_PEER);
+                }
+            }
+            break;
+        }
+        case BFT_GET_PROPOSAL_TXS: {
+            onGetProposalTransactions(channel, (GetProposalTransactionsMessage) msg);
+            break;
+        }
+        case BFT_PROPOSAL_TXS: {
+            onProposalTransactions(channel, (ProposalTransactionsMessage) msg);
+            break;
+        }
         case BFT_VOTE: {
             VoteMessage m = (VoteMessage) msg;
             Vote vote = m.getVote();
@@ -658,6 +805,7 @@ public class SemuxBft implements Consensus {
      */
     protected void updateValidators() {
         validators = chain.getValidators();
+        validatorAddresses = validators.stream().map(v -> ByteArray.of(Hex.decode(v))).collect(Collectors.toSet());
         activeValidators = channelMgr.getActiveChannels(validators);
         lastUpdate = System.currentTimeMillis();
     }
@@ -703,7 +851,7 @@ public class SemuxBft implements Consensus {
      * @return
      */
     protected boolean isFromValidator(Signature sig) {
-        return validators.contains(Hex.encode(Hash.h160(sig.getPublicKey())));
+        return validatorAddresses.contains(ByteArray.of(sig.getAddress()));
     }
 
     /**
@@ -731,15 +879,32 @@ public class SemuxBft implements Consensus {
     protected Block proposeBlock() {
         long t1 = System.currentTimeMillis();
 
-        // fetch pending transactions
+        // fetch pending transactions, by fee rate
         final List<PendingManager.PendingTransaction> pending = pendingMgr
-                .getPendingTransactions(config.maxBlockTransactionsSize());
-        final List<Transaction> pendingTxs = pending.stream()
-                .map(tx -> tx.transaction)
-                .collect(Collectors.toList());
-        final List<TransactionResult> pendingResults = pending.stream()
-                .map(tx -> tx.transactionResult)
-                .collect(Collectors.toList());
+                .getBlockTemplate(config.maxBlockTransactionsSize());
+        final List<Transaction> pendingTxs = new ArrayList<>();
+        final List<TransactionResult> pendingResults = new ArrayList<>();
+
+        // execute again, as the transactions of different senders may be reordered
+        AccountState as = chain.getAccountState().track();
+        DelegateState ds = chain.getDelegateState().track();
+        TransactionExecutor exec = new TransactionExecutor(config);
+        for (PendingManager.PendingTransaction tx : pending) {
+            AccountState as2 = as.track();
+            DelegateState ds2 = ds.track();
+            TransactionResult result = exec.execute(tx.transaction, as2, ds2);
+            if (result.isSuccess()) {
+                as2.commit();
+                ds2.commit();
+                pendingTxs.add(tx.transaction);
+                pendingResults.add(result);
+            } else {
+                as2.rollback();
+                ds2.rollback();
+            }
+        }
+        as.rollback();
+        ds.rollback();
 
         // compute roots
         byte[] transactionsRoot = MerkleUtil.computeTransactionsRoot(pendingTxs);
@@ -811,8 +976,9 @@ public class SemuxBft implements Consensus {
         long t2 = System.currentTimeMillis();
         logger.debug("Block validation: # txs = {}, time = {} ms", transactions.size(), t2 - t1);
 
+        // keep the updates, which are applied if the block gets finalized
         Block block = new Block(header, transactions, results);
-        validBlocks.put(ByteArray.of(block.getHash()), block);
+        validBlocks.put(ByteArray.of(block.getHash()), new ValidBlock(block, as, ds));
         return true;
     }
 
@@ -843,11 +1009,12 @@ public class SemuxBft implements Consensus {
     }
 
     /**
-     * Apply a block to the chain.
+     * Apply a validated block to the chain.
      * 
-     * @param block
+     * @param validBlock
      */
-    protected void applyBlock(Block block) {
+    protected void applyBlock(ValidBlock validBlock) {
+        Block block = validBlock.block;
         BlockHeader header = block.getHeader();
         List<Transaction> transactions = block.getTransactions();
         long number = header.getNumber();
@@ -862,15 +1029,23 @@ public class SemuxBft implements Consensus {
 
         // [2] check transactions and results, skipped
 
-        AccountState as = chain.getAccountState().track();
-        DelegateState ds = chain.getDelegateState().track();
-        TransactionExecutor exec = new TransactionExecutor(config);
+        // [3] evaluate all transactions, unless the updates of the validation are
+        // still on top of the chain state
+        AccountState as;
+        DelegateState ds;
+        if (Arrays.equals(header.getParentHash(), chain.getLatestBlock().getHash())) {
+            as = validBlock.accountState;
+            ds = validBlock.delegateState;
+        } else {
+            as = chain.getAccountState().track();
+            ds = chain.getDelegateState().track();
+            TransactionExecutor exec = new TransactionExecutor(config);
 
-        // [3] evaluate all transactions
-        List<TransactionResult> results = exec.execute(transactions, as, ds);
-        if (!Block.validateResults(header, results)) {
-            logger.debug("Invalid transactions");
-            return;
+            List<TransactionResult> results = exec.execute(transactions, as, ds);
+            if (!Block.validateResults(header, results)) {
+                logger.debug("Invalid transactions");
+                return;
+            }
         }
 
         // [4] evaluate votes, skipped
@@ -980,6 +1155,7 @@ public class SemuxBft implements Consensus {
             while (!Thread.currentThread().isInterrupted()) {
                 try {
                     Message msg = queue.take();
+                    Message compact = null;
 
                     // thread-safety via volatile
                     List<Channel> channels = activeValidators;
@@ -988,7 +1164,16 @@ public class SemuxBft implements Consensus {
                         for (int i = 0; i < indices.length && i < config.netRelayRedundancy(); i++) {
                             Channel c = channels.get(indices[i]);
                             if (c.isActive()) {
-                                c.getMessageQueue().sendMessage(msg);
+                                // proposals are sent in compact form to the peers which support it
+                                if (msg instanceof ProposalMessage && c.getRemotePeer().getCapabilities()
+                                        .isSupported(Capability.COMPACT_PROPOSAL)) {
+                                    if (compact == null) {
+                                        compact = new CompactProposalMessage(((ProposalMessage) msg).getProposal());
+                                    }
+                                    c.getMessageQueue().sendMessage(compact);
+                                } else {
+                                    c.getMessageQueue().sendMessage(msg);
+                                }
                             }
                         }
                     }
@@ -1026,6 +1211,49 @@ public class SemuxBft implements Consensus {
         }
     }
 
+    /**
+     * A validated block, and the state updates of its transactions, tracked on
+     * the chain state when its parent was the latest block.
+     */
+    protected static class ValidBlock {
+        private Block block;
+        private AccountState accountState;
+        private DelegateState delegateState;
+
+        public ValidBlock(Block block, AccountState accountState, DelegateState delegateState) {
+            this.block = block;
+            this.accountState = accountState;
+            this.delegateState = delegateState;
+        }
+
+        public Block getBlock() {
+            return block;
+        }
+
+        public AccountState getAccountState() {
+            return accountState;
+        }
+
+        public DelegateState getDelegateState() {
+            return delegateState;
+        }
+    }
+
+    /**
+     * A compact proposal, and the transactions found so far.
+     */
+    protected static class PartialProposal {
+        private CompactProposalMessage msg;
+        private Transaction[] txs;
+        private int[] missing;
+        private boolean refetched;
+
+        public PartialProposal(CompactProposalMessage msg, Transaction[] txs) {
+            this.msg = msg;
+            this.txs = txs;
+        }
+    }
+
     public static class Event {
         public enum Type {
             /**
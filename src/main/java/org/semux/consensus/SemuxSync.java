@@ -12,6 +12,7 @@ import java.math.MathContext;
 import java.net.InetSocketAddress;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -22,7 +23,10 @@ import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
@@ -31,7 +35,6 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
-import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.tuple.Pair;
 import org.semux.Kernel;
@@ -48,12 +51,14 @@ import org.semux.core.state.DelegateState;
 import org.semux.crypto.Hex;
 import org.semux.crypto.Key;
 import org.semux.crypto.Key.Signature;
+import org.semux.net.Capability;
 import org.semux.net.Channel;
 import org.semux.net.ChannelManager;
 import org.semux.net.msg.Message;
 import org.semux.net.msg.ReasonCode;
 import org.semux.net.msg.consensus.BlockMessage;
 import org.semux.net.msg.consensus.GetBlockMessage;
+import org.semux.net.msg.consensus.GetBlocksMessage;
 import org.semux.util.TimeUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,6 +70,16 @@ import org.slf4j.LoggerFactory;
  * The {@link #download()} and the {@link #process()} methods are not
  * synchronized and need to be executed by one single thread at anytime.
  * <p>
+ * Blocks are requested in ranges, see {@link GetBlocksMessage}, from all the
+ * active peers in parallel. Each peer has a sliding window of outstanding
+ * blocks, which is sized by the peer's measured throughput, while
+ * {@link #process()} keeps importing the downloaded blocks in order.
+ * <p>
+ * Importing is pipelined: the stateless checks, see
+ * {@link #preValidateBlock(Block)}, run ahead on a worker pool for the next
+ * {@value #MAX_PREVALIDATED_BLOCKS} blocks, while the current block is executed
+ * and committed.
+ * <p>
  * The download/unfinished/pending queues are protected by lock.
  */
 public class SemuxSync implements SyncManager {
@@ -82,13 +97,16 @@ public class SemuxSync implements SyncManager {
 
     private static final ScheduledExecutorService timer1 = Executors.newSingleThreadScheduledExecutor(factory);
     private static final ScheduledExecutorService timer2 = Executors.newSingleThreadScheduledExecutor(factory);
+    private static final ExecutorService workers = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), factory);
 
     private static final long MAX_DOWNLOAD_TIME = 10L * 1000L; // 10 seconds
 
-    private static final int MAX_UNFINISHED_JOBS = 16;
+    private static final int MAX_UNFINISHED_JOBS = 1024;
 
     private static final int MAX_QUEUED_BLOCKS = 8192;
     private static final int MAX_PENDING_BLOCKS = 512;
+    private static final int MAX_PREVALIDATED_BLOCKS = 32;
 
     private static final Random random = new Random();
 
@@ -101,11 +119,15 @@ public class SemuxSync implements SyncManager {
     // task queues
     private AtomicLong latestQueuedTask = new AtomicLong();
     private TreeSet<Long> toDownload = new TreeSet<>();
-    private Map<Long, Long> toComplete = new HashMap<>();
+    private Map<Long, Pair<Channel, Long>> toComplete = new HashMap<>();
+    private Map<Channel, DownloadWindow> windows = new HashMap<>();
     private TreeSet<Pair<Block, Channel>> toProcess = new TreeSet<>(
             Comparator.comparingLong(o -> o.getKey().getNumber()));
     private final Object lock = new Object();
 
+    // pre-validation results, only accessed by the process thread
+    private Map<Long, Pair<Block, Future<Boolean>>> toValidate = new HashMap<>();
+
     // current and target heights
     private AtomicLong begin = new AtomicLong();
     private AtomicLong current = new AtomicLong();
@@ -134,6 +156,8 @@ public class SemuxSync implements SyncManager {
                 toDownload.clear();
                 toComplete.clear();
                 toProcess.clear();
+                windows.clear();
+                toValidate.clear();
 
                 begin.set(chain.getLatestBlockNumber() + 1);
                 current.set(chain.getLatestBlockNumber() + 1);
@@ -196,7 +220,7 @@ public class SemuxSync implements SyncManager {
                 if (toDownload.remove(block.getNumber())) {
                     growToDownloadQueue();
                 }
-                toComplete.remove(block.getNumber());
+                completeTask(block.getNumber(), channel);
                 toProcess.add(Pair.of(block, channel));
             }
             break;
@@ -217,60 +241,136 @@ public class SemuxSync implements SyncManager {
         }
 
         synchronized (lock) {
-            // filter all expired tasks
+            // filter all expired tasks, and the tasks assigned to disconnected peers
             long now = System.currentTimeMillis();
-            Iterator<Entry<Long, Long>> itr = toComplete.entrySet().iterator();
+            Set<DownloadWindow> expired = new HashSet<>();
+            Iterator<Entry<Long, Pair<Channel, Long>>> itr = toComplete.entrySet().iterator();
             while (itr.hasNext()) {
-                Entry<Long, Long> entry = itr.next();
+                Entry<Long, Pair<Channel, Long>> entry = itr.next();
+                Channel c = entry.getValue().getKey();
 
-                if (entry.getValue() + MAX_DOWNLOAD_TIME < now) {
+                if (!c.isActive() || entry.getValue().getValue() + MAX_DOWNLOAD_TIME < now) {
                     logger.debug("Downloading of block #{} has expired", entry.getKey());
                     toDownload.add(entry.getKey());
                     itr.remove();
+
+                    DownloadWindow window = windows.get(c);
+                    if (window != null) {
+                        window.onCompleted(false, now);
+                        expired.add(window);
+                    }
                 }
             }
+            expired.forEach(DownloadWindow::shrink);
+            windows.keySet().removeIf(c -> !c.isActive());
+
+            // fill the window of every peer, in random order
+            List<Channel> channels = channelMgr.getActiveChannels();
+            Collections.shuffle(channels, random);
+            for (Channel c : channels) {
+                if (!download(c, now)) {
+                    break;
+                }
+            }
+        }
+    }
 
+    /**
+     * Requests blocks from the given channel until its window is full. Must be
+     * called while holding the lock.
+     *
+     * @param c
+     * @param now
+     * @return false if no more blocks can be requested from any peer, otherwise
+     *         true
+     */
+    private boolean download(Channel c, long now) {
+        DownloadWindow window = windows.computeIfAbsent(c, k -> new DownloadWindow());
+        boolean batch = c.getRemotePeer().getCapabilities().isSupported(Capability.BATCH_SYNC);
+
+        while (window.available() > 0) {
             // quit if too many unfinished jobs
-            if (toComplete.size() > MAX_UNFINISHED_JOBS) {
+            if (toComplete.size() >= MAX_UNFINISHED_JOBS) {
                 logger.trace("Max unfinished jobs reached");
-                return;
+                return false;
             }
 
             // quit if no more tasks
             if (toDownload.isEmpty()) {
-                return;
+                return false;
             }
-            Long task = toDownload.first();
+            long from = toDownload.first();
 
             // quit if too many pending blocks
-            if (toProcess.size() > MAX_PENDING_BLOCKS && task > toProcess.first().getKey().getNumber()) {
+            if (toProcess.size() > MAX_PENDING_BLOCKS && from > toProcess.first().getKey().getNumber()) {
                 logger.trace("Pending block queue is full");
-                return;
+                return false;
             }
 
-            // get idle channels
-            List<Channel> channels = channelMgr.getIdleChannels().stream()
-                    .filter(channel -> channel.getRemotePeer().getLatestBlockNumber() >= task)
-                    .collect(Collectors.toList());
-            logger.trace("Idle peers = {}", channels.size());
+            // skip the peer if it doesn't have the block
+            long latest = c.getRemotePeer().getLatestBlockNumber();
+            if (latest < from) {
+                return true;
+            }
 
-            // quit if no idle channels.
-            if (channels.isEmpty()) {
-                return;
+            if (!batch) {
+                // legacy peers are asked for one block at a time
+                if (window.getOutstanding() == 0 && c.getMessageQueue().isIdle()) {
+                    logger.debug("Request block #{} from channel = {}", from, c.getId());
+                    c.getMessageQueue().sendMessage(new GetBlockMessage(from));
+                    addTask(from, c, window, now);
+                }
+                return true;
             }
 
-            // pick a random channel
-            Channel c = channels.get(random.nextInt(channels.size()));
+            // request a consecutive range of blocks
+            int limit = Math.min(Math.min(window.available(), GetBlocksMessage.MAX_BLOCKS_PER_REQUEST),
+                    MAX_UNFINISHED_JOBS - toComplete.size());
+            long to = from;
+            while (to < latest && to - from + 1 < limit && toDownload.contains(to + 1)) {
+                to++;
+            }
+
+            logger.debug("Request blocks #{} - #{} from channel = {}", from, to, c.getId());
+            c.getMessageQueue().sendMessage(new GetBlocksMessage(from, to));
+            for (long task = from; task <= to; task++) {
+                addTask(task, c, window, now);
+            }
+        }
 
-            // request the block
-            if (c.getRemotePeer().getLatestBlockNumber() >= task) {
-                logger.debug("Request block #{} from channel = {}", task, c.getId());
-                c.getMessageQueue().sendMessage(new GetBlockMessage(task));
+        return true;
+    }
 
-                if (toDownload.remove(task)) {
-                    growToDownloadQueue();
-                }
-                toComplete.put(task, System.currentTimeMillis());
+    /**
+     * Moves a task from the download queue to the unfinished queue.
+     *
+     * @param task
+     * @param c
+     * @param window
+     * @param now
+     */
+    private void addTask(long task, Channel c, DownloadWindow window, long now) {
+        if (toDownload.remove(task)) {
+            growToDownloadQueue();
+        }
+        toComplete.put(task, Pair.of(c, now));
+        window.onRequested(now);
+    }
+
+    /**
+     * Removes a task from the unfinished queue, and updates the window of the
+     * peer it was assigned to.
+     *
+     * @param task
+     * @param from
+     *            the channel which delivered the block, or null
+     */
+    private void completeTask(long task, Channel from) {
+        Pair<Channel, Long> p = toComplete.remove(task);
+        if (p != null) {
+            DownloadWindow window = windows.get(p.getKey());
+            if (window != null) {
+                window.onCompleted(p.getKey() == from, System.currentTimeMillis());
             }
         }
     }
@@ -299,51 +399,61 @@ public class SemuxSync implements SyncManager {
     }
 
     private void process() {
-        if (!isRunning()) {
-            return;
-        }
-
-        long latest = chain.getLatestBlockNumber();
-        if (latest + 1 >= target.get()) {
-            stop();
-            return; // This is important because stop() only notify
-        }
+        while (isRunning()) {
+            long latest = chain.getLatestBlockNumber();
+            if (latest + 1 >= target.get()) {
+                stop();
+                return; // This is important because stop() only notify
+            }
 
-        Pair<Block, Channel> pair = null;
-        synchronized (lock) {
-            Iterator<Pair<Block, Channel>> iterator = toProcess.iterator();
-            while (iterator.hasNext()) {
-                Pair<Block, Channel> p = iterator.next();
-
-                if (p.getKey().getNumber() <= latest) {
-                    iterator.remove();
-                } else if (p.getKey().getNumber() == latest + 1) {
-                    iterator.remove();
-                    pair = p;
-                    break;
-                } else {
-                    break;
+            Pair<Block, Channel> pair = null;
+            synchronized (lock) {
+                Iterator<Pair<Block, Channel>> iterator = toProcess.iterator();
+                while (iterator.hasNext()) {
+                    Pair<Block, Channel> p = iterator.next();
+                    long number = p.getKey().getNumber();
+
+                    if (number <= latest) {
+                        iterator.remove();
+                    } else if (number <= latest + MAX_PREVALIDATED_BLOCKS) {
+                        if (number == latest + 1) {
+                            iterator.remove();
+                            pair = p;
+                        }
+                        preValidate(p.getKey());
+                    } else {
+                        break;
+                    }
                 }
             }
-        }
+            toValidate.keySet().removeIf(number -> number <= latest);
+
+            if (pair == null) {
+                return;
+            }
 
-        if (pair != null) {
-            logger.info("{}", pair.getKey());
+            Block block = pair.getKey();
+            logger.info("{}", block);
 
-            if (validateApplyBlock(pair.getKey())) {
+            Boolean preValidated = awaitPreValidation(block);
+            if (preValidated == null) {
+                return;
+            }
+
+            if (preValidated && validateApplyBlock(block, true)) {
                 synchronized (lock) {
-                    if (toDownload.remove(pair.getKey().getNumber())) {
+                    if (toDownload.remove(block.getNumber())) {
                         growToDownloadQueue();
                     }
-                    toComplete.remove(pair.getKey().getNumber());
+                    completeTask(block.getNumber(), null);
                 }
             } else {
                 InetSocketAddress a = pair.getValue().getRemoteAddress();
                 logger.info("Invalid block from {}:{}", a.getAddress().getHostAddress(), a.getPort());
 
                 synchronized (lock) {
-                    toDownload.add(pair.getKey().getNumber());
-                    toComplete.remove(pair.getKey().getNumber());
+                    toDownload.add(block.getNumber());
+                    completeTask(block.getNumber(), null);
                 }
 
                 // disconnect if the peer sends us invalid block
@@ -352,6 +462,38 @@ public class SemuxSync implements SyncManager {
         }
     }
 
+    /**
+     * Submits the stateless checks of a block to the worker pool, unless they've
+     * been submitted already.
+     *
+     * @param block
+     */
+    private void preValidate(Block block) {
+        Pair<Block, Future<Boolean>> p = toValidate.get(block.getNumber());
+        if (p == null || p.getKey() != block) {
+            toValidate.put(block.getNumber(), Pair.of(block, workers.submit(() -> preValidateBlock(block))));
+        }
+    }
+
+    /**
+     * Waits for the stateless checks of a block.
+     *
+     * @param block
+     * @return the validation result, or null if interrupted
+     */
+    private Boolean awaitPreValidation(Block block) {
+        Pair<Block, Future<Boolean>> p = toValidate.remove(block.getNumber());
+        try {
+            return (p != null && p.getKey() == block) ? p.getValue().get() : preValidateBlock(block);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            logger.warn("Failed to validate block #{}", block.getNumber(), e);
+            return false;
+        }
+    }
+
     /**
      * Check if a block is valid, and apply to the chain if yes.
      *
@@ -359,13 +501,56 @@ public class SemuxSync implements SyncManager {
      * @return
      */
     protected boolean validateApplyBlock(Block block) {
+        return validateApplyBlock(block, false);
+    }
+
+    /**
+     * Check if a block is valid, and apply to the chain if yes.
+     *
+     * @param block
+     * @param preValidated
+     *            whether {@link #preValidateBlock(Block)} has passed
+     * @return
+     */
+    protected boolean validateApplyBlock(Block block, boolean preValidated) {
         AccountState as = chain.getAccountState().track();
         DelegateState ds = chain.getDelegateState().track();
 
-        return validateBlock(block, as, ds) && applyBlock(block, as, ds);
+        return validateBlock(block, as, ds, preValidated) && applyBlock(block, as, ds);
+    }
+
+    /**
+     * Runs the checks which don't depend on the chain state: transactions,
+     * Merkle roots and vote signatures. It's safe to run them for several
+     * blocks in parallel.
+     *
+     * @param block
+     * @return
+     */
+    protected boolean preValidateBlock(Block block) {
+        BlockHeader header = block.getHeader();
+        List<Transaction> transactions = block.getTransactions();
+
+        // [2] check transactions and results
+        if (!Block.validateTransactions(header, transactions, config.network())
+                || transactions.stream().mapToInt(Transaction::size).sum() > config.maxBlockTransactionsSize()) {
+            logger.debug("Invalid block transactions");
+            return false;
+        }
+        if (!Block.validateResults(header, block.getResults())) {
+            logger.debug("Invalid results");
+            return false;
+        }
+
+        return validateBlockVoteSignatures(block);
     }
 
     protected boolean validateBlock(Block block, AccountState asSnapshot, DelegateState dsSnapshot) {
+        return validateBlock(block, asSnapshot, dsSnapshot, false);
+    }
+
+    protected boolean validateBlock(Block block, AccountState asSnapshot, DelegateState dsSnapshot,
+            boolean preValidated) {
         BlockHeader header = block.getHeader();
         List<Transaction> transactions = block.getTransactions();
 
@@ -377,13 +562,7 @@ public class SemuxSync implements SyncManager {
         }
 
         // [2] check transactions and results
-        if (!Block.validateTransactions(header, transactions, config.network())
-                || transactions.stream().mapToInt(Transaction::size).sum() > config.maxBlockTransactionsSize()) {
-            logger.debug("Invalid block transactions");
-            return false;
-        }
-        if (!Block.validateResults(header, block.getResults())) {
-            logger.debug("Invalid results");
+        if (!preValidated && !preValidateBlock(block)) {
             return false;
         }
 
@@ -402,11 +581,20 @@ public class SemuxSync implements SyncManager {
         }
 
         // [4] evaluate votes
-        return validateBlockVotes(block);
+        return preValidated ? validateBlockVoters(block) : validateBlockVotes(block);
     }
 
     protected boolean validateBlockVotes(Block block) {
-        // check 2/3 rule of pBFT
+        return validateBlockVoters(block) && validateBlockVoteSignatures(block);
+    }
+
+    /**
+     * Checks the 2/3 rule of pBFT against the current validator set.
+     *
+     * @param block
+     * @return
+     */
+    protected boolean validateBlockVoters(Block block) {
         List<String> validators = chain.getValidators();
         int twoThirds = (int) Math.ceil(validators.size() * 2.0 / 3.0);
         if (block.getVotes().size() < twoThirds) {
@@ -414,15 +602,11 @@ public class SemuxSync implements SyncManager {
             return false;
         }
 
-        // check vote signatures
         Set<String> set = new HashSet<>(validators);
-        Vote vote = new Vote(VoteType.PRECOMMIT, Vote.VALUE_APPROVE, block.getNumber(), block.getView(),
-                block.getHash());
-        byte[] encoded = vote.getEncoded();
         for (Signature sig : block.getVotes()) {
             String a = Hex.encode(sig.getAddress());
 
-            if (!set.contains(a) || !Key.verify(encoded, sig)) {
+            if (!set.contains(a)) {
                 logger.debug("Invalid BFT vote: signer = {}", a);
                 return false;
             }
@@ -431,6 +615,25 @@ public class SemuxSync implements SyncManager {
         return true;
     }
 
+    /**
+     * Checks the vote signatures, which doesn't depend on the chain state.
+     *
+     * @param block
+     * @return
+     */
+    protected boolean validateBlockVoteSignatures(Block block) {
+        Vote vote = new Vote(VoteType.PRECOMMIT, Vote.VALUE_APPROVE, block.getNumber(), block.getView(),
+                block.getHash());
+        List<Signature> votes = block.getVotes();
+        int invalid = Key.findInvalidSignature(Collections.nCopies(votes.size(), vote.getEncoded()), votes);
+        if (invalid != -1) {
+            logger.debug("Invalid BFT vote: signer = {}", Hex.encode(votes.get(invalid).getAddress()));
+            return false;
+        }
+
+        return true;
+    }
+
     protected boolean applyBlock(Block block, AccountState asSnapshot, DelegateState dsSnapshot) {
         // [5] apply block reward and tx fees
         long reward = config.getBlockReward(block.getNumber());
@@ -471,6 +674,92 @@ public class SemuxSync implements SyncManager {
                 Duration.between(beginningInstant != null ? beginningInstant : Instant.now(), Instant.now()));
     }
 
+    /**
+     * The sliding window of outstanding blocks of one peer. The window is sized
+     * to cover {@value #WINDOW_TIME} milliseconds of the peer's throughput, which
+     * is measured as an exponential moving average of the delivery rate while
+     * the peer has outstanding blocks.
+     */
+    protected static class DownloadWindow {
+
+        protected static final int MIN_SIZE = 4;
+        protected static final int INITIAL_SIZE = 16;
+        protected static final int MAX_SIZE = 512;
+
+        protected static final long WINDOW_TIME = 2000L;
+        protected static final long SAMPLE_TIME = 500L;
+
+        private int size = INITIAL_SIZE;
+        private int outstanding;
+
+        private double throughput; // blocks per millisecond
+        private long busySince;
+        private long sampleTime;
+        private int sampleBlocks;
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getOutstanding() {
+            return outstanding;
+        }
+
+        public int available() {
+            return size - outstanding;
+        }
+
+        /**
+         * Notifies that one block has been requested.
+         *
+         * @param now
+         */
+        public void onRequested(long now) {
+            if (outstanding == 0) {
+                // the peer was idle, which doesn't count as sample time
+                busySince = now;
+            }
+            outstanding++;
+        }
+
+        /**
+         * Notifies that one outstanding block has been completed.
+         *
+         * @param delivered
+         *            whether the block was delivered by this peer
+         * @param now
+         */
+        public void onCompleted(boolean delivered, long now) {
+            if (outstanding == 0) {
+                return;
+            }
+            outstanding--;
+
+            sampleTime += now - busySince;
+            busySince = now;
+            if (delivered) {
+                sampleBlocks++;
+            }
+
+            if (sampleTime >= SAMPLE_TIME) {
+                double rate = (double) sampleBlocks / sampleTime;
+                throughput = (throughput == 0) ? rate : 0.75 * throughput + 0.25 * rate;
+                size = (int) Math.max(MIN_SIZE, Math.min(MAX_SIZE, Math.ceil(throughput * WINDOW_TIME)));
+
+                sampleTime = 0;
+                sampleBlocks = 0;
+            }
+        }
+
+        /**
+         * Halves the window, after some outstanding blocks have expired.
+         */
+        public void shrink() {
+            throughput /= 2;
+            size = Math.max(MIN_SIZE, size / 2);
+        }
+    }
+
     public static class SemuxSyncProgress implements SyncManager.Progress {
 
         final long beginHeight;
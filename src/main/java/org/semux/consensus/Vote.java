@@ -33,7 +33,7 @@ public class Vote {
         this.view = view;
         this.blockHash = blockHash;
 
-        SimpleEncoder enc = new SimpleEncoder();
+        SimpleEncoder enc = new SimpleEncoder(2 + 8 + 4 + SimpleEncoder.sizeOfBytes(blockHash));
         enc.writeByte(type.toByte());
         enc.writeBoolean(value);
         enc.writeLong(height);
@@ -43,6 +43,10 @@ public class Vote {
     }
 
     public Vote(byte[] encoded, byte[] signature) {
+        this(encoded, Signature.fromBytes(signature));
+    }
+
+    private Vote(byte[] encoded, Signature signature) {
         this.encoded = encoded;
 
         SimpleDecoder dec = new SimpleDecoder(encoded);
@@ -52,7 +56,7 @@ public class Vote {
         this.view = dec.readInt();
         this.blockHash = dec.readBytes();
 
-        this.signature = Signature.fromBytes(signature);
+        this.signature = signature;
     }
 
     public static Vote newApprove(VoteType type, long height, int view, byte[] blockHash) {
@@ -117,9 +121,11 @@ public class Vote {
     }
 
     public byte[] toBytes() {
-        SimpleEncoder enc = new SimpleEncoder();
+        byte[] sig = signature.toBytes();
+
+        SimpleEncoder enc = new SimpleEncoder(SimpleEncoder.sizeOfBytes(encoded) + SimpleEncoder.sizeOfBytes(sig));
         enc.writeBytes(encoded);
-        enc.writeBytes(signature.toBytes());
+        enc.writeBytes(sig);
 
         return enc.toBytes();
     }
@@ -127,7 +133,7 @@ public class Vote {
     public static Vote fromBytes(byte[] bytes) {
         SimpleDecoder dec = new SimpleDecoder(bytes);
         byte[] encoded = dec.readBytes();
-        byte[] signature = dec.readBytes();
+        Signature signature = Signature.fromBytes(dec.readSlice());
 
         return new Vote(encoded, signature);
     }
@@ -29,13 +29,13 @@ import org.semux.util.ByteArray;
  */
 public class VoteSet {
 
-    private Map<ByteArray, Map<String, Vote>> approvals;
-    private Map<String, Vote> rejections;
+    private Map<ByteArray, Map<ByteArray, Vote>> approvals;
+    private Map<ByteArray, Vote> rejections;
     private VoteType type;
     private long height;
     private int view;
 
-    private Set<String> validators;
+    private Set<ByteArray> validators;
     private int twoThirds;
 
     /**
@@ -52,7 +52,10 @@ public class VoteSet {
         this.height = height;
         this.view = view;
 
-        this.validators = new HashSet<>(validators);
+        this.validators = new HashSet<>();
+        for (String v : validators) {
+            this.validators.add(ByteArray.of(Hex.decode(v)));
+        }
         this.twoThirds = (int) Math.ceil(validators.size() * 2.0 / 3.0);
     }
 
@@ -73,12 +76,12 @@ public class VoteSet {
                 && vote.getBlockHash() != null
                 && vote.validate()
                 && sig != null
-                && validators.contains(Hex.encode(sig.getAddress()))) {
-            String peerId = Hex.encode(sig.getAddress());
+                && validators.contains(ByteArray.of(sig.getAddress()))) {
+            ByteArray peerId = ByteArray.of(sig.getAddress());
 
             if (vote.getValue() == Vote.VALUE_APPROVE) {
                 ByteArray key = ByteArray.of(vote.getBlockHash());
-                Map<String, Vote> map = approvals.computeIfAbsent(key, k -> new HashMap<>());
+                Map<ByteArray, Vote> map = approvals.computeIfAbsent(key, k -> new HashMap<>());
                 return map.put(peerId, vote) == null;
             } else {
                 return rejections.put(peerId, vote) == null;
@@ -109,7 +112,7 @@ public class VoteSet {
      * @return
      */
     public boolean isApproved(byte[] blockHash) {
-        Map<String, Vote> v = approvals.get(ByteArray.of(blockHash));
+        Map<ByteArray, Vote> v = approvals.get(ByteArray.of(blockHash));
         return v != null && v.size() >= getTwoThirds();
     }
 
@@ -128,8 +131,8 @@ public class VoteSet {
      * @return
      */
     public Optional<byte[]> anyApproved() {
-        for (Map.Entry<ByteArray, Map<String, Vote>> e : approvals.entrySet()) {
-            Map<String, Vote> v = e.getValue();
+        for (Map.Entry<ByteArray, Map<ByteArray, Vote>> e : approvals.entrySet()) {
+            Map<ByteArray, Vote> v = e.getValue();
             if (v.size() >= getTwoThirds()) {
                 return Optional.of(e.getKey().getData());
             }
@@ -152,7 +155,7 @@ public class VoteSet {
      * @return
      */
     public List<Vote> getApprovals(byte[] blockHash) {
-        Map<String, Vote> map = approvals.get(ByteArray.of(blockHash));
+        Map<ByteArray, Vote> map = approvals.get(ByteArray.of(blockHash));
         return map == null ? new ArrayList<>() : new ArrayList<>(map.values());
     }
 
@@ -186,7 +189,7 @@ public class VoteSet {
     @Override
     public String toString() {
         int count = 0;
-        for (Map<String, Vote> map : approvals.values()) {
+        for (Map<ByteArray, Vote> map : approvals.values()) {
             count = Math.max(count, map.size());
         }
         return "[" + count + ", " + rejections.size() + "]";
@@ -14,6 +14,7 @@ import java.util.List;
 import org.apache.commons.lang3.tuple.Pair;
 import org.semux.Network;
 import org.semux.crypto.Hex;
+import org.semux.crypto.Key;
 import org.semux.crypto.Key.Signature;
 import org.semux.util.MerkleUtil;
 import org.semux.util.SimpleDecoder;
@@ -54,6 +55,7 @@ public class Block {
     protected byte[] encodedHeader;
     protected byte[] encodedTransactions;
     protected byte[] encodedResults;
+    protected byte[] encodedVotes;
 
     /**
      * Transaction indexes
@@ -99,8 +101,15 @@ public class Block {
         this.votes = votes;
 
         this.encodedHeader = header.toBytes();
-        SimpleEncoder encTx = new SimpleEncoder();
-        SimpleEncoder encRe = new SimpleEncoder();
+        int sizeTx = 4;
+        int sizeRe = 4;
+        for (int i = 0; i < transactions.size(); i++) {
+            sizeTx += SimpleEncoder.sizeOfBytes(transactions.get(i).toBytes());
+            sizeRe += SimpleEncoder.sizeOfBytes(results.get(i).toBytes());
+        }
+
+        SimpleEncoder encTx = new SimpleEncoder(sizeTx);
+        SimpleEncoder encRe = new SimpleEncoder(sizeRe);
         encTx.writeInt(transactions.size());
         encRe.writeInt(results.size());
         for (int i = 0; i < transactions.size(); i++) {
@@ -156,11 +165,20 @@ public class Block {
      */
     public static boolean validateTransactions(BlockHeader header, Collection<Transaction> unvalidatedTransactions,
             List<Transaction> allTransactions, Network network) {
-        // validate transactions
-        boolean valid = unvalidatedTransactions.parallelStream().allMatch((tx) -> tx.validate(network));
+        // validate transactions, and their signatures in batch
+        boolean valid = unvalidatedTransactions.parallelStream().allMatch(tx -> tx.validate(network, false));
         if (!valid) {
             return false;
         }
+        List<byte[]> hashes = new ArrayList<>(unvalidatedTransactions.size());
+        List<Signature> signatures = new ArrayList<>(unvalidatedTransactions.size());
+        for (Transaction tx : unvalidatedTransactions) {
+            hashes.add(tx.getHash());
+            signatures.add(tx.getSignature());
+        }
+        if (!Key.verifyBatch(hashes, signatures)) {
+            return false;
+        }
 
         // validate transactions root
         byte[] root = MerkleUtil.computeTransactionsRoot(allTransactions);
@@ -230,6 +248,7 @@ public class Block {
      */
     public void setView(int view) {
         this.view = view;
+        this.encodedVotes = null;
     }
 
     /**
@@ -248,6 +267,7 @@ public class Block {
      */
     public void setVotes(List<Signature> votes) {
         this.votes = votes;
+        this.encodedVotes = null;
     }
 
     /**
@@ -373,14 +393,35 @@ public class Block {
      * @return
      */
     public byte[] toBytesVotes() {
-        SimpleEncoder enc = new SimpleEncoder();
+        if (encodedVotes == null) {
+            SimpleEncoder enc = new SimpleEncoder(4 + 4 + votes.size() * SimpleEncoder.sizeOfSize(Signature.LENGTH)
+                    + votes.size() * Signature.LENGTH);
+
+            enc.writeInt(view);
+            enc.writeInt(votes.size());
+            for (Signature vote : votes) {
+                enc.writeBytes(vote.toBytes());
+            }
 
-        enc.writeInt(view);
-        enc.writeInt(votes.size());
-        for (Signature vote : votes) {
-            enc.writeBytes(vote.toBytes());
+            encodedVotes = enc.toBytes();
         }
+        return encodedVotes;
+    }
 
+    /**
+     * Serializes the block into byte array: the header, transactions, results
+     * and votes.
+     *
+     * @return
+     */
+    public byte[] toBytes() {
+        SimpleEncoder enc = new SimpleEncoder(SimpleEncoder.sizeOfBytes(toBytesHeader())
+                + SimpleEncoder.sizeOfBytes(toBytesTransactions()) + SimpleEncoder.sizeOfBytes(toBytesResults())
+                + SimpleEncoder.sizeOfBytes(toBytesVotes()));
+        enc.writeBytes(toBytesHeader());
+        enc.writeBytes(toBytesTransactions());
+        enc.writeBytes(toBytesResults());
+        enc.writeBytes(toBytesVotes());
         return enc.toBytes();
     }
 
@@ -407,16 +448,19 @@ public class Block {
      * @return
      */
     public static Block fromBytes(byte[] h, byte[] t, byte[] r, byte[] v) {
-        BlockHeader header = BlockHeader.fromBytes(h);
+        return fromBytes(BlockHeader.fromBytes(h), new SimpleDecoder(t), new SimpleDecoder(r),
+                v == null ? null : new SimpleDecoder(v));
+    }
 
-        SimpleDecoder dec = new SimpleDecoder(t);
+    private static Block fromBytes(BlockHeader header, SimpleDecoder t, SimpleDecoder r, SimpleDecoder v) {
+        SimpleDecoder dec = t;
         List<Transaction> transactions = new ArrayList<>();
         int n = dec.readInt();
         for (int i = 0; i < n; i++) {
             transactions.add(Transaction.fromBytes(dec.readBytes()));
         }
 
-        dec = new SimpleDecoder(r);
+        dec = r;
         List<TransactionResult> results = new ArrayList<>();
         n = dec.readInt();
         for (int i = 0; i < n; i++) {
@@ -427,11 +471,11 @@ public class Block {
         List<Signature> votes = new ArrayList<>();
 
         if (v != null) {
-            dec = new SimpleDecoder(v);
+            dec = v;
             view = dec.readInt();
             n = dec.readInt();
             for (int i = 0; i < n; i++) {
-                votes.add(Signature.fromBytes(dec.readBytes()));
+                votes.add(Signature.fromBytes(dec.readSlice()));
             }
         }
 
@@ -442,6 +486,25 @@ public class Block {
         return fromBytes(h, t, r, null);
     }
 
+    /**
+     * Parses a block instance from bytes.
+     *
+     * @param bytes
+     *            Serialized block, see {@link #toBytes()}
+     * @return
+     */
+    public static Block fromBytes(byte[] bytes) {
+        SimpleDecoder dec = new SimpleDecoder(bytes);
+        BlockHeader header = BlockHeader.fromBytes(dec.readBytes());
+
+        // the other parts are decoded in place
+        SimpleDecoder transactions = new SimpleDecoder(dec.readSlice());
+        SimpleDecoder results = new SimpleDecoder(dec.readSlice());
+        SimpleDecoder votes = new SimpleDecoder(dec.readSlice());
+
+        return fromBytes(header, transactions, results, votes);
+    }
+
     @Override
     public String toString() {
         return "Block [number = " + getNumber() + ", view = " + getView() + ", hash = " + Hex.encode(getHash())
@@ -41,6 +41,11 @@ public class BlockHeader {
 
     private byte[] encoded;
 
+    /**
+     * The serialized header.
+     */
+    private byte[] bytes;
+
     /**
      * Creates an instance of block header.
      *
@@ -74,6 +79,7 @@ public class BlockHeader {
         enc.writeBytes(data);
         this.encoded = enc.toBytes();
         this.hash = Hash.h256(encoded);
+        this.bytes = encode(hash, encoded);
     }
 
     /**
@@ -96,6 +102,14 @@ public class BlockHeader {
         this.data = dec.readBytes();
 
         this.encoded = encoded;
+        this.bytes = encode(hash, encoded);
+    }
+
+    private static byte[] encode(byte[] hash, byte[] encoded) {
+        SimpleEncoder enc = new SimpleEncoder(SimpleEncoder.sizeOfBytes(hash) + SimpleEncoder.sizeOfBytes(encoded));
+        enc.writeBytes(hash);
+        enc.writeBytes(encoded);
+        return enc.toBytes();
     }
 
     /**
@@ -153,11 +167,14 @@ public class BlockHeader {
         return data;
     }
 
+    /**
+     * Serializes the header into byte array. The result is shared, and must not
+     * be modified.
+     *
+     * @return
+     */
     public byte[] toBytes() {
-        SimpleEncoder enc = new SimpleEncoder();
-        enc.writeBytes(hash);
-        enc.writeBytes(encoded);
-        return enc.toBytes();
+        return bytes;
     }
 
     public static BlockHeader fromBytes(byte[] bytes) {
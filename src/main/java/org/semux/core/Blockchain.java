@@ -66,6 +66,14 @@ public interface Blockchain {
      */
     Block getBlock(byte[] hash);
 
+    /**
+     * Returns the serialized block by number, without parsing it.
+     * 
+     * @param number
+     * @return the serialized block, see {@link Block#toBytes()}, or null
+     */
+    byte[] getBlockBytes(long number);
+
     /**
      * Returns block header by block number.
      * 
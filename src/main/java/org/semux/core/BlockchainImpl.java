@@ -8,7 +8,9 @@ package org.semux.core;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 
 import org.apache.commons.lang3.tuple.Pair;
@@ -22,15 +24,21 @@ import org.semux.core.state.Delegate;
 import org.semux.core.state.DelegateState;
 import org.semux.core.state.DelegateStateImpl;
 import org.semux.crypto.Hex;
+import org.semux.db.BatchDb.BatchDbFactory;
 import org.semux.db.Db;
 import org.semux.db.DbFactory;
 import org.semux.db.DbName;
+import org.semux.util.ByteArray;
 import org.semux.util.Bytes;
 import org.semux.util.SimpleDecoder;
 import org.semux.util.SimpleEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
 /**
  * Blockchain implementation.
  * 
@@ -44,6 +52,8 @@ import org.slf4j.LoggerFactory;
  * [3, block_hash] => [block_number]
  * [4, transaction_hash] => [block_number, from, to] | [coinbase_transaction]
  * [5, address, n] => [transaction_hash]
+ * 
+ * [journal, seq] => [write_batch_journal], see {@link BatchDbFactory}
  * </pre>
  *
  * <pre>
@@ -72,12 +82,19 @@ public class BlockchainImpl implements Blockchain {
     protected static final byte TYPE_BLOCK_RESULTS = 2;
     protected static final byte TYPE_BLOCK_VOTES = 3;
 
+    private static final int TX_COUNT_CACHE_SIZE = 16 * 1024;
+    private static final long BLOCK_BYTES_CACHE_SIZE = 32L * 1024 * 1024;
+    private static final long BLOCK_CACHE_SIZE = 64L * 1024 * 1024;
+    private static final int HEADER_CACHE_SIZE = 4 * 1024;
+    private static final int BLOCK_NUMBER_CACHE_SIZE = 4 * 1024;
+
     protected enum StatsType {
         FORGED, HIT, MISSED
     }
 
     private Config config;
 
+    private BatchDbFactory dbFactory;
     private Db indexDB;
     private Db blockDB;
 
@@ -89,19 +106,51 @@ public class BlockchainImpl implements Blockchain {
 
     private List<BlockchainListener> listeners = new ArrayList<>();
 
+    /**
+     * Committed transaction count of recently active accounts.
+     */
+    private Cache<ByteArray, Integer> txCountCache = Caffeine.newBuilder().maximumSize(TX_COUNT_CACHE_SIZE).build();
+
+    /**
+     * Serialized recent blocks, as served to peers, bounded by their total size.
+     */
+    private Cache<Long, byte[]> blockBytesCache = Caffeine.newBuilder().maximumWeight(BLOCK_BYTES_CACHE_SIZE)
+            .<Long, byte[]>weigher((k, v) -> v.length).build();
+
+    /**
+     * Recent blocks, bounded by their total size, and block headers. Blocks are
+     * immutable once added, so entries never go stale; missing blocks are not
+     * cached.
+     */
+    private Cache<Long, Block> blockCache = Caffeine.newBuilder().maximumWeight(BLOCK_CACHE_SIZE)
+            .<Long, Block>weigher((k, v) -> v.size()).recordStats().build();
+    private Cache<Long, BlockHeader> headerCache = Caffeine.newBuilder().maximumSize(HEADER_CACHE_SIZE)
+            .recordStats().build();
+
+    /**
+     * Block number of recent block hashes.
+     */
+    private Cache<ByteArray, Long> blockNumberCache = Caffeine.newBuilder().maximumSize(BLOCK_NUMBER_CACHE_SIZE)
+            .recordStats().build();
+
     /**
      * Create a blockchain instance.
+     * <p>
+     * All the database updates, including the ones of account and delegate state,
+     * are buffered and written as one unit of work when a block is added.
      * 
      * @param factory
      */
     public BlockchainImpl(Config config, DbFactory factory) {
         this.config = config;
 
-        this.indexDB = factory.getDB(DbName.INDEX);
-        this.blockDB = factory.getDB(DbName.BLOCK);
+        this.dbFactory = new BatchDbFactory(factory);
+        this.indexDB = dbFactory.getDB(DbName.INDEX);
+        this.blockDB = dbFactory.getDB(DbName.BLOCK);
 
-        this.accountState = new AccountStateImpl(factory.getDB(DbName.ACCOUNT));
-        this.delegateState = new DelegateStateImpl(this, factory.getDB(DbName.DELEGATE), factory.getDB(DbName.VOTE));
+        this.accountState = new AccountStateImpl(dbFactory.getDB(DbName.ACCOUNT));
+        this.delegateState = new DelegateStateImpl(this, dbFactory.getDB(DbName.DELEGATE),
+                dbFactory.getDB(DbName.VOTE));
 
         this.genesis = Genesis.load(config.network());
 
@@ -153,18 +202,26 @@ public class BlockchainImpl implements Blockchain {
 
     @Override
     public long getBlockNumber(byte[] hash) {
-        byte[] number = indexDB.get(Bytes.merge(TYPE_BLOCK_HASH, hash));
-        return (number == null) ? -1 : Bytes.toLong(number);
+        Long number = blockNumberCache.get(ByteArray.of(hash), k -> {
+            byte[] bytes = indexDB.get(Bytes.merge(TYPE_BLOCK_HASH, hash));
+            return (bytes == null) ? null : Bytes.toLong(bytes);
+        });
+        return (number == null) ? -1 : number;
     }
 
     @Override
     public Block getBlock(long number) {
-        byte[] header = blockDB.get(Bytes.merge(TYPE_BLOCK_HEADER, Bytes.of(number)));
-        byte[] transactions = blockDB.get(Bytes.merge(TYPE_BLOCK_TRANSACTIONS, Bytes.of(number)));
-        byte[] results = blockDB.get(Bytes.merge(TYPE_BLOCK_RESULTS, Bytes.of(number)));
-        byte[] votes = blockDB.get(Bytes.merge(TYPE_BLOCK_VOTES, Bytes.of(number)));
+        return blockCache.get(number, k -> {
+            byte[] header = blockDB.get(Bytes.merge(TYPE_BLOCK_HEADER, Bytes.of(number)));
+            if (header == null) {
+                return null;
+            }
+            byte[] transactions = blockDB.get(Bytes.merge(TYPE_BLOCK_TRANSACTIONS, Bytes.of(number)));
+            byte[] results = blockDB.get(Bytes.merge(TYPE_BLOCK_RESULTS, Bytes.of(number)));
+            byte[] votes = blockDB.get(Bytes.merge(TYPE_BLOCK_VOTES, Bytes.of(number)));
 
-        return (header == null) ? null : Block.fromBytes(header, transactions, results, votes);
+            return Block.fromBytes(header, transactions, results, votes);
+        });
     }
 
     @Override
@@ -174,9 +231,50 @@ public class BlockchainImpl implements Blockchain {
     }
 
     @Override
-    public BlockHeader getBlockHeader(long number) {
+    public byte[] getBlockBytes(long number) {
+        byte[] bytes = blockBytesCache.getIfPresent(number);
+        if (bytes != null) {
+            return bytes;
+        }
+
         byte[] header = blockDB.get(Bytes.merge(TYPE_BLOCK_HEADER, Bytes.of(number)));
-        return (header == null) ? null : BlockHeader.fromBytes(header);
+        if (header == null) {
+            return null;
+        }
+        byte[] transactions = blockDB.get(Bytes.merge(TYPE_BLOCK_TRANSACTIONS, Bytes.of(number)));
+        byte[] results = blockDB.get(Bytes.merge(TYPE_BLOCK_RESULTS, Bytes.of(number)));
+        byte[] votes = blockDB.get(Bytes.merge(TYPE_BLOCK_VOTES, Bytes.of(number)));
+        if (votes == null) {
+            // no view and no votes
+            SimpleEncoder enc = new SimpleEncoder();
+            enc.writeInt(0);
+            enc.writeInt(0);
+            votes = enc.toBytes();
+        }
+
+        // same layout as Block#toBytes()
+        SimpleEncoder enc = new SimpleEncoder();
+        enc.writeBytes(header);
+        enc.writeBytes(transactions);
+        enc.writeBytes(results);
+        enc.writeBytes(votes);
+        bytes = enc.toBytes();
+
+        blockBytesCache.put(number, bytes);
+        return bytes;
+    }
+
+    @Override
+    public BlockHeader getBlockHeader(long number) {
+        return headerCache.get(number, k -> {
+            Block block = blockCache.getIfPresent(number);
+            if (block != null) {
+                return block.getHeader();
+            }
+
+            byte[] header = blockDB.get(Bytes.merge(TYPE_BLOCK_HEADER, Bytes.of(number)));
+            return (header == null) ? null : BlockHeader.fromBytes(header);
+        });
     }
 
     @Override
@@ -262,79 +360,137 @@ public class BlockchainImpl implements Blockchain {
 
         if (number != genesis.getNumber() && number != latestBlock.getNumber() + 1) {
             logger.error("Adding wrong block: number = {}, expected = {}", number, latestBlock.getNumber() + 1);
+            dbFactory.rollback();
+            accountState.rollback();
+            delegateState.rollback();
             throw new BlockchainException("Blocks can only be added sequentially");
         }
 
-        // [1] update block
-        blockDB.put(Bytes.merge(TYPE_BLOCK_HEADER, Bytes.of(number)), block.toBytesHeader());
-        blockDB.put(Bytes.merge(TYPE_BLOCK_TRANSACTIONS, Bytes.of(number)), block.toBytesTransactions());
-        blockDB.put(Bytes.merge(TYPE_BLOCK_RESULTS, Bytes.of(number)), block.toBytesResults());
-        blockDB.put(Bytes.merge(TYPE_BLOCK_VOTES, Bytes.of(number)), block.toBytesVotes());
-
-        indexDB.put(Bytes.merge(TYPE_BLOCK_HASH, hash), Bytes.of(number));
-
-        // [2] update transaction indices
-        List<Transaction> txs = block.getTransactions();
-        List<Pair<Integer, Integer>> txIndices = block.getTransactionIndices();
-        long reward = config.getBlockReward(number);
-
-        for (int i = 0; i < txs.size(); i++) {
-            Transaction tx = txs.get(i);
-            reward += tx.getFee();
-
-            SimpleEncoder enc = new SimpleEncoder();
-            enc.writeLong(number);
-            enc.writeInt(txIndices.get(i).getLeft());
-            enc.writeInt(txIndices.get(i).getRight());
-
-            indexDB.put(Bytes.merge(TYPE_TRANSACTION_HASH, tx.getHash()), enc.toBytes());
+        Map<ByteArray, Integer> txCounts = new HashMap<>();
+        try {
+            // [1] update block
+            blockDB.put(Bytes.merge(TYPE_BLOCK_HEADER, Bytes.of(number)), block.toBytesHeader());
+            blockDB.put(Bytes.merge(TYPE_BLOCK_TRANSACTIONS, Bytes.of(number)), block.toBytesTransactions());
+            blockDB.put(Bytes.merge(TYPE_BLOCK_RESULTS, Bytes.of(number)), block.toBytesResults());
+            blockDB.put(Bytes.merge(TYPE_BLOCK_VOTES, Bytes.of(number)), block.toBytesVotes());
+
+            indexDB.put(Bytes.merge(TYPE_BLOCK_HASH, hash), Bytes.of(number));
+
+            // [2] update transaction indices
+            List<Transaction> txs = block.getTransactions();
+            List<Pair<Integer, Integer>> txIndices = block.getTransactionIndices();
+            long reward = config.getBlockReward(number);
+
+            for (int i = 0; i < txs.size(); i++) {
+                Transaction tx = txs.get(i);
+                reward += tx.getFee();
+
+                SimpleEncoder enc = new SimpleEncoder();
+                enc.writeLong(number);
+                enc.writeInt(txIndices.get(i).getLeft());
+                enc.writeInt(txIndices.get(i).getRight());
+
+                indexDB.put(Bytes.merge(TYPE_TRANSACTION_HASH, tx.getHash()), enc.toBytes());
+
+                // [3] update transaction_by_account index
+                addTransactionToAccount(tx, tx.getFrom(), txCounts);
+                if (!Arrays.equals(tx.getFrom(), tx.getTo())) {
+                    addTransactionToAccount(tx, tx.getTo(), txCounts);
+                }
+            }
 
-            // [3] update transaction_by_account index
-            addTransactionToAccount(tx, tx.getFrom());
-            if (!Arrays.equals(tx.getFrom(), tx.getTo())) {
-                addTransactionToAccount(tx, tx.getTo());
+            if (number != genesis.getNumber()) {
+                // [4] coinbase transaction
+                Transaction tx = new Transaction(config.network(),
+                        TransactionType.COINBASE,
+                        block.getCoinbase(),
+                        reward,
+                        0,
+                        block.getNumber(),
+                        block.getTimestamp(),
+                        Bytes.EMPTY_BYTES);
+                tx.sign(Constants.COINBASE_KEY);
+                indexDB.put(Bytes.merge(TYPE_TRANSACTION_HASH, tx.getHash()), tx.toBytes());
+                addTransactionToAccount(tx, block.getCoinbase(), txCounts);
+
+                // [5] update validator statistics
+                List<String> validators = getValidators();
+                String primary = config.getPrimaryValidator(validators, number, 0);
+                adjustValidatorStats(block.getCoinbase(), StatsType.FORGED, 1);
+                if (primary.equals(Hex.encode(block.getCoinbase()))) {
+                    adjustValidatorStats(Hex.decode0x(primary), StatsType.HIT, 1);
+                } else {
+                    adjustValidatorStats(Hex.decode0x(primary), StatsType.MISSED, 1);
+                }
             }
-        }
 
-        if (number != genesis.getNumber()) {
-            // [4] coinbase transaction
-            Transaction tx = new Transaction(config.network(),
-                    TransactionType.COINBASE,
-                    block.getCoinbase(),
-                    reward,
-                    0,
-                    block.getNumber(),
-                    block.getTimestamp(),
-                    Bytes.EMPTY_BYTES);
-            tx.sign(Constants.COINBASE_KEY);
-            indexDB.put(Bytes.merge(TYPE_TRANSACTION_HASH, tx.getHash()), tx.toBytes());
-            addTransactionToAccount(tx, block.getCoinbase());
-
-            // [5] update validator statistics
-            List<String> validators = getValidators();
-            String primary = config.getPrimaryValidator(validators, number, 0);
-            adjustValidatorStats(block.getCoinbase(), StatsType.FORGED, 1);
-            if (primary.equals(Hex.encode(block.getCoinbase()))) {
-                adjustValidatorStats(Hex.decode0x(primary), StatsType.HIT, 1);
-            } else {
-                adjustValidatorStats(Hex.decode0x(primary), StatsType.MISSED, 1);
+            // [6] update validator set
+            if (number % config.getValidatorUpdateInterval() == 0) {
+                updateValidators(block.getNumber());
             }
-        }
 
-        // [6] update validator set
-        if (number % config.getValidatorUpdateInterval() == 0) {
-            updateValidators(block.getNumber());
+            // [7] update transaction counts and latest_block
+            for (Entry<ByteArray, Integer> e : txCounts.entrySet()) {
+                setTransactionCount(e.getKey().getData(), e.getValue());
+            }
+            indexDB.put(Bytes.of(TYPE_LATEST_BLOCK_NUMBER), Bytes.of(number));
+
+            // [8] flush all the updates, including state changes
+            dbFactory.commit();
+        } catch (RuntimeException e) {
+            // drop the partial updates, so that they don't leak into the next block
+            dbFactory.rollback();
+            accountState.rollback();
+            delegateState.rollback();
+
+            // and whatever has been cached from them
+            blockBytesCache.invalidate(number);
+            blockCache.invalidate(number);
+            headerCache.invalidate(number);
+            blockNumberCache.invalidate(ByteArray.of(hash));
+            txCountCache.invalidateAll(txCounts.keySet());
+            throw e;
         }
 
-        // [7] update latest_block
+        txCountCache.putAll(txCounts);
+        blockBytesCache.put(number, block.toBytes());
+        blockCache.put(number, block);
+        headerCache.put(number, block.getHeader());
+        blockNumberCache.put(ByteArray.of(hash), number);
         latestBlock = block;
-        indexDB.put(Bytes.of(TYPE_LATEST_BLOCK_NUMBER), Bytes.of(number));
 
         for (BlockchainListener listener : listeners) {
             listener.onBlockAdded(block);
         }
     }
 
+    /**
+     * Returns the hit statistics of the recent block cache.
+     *
+     * @return
+     */
+    public CacheStats getBlockCacheStats() {
+        return blockCache.stats();
+    }
+
+    /**
+     * Returns the hit statistics of the block header cache.
+     *
+     * @return
+     */
+    public CacheStats getHeaderCacheStats() {
+        return headerCache.stats();
+    }
+
+    /**
+     * Returns the hit statistics of the block hash to number cache.
+     *
+     * @return
+     */
+    public CacheStats getBlockNumberCacheStats() {
+        return blockNumberCache.stats();
+    }
+
     @Override
     public Genesis getGenesis() {
         return genesis;
@@ -347,8 +503,10 @@ public class BlockchainImpl implements Blockchain {
 
     @Override
     public int getTransactionCount(byte[] address) {
-        byte[] cnt = indexDB.get(Bytes.merge(TYPE_ACCOUNT_TRANSACTION, address));
-        return (cnt == null) ? 0 : Bytes.toInt(cnt);
+        return txCountCache.get(ByteArray.of(address), k -> {
+            byte[] cnt = indexDB.get(Bytes.merge(TYPE_ACCOUNT_TRANSACTION, address));
+            return (cnt == null) ? 0 : Bytes.toInt(cnt);
+        });
     }
 
     @Override
@@ -397,10 +555,7 @@ public class BlockchainImpl implements Blockchain {
     protected void updateValidators(long number) {
         List<String> validators = new ArrayList<>();
 
-        List<Delegate> delegates = delegateState.getDelegates();
-        int max = Math.min(delegates.size(), config.getNumberOfValidators(number));
-        for (int i = 0; i < max; i++) {
-            Delegate d = delegates.get(i);
+        for (Delegate d : delegateState.getDelegates(config.getNumberOfValidators(number))) {
             validators.add(Hex.encode(d.getAddress()));
         }
 
@@ -456,15 +611,23 @@ public class BlockchainImpl implements Blockchain {
     }
 
     /**
-     * Adds a transaction to an account.
+     * Adds a transaction to an account. The new transaction count is kept in the
+     * given map, and is supposed to be written once per block.
      * 
      * @param tx
      * @param address
+     * @param txCounts
+     *            transaction counts updated in the current block
      */
-    protected void addTransactionToAccount(Transaction tx, byte[] address) {
-        int total = getTransactionCount(address);
+    protected void addTransactionToAccount(Transaction tx, byte[] address, Map<ByteArray, Integer> txCounts) {
+        ByteArray key = ByteArray.of(address);
+        Integer total = txCounts.get(key);
+        if (total == null) {
+            total = getTransactionCount(address);
+        }
+
         indexDB.put(getNthTransactionIndexKey(address, total), tx.getHash());
-        setTransactionCount(address, total + 1);
+        txCounts.put(key, total + 1);
     }
 
     /**
@@ -6,25 +6,42 @@
  */
 package org.semux.core;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import org.semux.Kernel;
+import org.semux.Network;
 import org.semux.core.state.AccountState;
 import org.semux.core.state.DelegateState;
+import org.semux.net.Capability;
 import org.semux.net.Channel;
+import org.semux.net.msg.consensus.CompactProposalMessage;
+import org.semux.net.msg.p2p.GetTransactionsMessage;
 import org.semux.net.msg.p2p.TransactionMessage;
 import org.semux.util.ArrayUtil;
 import org.semux.util.ByteArray;
-import org.semux.util.Bytes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,9 +51,22 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 /**
  * Pending manager maintains all unconfirmed transactions, either from kernel or
  * network. All transactions are evaluated and propagated to peers if success.
- *
- * TODO: sort transaction queue by fee, and other metrics
- *
+ * <p>
+ * Incoming transactions are appended to a lock-free queue, which is drained in
+ * batches by the background worker. The transactions of a batch are validated
+ * in parallel, then executed sequentially against the pending state. A
+ * transaction whose nonce is ahead of its sender waits in the sender's lane,
+ * ordered by nonce, until all the preceding transactions are executed.
+ * <p>
+ * The pool is indexed by fee rate: the accepted transactions of each sender
+ * form a chain in nonce order, and the chain heads are sorted by fee per byte.
+ * Block templates are selected from this index, see
+ * {@link #getBlockTemplate(int)}.
+ * <p>
+ * When a new block is added, only the transactions which share an account with
+ * the block, directly or through other pending transactions, are executed
+ * again; the rest of the pending state is kept, see
+ * {@link #onBlockAdded(Block)}.
  */
 public class PendingManager implements Runnable, BlockchainListener {
 
@@ -58,29 +88,81 @@ public class PendingManager implements Runnable, BlockchainListener {
     private static final int TRANSACTIONS_MAX_SIZE = 16 * 1024;
     private static final int DELAYED_MAX_SIZE = 32 * 1024;
     private static final int PROCESSED_MAX_SIZE = 32 * 1024;
+    private static final int BATCH_SIZE = 1024;
+    static final long REQUEST_TIMEOUT = 5_000;
+
+    /**
+     * The maximum number of other peers remembered for a requested transaction,
+     * to ask in turn if it doesn't arrive.
+     */
+    private static final int MAX_ANNOUNCERS = 8;
 
     private Kernel kernel;
     private AccountState pendingAS;
     private DelegateState pendingDS;
 
     /**
-     * Transaction queue.
+     * Transaction queue, not yet validated.
      */
-    private LinkedList<Transaction> queue = new LinkedList<>();
+    private Queue<Transaction> queue = new ConcurrentLinkedQueue<>();
+    private AtomicInteger queueSize = new AtomicInteger(0);
 
     /**
      * Transaction pool.
      */
     private List<PendingTransaction> transactions = new ArrayList<>();
 
+    /**
+     * Fee rate index of the pool: the transactions of each sender, in nonce order,
+     * and the first transaction of each sender, by fee rate.
+     */
+    private Map<ByteArray, List<PriorityEntry>> chains = new HashMap<>();
+    private TreeSet<PriorityEntry> heads = new TreeSet<>(PriorityEntry.ORDER);
+    private long sequence = 0;
+
+    /**
+     * The cached block template, invalidated when the pool changes.
+     */
+    private List<PendingTransaction> template;
+    private int templateLimit;
+
+    /**
+     * Delayed transactions, by sender and then by nonce.
+     */
+    private Map<ByteArray, TreeMap<Long, Transaction>> lanes = new HashMap<>();
+    private int delayedSize = 0;
+
     /**
      * Transaction cache.
      */
-    private Cache<ByteArray, Transaction> delayed = Caffeine.newBuilder().maximumSize(DELAYED_MAX_SIZE).build();
     private Cache<ByteArray, Transaction> processed = Caffeine.newBuilder().maximumSize(PROCESSED_MAX_SIZE).build();
 
+    /**
+     * Recently received transactions, by short ID, from which compact proposals
+     * are rebuilt.
+     */
+    private Cache<Long, Transaction> shortIds = Caffeine.newBuilder().maximumSize(PROCESSED_MAX_SIZE).build();
+
+    /**
+     * Transactions requested from peers, by hash, guarded by itself.
+     */
+    private Map<ByteArray, TransactionRequest> requests = new LinkedHashMap<ByteArray, TransactionRequest>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ByteArray, TransactionRequest> eldest) {
+            return size() > PROCESSED_MAX_SIZE;
+        }
+    };
+
+    /**
+     * Statistics of the reconciliation with new blocks.
+     */
+    private ReconcileStats stats = new ReconcileStats(0, 0, 0, 0, 0, 0);
+
     private ScheduledExecutorService exec;
     private ScheduledFuture<?> validateFuture;
+    private ScheduledFuture<?> retryFuture;
 
     private volatile boolean isRunning;
 
@@ -107,6 +189,8 @@ public class PendingManager implements Runnable, BlockchainListener {
              * the network load is heavy.
              */
             this.validateFuture = exec.scheduleAtFixedRate(this, 2, 2, TimeUnit.MILLISECONDS);
+            this.retryFuture = exec.scheduleAtFixedRate(() -> retryRequests(System.currentTimeMillis()),
+                    REQUEST_TIMEOUT / 5, REQUEST_TIMEOUT / 5, TimeUnit.MILLISECONDS);
 
             kernel.getBlockchain().addListener(this);
 
@@ -121,6 +205,7 @@ public class PendingManager implements Runnable, BlockchainListener {
     public synchronized void stop() {
         if (isRunning) {
             validateFuture.cancel(true);
+            retryFuture.cancel(true);
 
             logger.debug("Pending manager stopped");
             isRunning = false;
@@ -141,19 +226,23 @@ public class PendingManager implements Runnable, BlockchainListener {
      *
      * @return
      */
-    public synchronized List<Transaction> getQueue() {
+    public List<Transaction> getQueue() {
         return new ArrayList<>(queue);
     }
 
     /**
      * Adds a transaction to the queue, which will be validated later by the
      * background worker. Transaction may get rejected if the queue is full.
+     * <p>
+     * This method never blocks.
      *
      * @param tx
      */
-    public synchronized void addTransaction(Transaction tx) {
-        if (queue.size() < QUEUE_MAX_SIZE && tx.validate(kernel.getConfig().network())) {
+    public void addTransaction(Transaction tx) {
+        if (queueSize.incrementAndGet() <= QUEUE_MAX_SIZE) {
             queue.add(tx);
+        } else {
+            queueSize.decrementAndGet();
         }
     }
 
@@ -166,12 +255,110 @@ public class PendingManager implements Runnable, BlockchainListener {
      */
     public synchronized ProcessTransactionResult addTransactionSync(Transaction tx) {
         if (/* queue/transactions limits are ignored */ tx.validate(kernel.getConfig().network())) {
+            markProcessed(ByteArray.of(tx.getHash()), tx);
             return processTransaction(tx, true);
         } else {
             return new ProcessTransactionResult(0, TransactionResult.Error.INVALID_FORMAT);
         }
     }
 
+    /**
+     * Returns a recently received transaction, which peers may request after it
+     * has been announced to them.
+     *
+     * @param hash
+     * @return the transaction, or null if not found
+     */
+    public Transaction getTransaction(byte[] hash) {
+        return processed.getIfPresent(ByteArray.of(hash));
+    }
+
+    /**
+     * Returns a recently received transaction by short ID.
+     *
+     * @param shortId
+     *            see {@link CompactProposalMessage#shortId(byte[])}
+     * @return the transaction, or null if not found
+     */
+    public Transaction getTransactionByShortId(long shortId) {
+        return shortIds.getIfPresent(shortId);
+    }
+
+    private void markProcessed(ByteArray key, Transaction tx) {
+        processed.put(key, tx);
+        shortIds.put(CompactProposalMessage.shortId(tx.getHash()), tx);
+    }
+
+    /**
+     * Marks an announced transaction as requested from the channel, unless it has
+     * been received or requested from another peer. In the latter case, the
+     * channel is asked next if the transaction doesn't arrive in time.
+     *
+     * @param hash
+     * @param channel
+     *            the channel which announced the transaction
+     * @return whether the transaction should be requested from the channel
+     */
+    public boolean requestTransaction(byte[] hash, Channel channel) {
+        ByteArray key = ByteArray.of(hash);
+        if (processed.getIfPresent(key) != null) {
+            return false;
+        }
+
+        synchronized (requests) {
+            TransactionRequest request = requests.get(key);
+            if (request == null) {
+                requests.put(key, new TransactionRequest(System.currentTimeMillis() + REQUEST_TIMEOUT));
+                return true;
+            }
+
+            if (request.announcers.size() < MAX_ANNOUNCERS && !request.announcers.contains(channel)) {
+                request.announcers.add(channel);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Requests the transactions which haven't arrived in time from the next peer
+     * which announced them, and forgets the ones no peer is left to ask for.
+     *
+     * @param now
+     */
+    void retryRequests(long now) {
+        Map<Channel, List<byte[]>> retries = new HashMap<>();
+        synchronized (requests) {
+            Iterator<Map.Entry<ByteArray, TransactionRequest>> it = requests.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<ByteArray, TransactionRequest> e = it.next();
+                TransactionRequest request = e.getValue();
+                if (processed.getIfPresent(e.getKey()) != null) {
+                    it.remove();
+                } else if (request.deadline <= now) {
+                    Channel next = request.announcers.poll();
+                    while (next != null && !next.isActive()) {
+                        next = request.announcers.poll();
+                    }
+
+                    if (next == null) {
+                        it.remove();
+                    } else {
+                        request.deadline = now + REQUEST_TIMEOUT;
+                        retries.computeIfAbsent(next, c -> new ArrayList<>()).add(e.getKey().getData());
+                    }
+                }
+            }
+        }
+
+        for (Map.Entry<Channel, List<byte[]>> e : retries.entrySet()) {
+            List<byte[]> hashes = e.getValue();
+            for (int i = 0; i < hashes.size(); i += GetTransactionsMessage.MAX_HASHES) {
+                List<byte[]> batch = hashes.subList(i, Math.min(hashes.size(), i + GetTransactionsMessage.MAX_HASHES));
+                e.getKey().getMessageQueue().sendMessage(new GetTransactionsMessage(new ArrayList<>(batch)));
+            }
+        }
+    }
+
     /**
      * Returns the nonce of an account based on the pending state.
      *
@@ -211,6 +398,60 @@ public class PendingManager implements Runnable, BlockchainListener {
         return txs;
     }
 
+    /**
+     * Returns the pending transactions with the highest fee rates, limited by the
+     * given total size in bytes. The transactions of one sender are kept in nonce
+     * order, while the transactions of different senders may be reordered, so the
+     * caller must execute them again in the returned order.
+     * <p>
+     * This takes O(k log k) time for k selected transactions, regardless of the
+     * pool size, and the result is cached until the pool changes.
+     *
+     * @param byteLimit
+     * @return
+     */
+    public synchronized List<PendingTransaction> getBlockTemplate(int byteLimit) {
+        if (byteLimit < 0) {
+            throw new IllegalArgumentException("Limit can't be negative");
+        }
+        if (template != null && templateLimit == byteLimit) {
+            return new ArrayList<>(template);
+        }
+
+        List<PendingTransaction> txs = new ArrayList<>();
+
+        // merge the sorted chain heads with the successors of the selected ones
+        Iterator<PriorityEntry> it = heads.iterator();
+        PriorityEntry head = it.hasNext() ? it.next() : null;
+        PriorityQueue<PriorityEntry> successors = new PriorityQueue<>(PriorityEntry.ORDER);
+
+        int size = 0;
+        while (head != null || !successors.isEmpty()) {
+            PriorityEntry e;
+            if (successors.isEmpty() || (head != null && PriorityEntry.ORDER.compare(head, successors.peek()) < 0)) {
+                e = head;
+                head = it.hasNext() ? it.next() : null;
+            } else {
+                e = successors.poll();
+            }
+
+            size += e.tx.transaction.size();
+            if (size > byteLimit) {
+                break;
+            }
+            txs.add(e.tx);
+
+            List<PriorityEntry> chain = chains.get(ByteArray.of(e.tx.transaction.getFrom()));
+            if (e.index + 1 < chain.size()) {
+                successors.add(chain.get(e.index + 1));
+            }
+        }
+
+        template = txs;
+        templateLimit = byteLimit;
+        return new ArrayList<>(txs);
+    }
+
     /**
      * Returns all pending transactions.
      *
@@ -233,52 +474,164 @@ public class PendingManager implements Runnable, BlockchainListener {
         // clear transaction pool
         List<PendingTransaction> txs = new ArrayList<>(transactions);
         transactions.clear();
+        chains.clear();
+        heads.clear();
+        template = null;
 
         return txs;
     }
 
+    /**
+     * Returns the statistics of the reconciliation with new blocks.
+     *
+     * @return
+     */
+    public synchronized ReconcileStats getReconcileStats() {
+        return stats;
+    }
+
+    /**
+     * Reconciles the pool with a new block. The transactions included in the block
+     * are dropped, and the accounts touched by the block are marked as dirty,
+     * together with the senders of pending delegate registrations whose name is
+     * registered by the block, and the accounts which share a pending
+     * transaction with a dirty one. The pending state of the dirty accounts is discarded and their
+     * transactions are executed again, while the others are kept as is.
+     */
     @Override
     public synchronized void onBlockAdded(Block block) {
         if (isRunning) {
-            long t1 = System.currentTimeMillis();
+            long t1 = System.nanoTime();
+
+            // [1] find the dirty accounts
+            Set<ByteArray> dirty = new HashSet<>();
+            Set<ByteArray> names = new HashSet<>();
+            dirty.add(ByteArray.of(block.getCoinbase()));
+            for (Transaction tx : block.getTransactions()) {
+                dirty.add(ByteArray.of(tx.getFrom()));
+                dirty.add(ByteArray.of(tx.getTo()));
+                if (tx.getType() == TransactionType.DELEGATE) {
+                    names.add(ByteArray.of(tx.getData()));
+                }
+            }
 
-            // clear transaction pool
-            List<PendingTransaction> txs = reset();
+            // a delegate registration conflicts with the pending ones of the same
+            // name, whoever sends them; the same sender is already dirty
+            if (!names.isEmpty()) {
+                for (PendingTransaction tx : transactions) {
+                    if (tx.transaction.getType() == TransactionType.DELEGATE
+                            && names.contains(ByteArray.of(tx.transaction.getData()))) {
+                        dirty.add(ByteArray.of(tx.transaction.getFrom()));
+                    }
+                }
+            }
+
+            Map<ByteArray, List<ByteArray>> edges = new HashMap<>();
+            for (PendingTransaction tx : transactions) {
+                ByteArray from = ByteArray.of(tx.transaction.getFrom());
+                ByteArray to = ByteArray.of(tx.transaction.getTo());
+                edges.computeIfAbsent(from, k -> new ArrayList<>()).add(to);
+                edges.computeIfAbsent(to, k -> new ArrayList<>()).add(from);
+            }
+            Deque<ByteArray> queue = new ArrayDeque<>(dirty);
+            while (!queue.isEmpty()) {
+                for (ByteArray address : edges.getOrDefault(queue.poll(), Collections.emptyList())) {
+                    if (dirty.add(address)) {
+                        queue.add(address);
+                    }
+                }
+            }
+
+            // [2] remove the transactions of the dirty accounts
+            List<PendingTransaction> txs = new ArrayList<>();
+            Iterator<PendingTransaction> it = transactions.iterator();
+            while (it.hasNext()) {
+                PendingTransaction tx = it.next();
+                if (dirty.contains(ByteArray.of(tx.transaction.getFrom()))) {
+                    txs.add(tx);
+                    it.remove();
+                }
+            }
+            for (ByteArray address : dirty) {
+                List<PriorityEntry> chain = chains.remove(address);
+                if (chain != null) {
+                    heads.remove(chain.get(0));
+                }
+            }
+            template = null;
+            int kept = transactions.size();
+
+            // [3] discard their pending state and execute them again
+            pendingAS.discard(dirty);
+            pendingDS.discard(dirty);
 
-            // update pending state
             long accepted = 0;
             for (PendingTransaction tx : txs) {
                 accepted += processTransaction(tx.transaction, false).accepted;
             }
 
-            long t2 = System.currentTimeMillis();
-            logger.debug("Pending tx evaluation: # txs = {} / {},  time = {} ms", accepted, txs.size(), t2 - t1);
+            // drop the stale delayed transactions and execute the ready ones
+            for (ByteArray sender : dirty) {
+                if (lanes.containsKey(sender)) {
+                    Transaction tx = pollDelayed(sender.getData(), getNonce(sender.getData()));
+                    if (tx != null) {
+                        accepted += executeTransactions(tx, false).accepted;
+                    }
+                }
+            }
+
+            long t2 = System.nanoTime();
+            stats = stats.add(t2 - t1, kept, txs.size());
+            logger.debug("Pending tx reconciliation: # txs = {} / {}, kept = {}, time = {} μs", accepted, txs.size(),
+                    kept, (t2 - t1) / 1_000);
         }
     }
 
     @Override
-    public synchronized void run() {
-        Transaction tx;
-
-        while (transactions.size() < TRANSACTIONS_MAX_SIZE && (tx = queue.poll()) != null) {
-
-            // reject already executed transactions
-            ByteArray key = ByteArray.of(tx.getHash());
-            if (processed.getIfPresent(key) != null) {
-                continue;
+    public void run() {
+        List<Transaction> batch = new ArrayList<>(BATCH_SIZE);
+
+        while (!Thread.currentThread().isInterrupted() && !isFull()) {
+            // drain a batch, skipping the already processed transactions
+            batch.clear();
+            Transaction tx;
+            while (batch.size() < BATCH_SIZE && (tx = queue.poll()) != null) {
+                queueSize.decrementAndGet();
+
+                ByteArray key = ByteArray.of(tx.getHash());
+                if (processed.getIfPresent(key) == null) {
+                    markProcessed(key, tx);
+                    batch.add(tx);
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
             }
 
-            // process the transaction
-            boolean accepted = processTransaction(tx, true).accepted >= 1;
-            processed.put(key, tx);
+            // stateless validation, in parallel
+            Network network = kernel.getConfig().network();
+            List<Transaction> valid = batch.parallelStream()
+                    .filter(t -> t.validate(network))
+                    .collect(Collectors.toList());
 
-            // quit after one accepted transaction
-            if (accepted) {
-                return;
+            // stateful execution, in order
+            synchronized (this) {
+                for (Transaction t : valid) {
+                    processTransaction(t, true);
+                }
             }
         }
     }
 
+    /**
+     * Returns whether the transaction pool is full.
+     *
+     * @return
+     */
+    protected synchronized boolean isFull() {
+        return transactions.size() >= TRANSACTIONS_MAX_SIZE;
+    }
+
     /**
      * Validates the given transaction and add to pool if success.
      *
@@ -291,7 +644,6 @@ public class PendingManager implements Runnable, BlockchainListener {
      */
     protected ProcessTransactionResult processTransaction(Transaction tx, boolean relay) {
 
-        int cnt = 0;
         long now = System.currentTimeMillis();
 
         // reject transactions with a duplicated tx hash
@@ -303,13 +655,38 @@ public class PendingManager implements Runnable, BlockchainListener {
         // a time drift of 2 hours is allowed by default
         if (tx.getTimestamp() < now - kernel.getConfig().maxTransactionTimeDrift()
                 || tx.getTimestamp() > now + kernel.getConfig().maxTransactionTimeDrift()) {
-            return new ProcessTransactionResult(cnt, TransactionResult.Error.INVALID_TIMESTAMP);
+            return new ProcessTransactionResult(0, TransactionResult.Error.INVALID_TIMESTAMP);
         }
 
         // Check transaction nonce: pending transactions must be executed sequentially
         // by nonce in ascending order. In case of a nonce jump, the transaction is
-        // delayed for the next event loop of PendingManager.
-        while (tx != null && tx.getNonce() == getNonce(tx.getFrom())) {
+        // delayed in the lane of its sender, until all of its preceding transactions
+        // have been received.
+        long nonce = getNonce(tx.getFrom());
+        if (tx.getNonce() > nonce) {
+            addDelayed(tx);
+            return new ProcessTransactionResult(0);
+        } else if (tx.getNonce() < nonce) {
+            return new ProcessTransactionResult(0);
+        } else {
+            return executeTransactions(tx, relay);
+        }
+    }
+
+    /**
+     * Executes a transaction at the head of its sender's lane, followed by the
+     * delayed transactions which become ready.
+     *
+     * @param tx
+     *            a transaction whose nonce is the pending nonce of its sender
+     * @param relay
+     *            whether to relay the transactions if success
+     * @return
+     */
+    protected ProcessTransactionResult executeTransactions(Transaction tx, boolean relay) {
+        int cnt = 0;
+
+        while (tx != null) {
 
             // execute transactions
             AccountState as = pendingAS.track();
@@ -325,44 +702,126 @@ public class PendingManager implements Runnable, BlockchainListener {
                 // which are ready to be proposed to the network.
                 PendingTransaction pendingTransaction = new PendingTransaction(tx, result);
                 transactions.add(pendingTransaction);
+                index(pendingTransaction);
                 cnt++;
 
                 // relay transaction
                 if (relay) {
-                    List<Channel> channels = kernel.getChannelManager().getActiveChannels();
-                    TransactionMessage msg = new TransactionMessage(tx);
-                    int[] indices = ArrayUtil.permutation(channels.size());
-                    for (int i = 0; i < indices.length && i < kernel.getConfig().netRelayRedundancy(); i++) {
-                        Channel c = channels.get(indices[i]);
-                        if (c.isActive()) {
-                            c.getMessageQueue().sendMessage(msg);
-                        }
-                    }
+                    relay(tx);
                 }
             } else {
-                // exit immediately if invalid
+                // discard state updates and exit immediately if invalid
+                as.rollback();
+                ds.rollback();
                 return new ProcessTransactionResult(cnt, result.getError());
             }
 
-            tx = delayed.getIfPresent(createKey(tx.getFrom(), getNonce(tx.getFrom())));
+            tx = pollDelayed(tx.getFrom(), getNonce(tx.getFrom()));
+        }
+
+        return new ProcessTransactionResult(cnt);
+    }
+
+    /**
+     * Relays a transaction. It's announced to all the peers which support
+     * {@link Capability#TX_INVENTORY} and don't know it yet, and sent to a random
+     * subset of the other peers.
+     *
+     * @param tx
+     */
+    protected void relay(Transaction tx) {
+        byte[] hash = tx.getHash();
+
+        List<Channel> legacy = new ArrayList<>();
+        for (Channel c : kernel.getChannelManager().getActiveChannels()) {
+            if (c.getRemotePeer().getCapabilities().isSupported(Capability.TX_INVENTORY)) {
+                c.getTxInventory().announce(hash);
+            } else if (!c.getTxInventory().isKnown(hash)) {
+                legacy.add(c);
+            }
         }
 
-        // Delay the transaction for the next event loop of PendingManager. The delayed
-        // transaction is expected to be processed once PendingManager has received all
-        // of its preceding transactions from the same address.
-        if (tx != null && tx.getNonce() > getNonce(tx.getFrom())) {
-            delayed.put(createKey(tx), tx);
+        TransactionMessage msg = new TransactionMessage(tx);
+        int[] indices = ArrayUtil.permutation(legacy.size());
+        for (int i = 0; i < indices.length && i < kernel.getConfig().netRelayRedundancy(); i++) {
+            Channel c = legacy.get(indices[i]);
+            if (c.isActive()) {
+                c.getTxInventory().markKnown(hash);
+                c.getMessageQueue().sendMessage(msg);
+            }
         }
+    }
 
-        return new ProcessTransactionResult(cnt);
+    /**
+     * Adds an accepted transaction to the fee rate index.
+     *
+     * @param tx
+     */
+    private void index(PendingTransaction tx) {
+        List<PriorityEntry> chain = chains.computeIfAbsent(ByteArray.of(tx.transaction.getFrom()),
+                k -> new ArrayList<>());
+        PriorityEntry e = new PriorityEntry(tx, chain.size(), sequence++);
+        if (chain.isEmpty()) {
+            heads.add(e);
+        }
+        chain.add(e);
+        template = null;
     }
 
-    private ByteArray createKey(Transaction tx) {
-        return ByteArray.of(Bytes.merge(tx.getFrom(), Bytes.of(tx.getNonce())));
+    /**
+     * Adds a transaction to the lane of its sender, unless the lanes are full.
+     *
+     * @param tx
+     */
+    private void addDelayed(Transaction tx) {
+        if (delayedSize < DELAYED_MAX_SIZE) {
+            TreeMap<Long, Transaction> lane = lanes.computeIfAbsent(ByteArray.of(tx.getFrom()), k -> new TreeMap<>());
+            if (lane.putIfAbsent(tx.getNonce(), tx) == null) {
+                delayedSize++;
+            }
+        }
     }
 
-    private ByteArray createKey(byte[] acc, long nonce) {
-        return ByteArray.of(Bytes.merge(acc, Bytes.of(nonce)));
+    /**
+     * Removes the delayed transaction of the given sender and nonce, and drops the
+     * ones with a smaller nonce.
+     *
+     * @param from
+     * @param nonce
+     * @return the delayed transaction, or null if it hasn't been received
+     */
+    private Transaction pollDelayed(byte[] from, long nonce) {
+        ByteArray key = ByteArray.of(from);
+        TreeMap<Long, Transaction> lane = lanes.get(key);
+        if (lane == null) {
+            return null;
+        }
+
+        Map<Long, Transaction> stale = lane.headMap(nonce);
+        delayedSize -= stale.size();
+        stale.clear();
+
+        Transaction tx = lane.remove(nonce);
+        if (tx != null) {
+            delayedSize--;
+        }
+        if (lane.isEmpty()) {
+            lanes.remove(key);
+        }
+        return tx;
+    }
+
+    /**
+     * A transaction requested from a peer, and the other peers which announced
+     * it.
+     */
+    private static class TransactionRequest {
+        private long deadline;
+        private Deque<Channel> announcers = new ArrayDeque<>();
+
+        public TransactionRequest(long deadline) {
+            this.deadline = deadline;
+        }
     }
 
     /**
@@ -381,6 +840,103 @@ public class PendingManager implements Runnable, BlockchainListener {
         }
     }
 
+    /**
+     * An entry of the fee rate index.
+     */
+    private static class PriorityEntry {
+
+        /**
+         * Higher fee per byte first, then first come first served.
+         */
+        static final Comparator<PriorityEntry> ORDER = (e1, e2) -> {
+            int cmp = Double.compare(e2.feeRate, e1.feeRate);
+            return (cmp != 0) ? cmp : Long.compare(e1.sequence, e2.sequence);
+        };
+
+        final PendingTransaction tx;
+        final int index;
+        final long sequence;
+        final double feeRate;
+
+        PriorityEntry(PendingTransaction tx, int index, long sequence) {
+            this.tx = tx;
+            this.index = index;
+            this.sequence = sequence;
+            this.feeRate = (double) tx.transaction.getFee() / tx.transaction.size();
+        }
+    }
+
+    /**
+     * Statistics of the reconciliation with new blocks, in nanoseconds.
+     */
+    public static class ReconcileStats {
+
+        private final long count;
+        private final long totalTime;
+        private final long maxTime;
+        private final long lastTime;
+        private final int lastKept;
+        private final int lastExecuted;
+
+        public ReconcileStats(long count, long totalTime, long maxTime, long lastTime, int lastKept,
+                int lastExecuted) {
+            this.count = count;
+            this.totalTime = totalTime;
+            this.maxTime = maxTime;
+            this.lastTime = lastTime;
+            this.lastKept = lastKept;
+            this.lastExecuted = lastExecuted;
+        }
+
+        /**
+         * Returns the statistics with one more reconciliation.
+         *
+         * @param time
+         * @param kept
+         *            the number of transactions kept as is
+         * @param executed
+         *            the number of transactions executed again
+         * @return
+         */
+        public ReconcileStats add(long time, int kept, int executed) {
+            return new ReconcileStats(count + 1, totalTime + time, Math.max(maxTime, time), time, kept, executed);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalTime() {
+            return totalTime;
+        }
+
+        public long getAverageTime() {
+            return count == 0 ? 0 : totalTime / count;
+        }
+
+        public long getMaxTime() {
+            return maxTime;
+        }
+
+        public long getLastTime() {
+            return lastTime;
+        }
+
+        public int getLastKept() {
+            return lastKept;
+        }
+
+        public int getLastExecuted() {
+            return lastExecuted;
+        }
+
+        @Override
+        public String toString() {
+            return "ReconcileStats [count=" + count + ", averageTime=" + getAverageTime() + ", maxTime=" + maxTime
+                    + ", lastTime=" + lastTime + ", lastKept=" + lastKept + ", lastExecuted=" + lastExecuted + "]";
+        }
+    }
+
     /**
      * This object represents the number of accepted transactions and the cause of
      * rejection by ${@link PendingManager}.
@@ -42,6 +42,11 @@ public class Transaction {
     private final byte[] hash; // not serialized
     private Signature signature;
 
+    /**
+     * The serialized transaction, computed once it's signed.
+     */
+    private byte[] bytes;
+
     /**
      * Create a new transaction.
      *
@@ -65,7 +70,8 @@ public class Transaction {
         this.timestamp = timestamp;
         this.data = data;
 
-        SimpleEncoder enc = new SimpleEncoder();
+        SimpleEncoder enc = new SimpleEncoder(
+                2 + SimpleEncoder.sizeOfBytes(to) + 4 * 8 + SimpleEncoder.sizeOfBytes(data));
         enc.writeByte(networkId);
         enc.writeByte(type.toByte());
         enc.writeBytes(to);
@@ -86,6 +92,10 @@ public class Transaction {
      * @param signature
      */
     public Transaction(byte[] hash, byte[] encoded, byte[] signature) {
+        this(hash, encoded, Signature.fromBytes(signature));
+    }
+
+    private Transaction(byte[] hash, byte[] encoded, Signature signature) {
         this.hash = hash;
 
         SimpleDecoder dec = new SimpleDecoder(encoded);
@@ -99,7 +109,7 @@ public class Transaction {
         this.data = dec.readBytes();
 
         this.encoded = encoded;
-        this.signature = Signature.fromBytes(signature);
+        this.signature = signature;
     }
 
     /**
@@ -110,6 +120,7 @@ public class Transaction {
      */
     public Transaction sign(Key key) {
         this.signature = key.sign(this.hash);
+        this.bytes = null;
         return this;
     }
 
@@ -126,6 +137,19 @@ public class Transaction {
      * @return true if success, otherwise false
      */
     public boolean validate(Network network) {
+        return validate(network, true);
+    }
+
+    /**
+     * Validate transaction format, and optionally the signature, which allows the
+     * caller to verify signatures in batch.
+     *
+     * @param network
+     * @param verifySignature
+     *            whether to verify the signature
+     * @return true if success, otherwise false
+     */
+    public boolean validate(Network network, boolean verifySignature) {
         return hash != null && hash.length == Hash.HASH_LEN
                 && networkId == network.id()
                 && type != null
@@ -139,7 +163,7 @@ public class Transaction {
                 && signature != null
 
                 && Arrays.equals(Hash.h256(encoded), hash)
-                && Key.verify(hash, signature)
+                && (!verifySignature || Key.verify(hash, signature))
 
                 // The coinbase key is publicly available. People can use it for transactions.
                 // It won't introduce any fundamental loss to the system but could potentially
@@ -248,17 +272,24 @@ public class Transaction {
     }
 
     /**
-     * Converts into a byte array.
+     * Serializes the signed transaction into byte array. The result is cached,
+     * and must not be modified.
      *
      * @return
      */
     public byte[] toBytes() {
-        SimpleEncoder enc = new SimpleEncoder();
-        enc.writeBytes(hash);
-        enc.writeBytes(encoded);
-        enc.writeBytes(signature.toBytes());
-
-        return enc.toBytes();
+        if (bytes == null) {
+            byte[] sig = signature.toBytes();
+
+            SimpleEncoder enc = new SimpleEncoder(SimpleEncoder.sizeOfBytes(hash) + SimpleEncoder.sizeOfBytes(encoded)
+                    + SimpleEncoder.sizeOfBytes(sig));
+            enc.writeBytes(hash);
+            enc.writeBytes(encoded);
+            enc.writeBytes(sig);
+
+            bytes = enc.toBytes();
+        }
+        return bytes;
     }
 
     /**
@@ -271,7 +302,7 @@ public class Transaction {
         SimpleDecoder dec = new SimpleDecoder(bytes);
         byte[] hash = dec.readBytes();
         byte[] encoded = dec.readBytes();
-        byte[] signature = dec.readBytes();
+        Signature signature = Signature.fromBytes(dec.readSlice());
 
         return new Transaction(hash, encoded, signature);
     }
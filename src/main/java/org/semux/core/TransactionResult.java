@@ -8,9 +8,11 @@ package org.semux.core;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.semux.Network;
+import org.semux.crypto.Hash;
 import org.semux.util.Bytes;
 import org.semux.util.SimpleDecoder;
 import org.semux.util.SimpleEncoder;
@@ -103,6 +105,13 @@ public class TransactionResult {
      */
     protected Error error;
 
+    /**
+     * The serialized result and its hash, computed on demand and reset when the
+     * result is modified.
+     */
+    private byte[] bytes;
+    private byte[] hash;
+
     /**
      * Create a transaction result.
      * 
@@ -143,6 +152,7 @@ public class TransactionResult {
 
     public void setSuccess(boolean success) {
         this.success = success;
+        reset();
     }
 
     public byte[] getReturns() {
@@ -151,18 +161,28 @@ public class TransactionResult {
 
     public void setReturns(byte[] returns) {
         this.returns = returns;
+        reset();
     }
 
+    /**
+     * Returns a read-only view of the logs, which are only updated through
+     * {@link #addLog(byte[])} and {@link #setLogs(List)}, so that the memoized
+     * encoding stays in sync.
+     *
+     * @return
+     */
     public List<byte[]> getLogs() {
-        return logs;
+        return Collections.unmodifiableList(logs);
     }
 
     public void setLogs(List<byte[]> logs) {
         this.logs = logs;
+        reset();
     }
 
     public void addLog(byte[] log) {
         this.logs.add(log);
+        reset();
     }
 
     public Error getError() {
@@ -173,16 +193,43 @@ public class TransactionResult {
         this.error = error;
     }
 
+    /**
+     * Serializes the result into byte array. The result is cached, and must not
+     * be modified.
+     *
+     * @return
+     */
     public byte[] toBytes() {
-        SimpleEncoder enc = new SimpleEncoder();
-        enc.writeBoolean(success);
-        enc.writeBytes(returns);
-        enc.writeInt(logs.size());
-        for (byte[] log : logs) {
-            enc.writeBytes(log);
+        if (bytes == null) {
+            SimpleEncoder enc = new SimpleEncoder();
+            enc.writeBoolean(success);
+            enc.writeBytes(returns);
+            enc.writeInt(logs.size());
+            for (byte[] log : logs) {
+                enc.writeBytes(log);
+            }
+
+            bytes = enc.toBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the hash of the serialized result, which is its leaf in the Merkle
+     * tree of block results.
+     *
+     * @return
+     */
+    public byte[] getHash() {
+        if (hash == null) {
+            hash = Hash.h256(toBytes());
         }
+        return hash;
+    }
 
-        return enc.toBytes();
+    private void reset() {
+        bytes = null;
+        hash = null;
     }
 
     public static TransactionResult fromBytes(byte[] bytes) {
@@ -62,6 +62,15 @@ public class Account {
         return new Account(address, available, locked, nonce);
     }
 
+    /**
+     * Returns a copy of this account, which can be updated independently.
+     * 
+     * @return
+     */
+    Account copy() {
+        return new Account(address, available, locked, nonce);
+    }
+
     /**
      * Returns the address of this account.
      * 
@@ -6,6 +6,10 @@
  */
 package org.semux.core.state;
 
+import java.util.Set;
+
+import org.semux.util.ByteArray;
+
 public interface AccountState {
 
     /**
@@ -80,6 +84,15 @@ public interface AccountState {
      */
     void removeStorage(byte[] address, byte[] key);
 
+    /**
+     * Drops the updates of the given accounts, which are read from the previous
+     * state again. The other updates can no longer be reverted by the nested
+     * states, so this must not be called while any of them is open.
+     * 
+     * @param addresses
+     */
+    void discard(Set<ByteArray> addresses);
+
     /**
      * Makes a snapshot and starts tracking further updates.
      */
@@ -6,14 +6,19 @@
  */
 package org.semux.core.state;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.semux.db.Db;
 import org.semux.util.ByteArray;
 import org.semux.util.Bytes;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
 /**
  * Account state implementation.
  * 
@@ -24,6 +29,14 @@ import org.semux.util.Bytes;
  * [1, address] => [code]
  * [2, address, storage_key] = [storage_value]
  * </pre>
+ * 
+ * A state created by {@link #track()} on the database backed state owns a
+ * {@link StateOverlay}, which is shared by all the states nested in it. The
+ * overlay holds decoded {@link Account} objects, which are updated in place by
+ * the state that put them and serialized only when written to the database.
+ * 
+ * The database backed state keeps the recently used accounts in a bounded
+ * cache, in front of the account DB.
  */
 public class AccountStateImpl implements AccountState {
 
@@ -31,13 +44,30 @@ public class AccountStateImpl implements AccountState {
     protected static final byte TYPE_CODE = 1;
     protected static final byte TYPE_STORAGE = 2;
 
+    protected static final int ACCOUNT_CACHE_SIZE = 64 * 1024;
+
     protected Db accountDB;
     protected AccountStateImpl prev;
 
     /**
-     * All updates, or deletes if the value is null.
+     * The database backed state, or null if this is the one.
+     */
+    protected AccountStateImpl root;
+
+    /**
+     * All updates, shared with the nested states.
+     */
+    protected final StateOverlay<Account> updates;
+
+    /**
+     * Recently read or written accounts, only used by the database backed state.
      */
-    protected final Map<ByteArray, byte[]> updates = new ConcurrentHashMap<>();
+    protected Cache<ByteArray, Account> cache;
+
+    /**
+     * The journal position where this nested state starts.
+     */
+    protected int checkpoint;
 
     /**
      * Create an {@link AccountState} that work directly on a database.
@@ -46,6 +76,8 @@ public class AccountStateImpl implements AccountState {
      */
     public AccountStateImpl(Db accountDB) {
         this.accountDB = accountDB;
+        this.updates = new StateOverlay<>();
+        this.cache = Caffeine.newBuilder().maximumSize(ACCOUNT_CACHE_SIZE).build();
     }
 
     /**
@@ -55,48 +87,71 @@ public class AccountStateImpl implements AccountState {
      */
     public AccountStateImpl(AccountStateImpl prev) {
         this.prev = prev;
+        if (prev.root == null) {
+            this.root = prev;
+            this.updates = new StateOverlay<>();
+        } else {
+            this.root = prev.root;
+            this.updates = prev.updates;
+            this.checkpoint = updates.checkpoint();
+        }
     }
 
     @Override
     public Account getAccount(byte[] address) {
         ByteArray k = getKey(TYPE_ACCOUNT, address);
 
-        if (updates.containsKey(k)) {
-            byte[] v = updates.get(k);
-            return v == null ? new Account(address, 0, 0, 0) : Account.fromBytes(address, v);
-        } else if (prev != null) {
-            return prev.getAccount(address);
+        Account acc = updates.get(k);
+        if (acc != null) {
+            return acc.copy();
+        } else if (root != null) {
+            return root.getAccount(address);
         } else {
-            byte[] v = accountDB.get(k.getData());
-            return v == null ? new Account(address, 0, 0, 0) : Account.fromBytes(address, v);
+            return cache.get(k, key -> {
+                byte[] v = accountDB.get(key.getData());
+                return v == null ? new Account(address, 0, 0, 0) : Account.fromBytes(address, v);
+            }).copy();
         }
     }
 
     @Override
     public void increaseNonce(byte[] address) {
-        ByteArray k = getKey(TYPE_ACCOUNT, address);
-
-        Account acc = getAccount(address);
+        Account acc = getMutableAccount(address);
         acc.setNonce(acc.getNonce() + 1);
-        updates.put(k, acc.toBytes());
     }
 
     @Override
     public void adjustAvailable(byte[] address, long delta) {
-        ByteArray k = getKey(TYPE_ACCOUNT, address);
-
-        Account acc = getAccount(address);
+        Account acc = getMutableAccount(address);
         acc.setAvailable(acc.getAvailable() + delta);
-        updates.put(k, acc.toBytes());
     }
 
     @Override
     public void adjustLocked(byte[] address, long delta) {
+        Account acc = getMutableAccount(address);
+        acc.setLocked(acc.getLocked() + delta);
+    }
+
+    /**
+     * Returns an account object owned by this state, which can be updated in
+     * place. Objects put by the previous states are copied first, so that they
+     * are restored untouched on rollback.
+     * 
+     * @param address
+     * @return
+     */
+    protected Account getMutableAccount(byte[] address) {
         ByteArray k = getKey(TYPE_ACCOUNT, address);
 
-        Account acc = getAccount(address);
-        acc.setLocked(acc.getLocked() + delta);
-        updates.put(k, acc.toBytes());
+        synchronized (updates) {
+            if (updates.isModifiedSince(k, checkpoint)) {
+                return updates.get(k);
+            }
+
+            Account acc = getAccount(address);
+            updates.put(k, acc);
+            return acc;
+        }
     }
 
     @Override
@@ -124,6 +179,11 @@ public class AccountStateImpl implements AccountState {
         throw new UnsupportedOperationException("removeStorage() is not yet yet supported");
     }
 
+    @Override
+    public void discard(Set<ByteArray> addresses) {
+        updates.removeIf((k, acc) -> addresses.contains(ByteArray.of(acc.getAddress())));
+    }
+
     @Override
     public AccountState track() {
         return new AccountStateImpl(this);
@@ -132,27 +192,36 @@ public class AccountStateImpl implements AccountState {
     @Override
     public void commit() {
         synchronized (updates) {
-            if (prev == null) {
-                for (Map.Entry<ByteArray, byte[]> entry : updates.entrySet()) {
-                    if (entry.getValue() == null) {
-                        accountDB.delete(entry.getKey().getData());
-                    } else {
-                        accountDB.put(entry.getKey().getData(), entry.getValue());
-                    }
+            if (root == null) {
+                List<Pair<byte[], byte[]>> pairs = new ArrayList<>();
+                for (Map.Entry<ByteArray, Account> entry : updates.getUpdates().entrySet()) {
+                    pairs.add(Pair.of(entry.getKey().getData(), entry.getValue().toBytes()));
                 }
+                accountDB.updateBatch(pairs);
+                // the objects are no longer referenced by any state
+                cache.putAll(updates.getUpdates());
+                updates.clear();
+            } else if (prev == root) {
+                root.updates.merge(updates);
+                updates.clear();
             } else {
-                for (Entry<ByteArray, byte[]> e : updates.entrySet()) {
-                    prev.updates.put(e.getKey(), e.getValue());
-                }
+                // the updates are already visible to the previous state
+                checkpoint = updates.checkpoint();
             }
-
-            updates.clear();
         }
     }
 
     @Override
     public void rollback() {
-        updates.clear();
+        if (root == null) {
+            // the committed accounts may be dropped with the database batch
+            updates.clear();
+            cache.invalidateAll();
+        } else if (prev == root) {
+            updates.clear();
+        } else {
+            updates.revert(checkpoint);
+        }
     }
 
     protected ByteArray getKey(byte type, byte[] address) {
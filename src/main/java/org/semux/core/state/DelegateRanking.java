@@ -0,0 +1,215 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.core.state;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.semux.util.ByteArray;
+
+/**
+ * Delegates sorted by votes in descending order, then by name, maintained
+ * incrementally. The ranking is an order statistic treap, which supports
+ * updates and rank queries in O(log n), and top-k queries in O(k + log n).
+ * <p>
+ * This class is not thread-safe.
+ */
+public class DelegateRanking {
+
+    /**
+     * The order of delegates, which decides the validator set.
+     */
+    public static final Comparator<Delegate> ORDER = (d1, d2) -> {
+        int cmp = Long.compare(d2.getVotes(), d1.getVotes());
+        return (cmp != 0) ? cmp : d1.getNameString().compareTo(d2.getNameString());
+    };
+
+    private static final class Node {
+        final Delegate delegate;
+        final String name;
+        final int priority;
+
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(Delegate delegate, int priority) {
+            this.delegate = delegate;
+            this.name = delegate.getNameString();
+            this.priority = priority;
+        }
+    }
+
+    private final Map<ByteArray, Node> nodes = new HashMap<>();
+    private final Random random = new Random();
+    private Node root;
+
+    /**
+     * Adds a delegate, or replaces the delegate of the same address.
+     *
+     * @param delegate
+     */
+    public void put(Delegate delegate) {
+        ByteArray k = ByteArray.of(delegate.getAddress());
+        remove(k);
+
+        Node n = new Node(delegate, random.nextInt());
+        Node[] parts = split(root, n);
+        root = merge(merge(parts[0], n), parts[1]);
+        nodes.put(k, n);
+    }
+
+    /**
+     * Removes a delegate.
+     *
+     * @param address
+     */
+    public void remove(ByteArray address) {
+        Node n = nodes.remove(address);
+        if (n != null) {
+            root = remove(root, n);
+        }
+    }
+
+    /**
+     * Returns the number of delegates.
+     *
+     * @return
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Returns the zero-based rank of a delegate, or -1 if it doesn't exist.
+     *
+     * @param address
+     * @return
+     */
+    public int getRank(ByteArray address) {
+        Node n = nodes.get(address);
+        if (n == null) {
+            return -1;
+        }
+
+        int rank = 0;
+        Node t = root;
+        while (t != null) {
+            int cmp = compare(n, t);
+            if (cmp < 0) {
+                t = t.left;
+            } else if (cmp > 0) {
+                rank += size(t.left) + 1;
+                t = t.right;
+            } else {
+                return rank + size(t.left);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the top delegates.
+     *
+     * @param limit
+     *            the maximum number of delegates
+     * @return
+     */
+    public List<Delegate> getTop(int limit) {
+        List<Delegate> list = new ArrayList<>(Math.min(limit, size()));
+
+        Deque<Node> stack = new ArrayDeque<>();
+        Node t = root;
+        while ((t != null || !stack.isEmpty()) && list.size() < limit) {
+            while (t != null) {
+                stack.push(t);
+                t = t.left;
+            }
+            t = stack.pop();
+            list.add(t.delegate);
+            t = t.right;
+        }
+        return list;
+    }
+
+    /**
+     * Returns all the delegates in order.
+     *
+     * @return
+     */
+    public List<Delegate> getAll() {
+        return getTop(size());
+    }
+
+    private static int compare(Node n1, Node n2) {
+        int cmp = Long.compare(n2.delegate.getVotes(), n1.delegate.getVotes());
+        return (cmp != 0) ? cmp : n1.name.compareTo(n2.name);
+    }
+
+    private static int size(Node t) {
+        return t == null ? 0 : t.size;
+    }
+
+    private static Node update(Node t) {
+        t.size = size(t.left) + size(t.right) + 1;
+        return t;
+    }
+
+    /**
+     * Splits a tree into the nodes before the key and the others.
+     */
+    private static Node[] split(Node t, Node key) {
+        if (t == null) {
+            return new Node[2];
+        } else if (compare(t, key) < 0) {
+            Node[] parts = split(t.right, key);
+            t.right = parts[0];
+            parts[0] = update(t);
+            return parts;
+        } else {
+            Node[] parts = split(t.left, key);
+            t.left = parts[1];
+            parts[1] = update(t);
+            return parts;
+        }
+    }
+
+    /**
+     * Merges two trees, all the nodes of the first one being before the others.
+     */
+    private static Node merge(Node t1, Node t2) {
+        if (t1 == null) {
+            return t2;
+        } else if (t2 == null) {
+            return t1;
+        } else if (t1.priority > t2.priority) {
+            t1.right = merge(t1.right, t2);
+            return update(t1);
+        } else {
+            t2.left = merge(t1, t2.left);
+            return update(t2);
+        }
+    }
+
+    private static Node remove(Node t, Node n) {
+        int cmp = compare(n, t);
+        if (cmp == 0) {
+            return merge(t.left, t.right);
+        } else if (cmp < 0) {
+            t.left = remove(t.left, n);
+        } else {
+            t.right = remove(t.right, n);
+        }
+        return update(t);
+    }
+}
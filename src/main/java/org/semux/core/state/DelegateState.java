@@ -8,6 +8,7 @@ package org.semux.core.state;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.semux.util.ByteArray;
 
@@ -93,6 +94,33 @@ public interface DelegateState {
      */
     List<Delegate> getDelegates();
 
+    /**
+     * Returns the top delegates, in the same order as {@link #getDelegates()}.
+     * 
+     * @param limit
+     *            the maximum number of delegates
+     * @return
+     */
+    List<Delegate> getDelegates(int limit);
+
+    /**
+     * Returns the zero-based rank of a delegate, or -1 if it doesn't exist.
+     * 
+     * @param address
+     * @return
+     */
+    int getDelegateRank(byte[] address);
+
+    /**
+     * Drops the updates of the delegates and votes which involve the given
+     * addresses, which are read from the previous state again. The other updates
+     * can no longer be reverted by the nested states, so this must not be called
+     * while any of them is open.
+     * 
+     * @param addresses
+     */
+    void discard(Set<ByteArray> addresses);
+
     /**
      * Returns a snapshot and starts tracking updates.
      */
@@ -12,8 +12,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.semux.core.Blockchain;
 import org.semux.db.Db;
 import org.semux.util.ByteArray;
@@ -38,6 +39,11 @@ import org.slf4j.LoggerFactory;
  * [delegate, voter] => vote
  * </pre>
  *
+ * A state created by {@link #track()} on the database backed state owns a pair
+ * of {@link StateOverlay}s, which are shared by all the states nested in it.
+ * 
+ * The database backed state keeps the committed delegates in a
+ * {@link DelegateRanking}, loaded once from the database and updated on commit.
  */
 public class DelegateStateImpl implements DelegateState {
 
@@ -50,15 +56,32 @@ public class DelegateStateImpl implements DelegateState {
     protected Db voteDB;
     protected DelegateStateImpl prev;
 
+    /**
+     * The database backed state, or null if this is the one.
+     */
+    protected DelegateStateImpl root;
+
     /**
      * Delegate updates
      */
-    protected final Map<ByteArray, byte[]> delegateUpdates = new ConcurrentHashMap<>();
+    protected final StateOverlay<byte[]> delegateUpdates;
 
     /**
      * Vote updates
      */
-    protected final Map<ByteArray, byte[]> voteUpdates = new ConcurrentHashMap<>();
+    protected final StateOverlay<byte[]> voteUpdates;
+
+    /**
+     * The journal positions where this nested state starts.
+     */
+    protected int delegateCheckpoint;
+    protected int voteCheckpoint;
+
+    /**
+     * The ranking of the committed delegates, only used by the database backed
+     * state and loaded on demand.
+     */
+    protected DelegateRanking ranking;
 
     /**
      * Create a DelegateState that work directly on a database.
@@ -70,6 +93,8 @@ public class DelegateStateImpl implements DelegateState {
         this.chain = chain;
         this.delegateDB = delegateDB;
         this.voteDB = voteDB;
+        this.delegateUpdates = new StateOverlay<>();
+        this.voteUpdates = new StateOverlay<>();
     }
 
     /**
@@ -80,6 +105,17 @@ public class DelegateStateImpl implements DelegateState {
     public DelegateStateImpl(DelegateStateImpl prev) {
         this.chain = prev.chain;
         this.prev = prev;
+        if (prev.root == null) {
+            this.root = prev;
+            this.delegateUpdates = new StateOverlay<>();
+            this.voteUpdates = new StateOverlay<>();
+        } else {
+            this.root = prev.root;
+            this.delegateUpdates = prev.delegateUpdates;
+            this.voteUpdates = prev.voteUpdates;
+            this.delegateCheckpoint = delegateUpdates.checkpoint();
+            this.voteCheckpoint = voteUpdates.checkpoint();
+        }
     }
 
     @Override
@@ -143,13 +179,13 @@ public class DelegateStateImpl implements DelegateState {
     public Delegate getDelegateByName(byte[] name) {
         ByteArray k = ByteArray.of(name);
 
-        if (delegateUpdates.containsKey(k)) {
-            byte[] v = delegateUpdates.get(k);
-            return v == null ? null : getDelegateByAddress(v);
-        } else if (prev != null) {
-            return prev.getDelegateByName(name);
+        byte[] v = delegateUpdates.get(k);
+        if (v != null) {
+            return getDelegateByAddress(v);
+        } else if (root != null) {
+            return root.getDelegateByName(name);
         } else {
-            byte[] v = delegateDB.get(k.getData());
+            v = delegateDB.get(k.getData());
             return v == null ? null : getDelegateByAddress(v);
         }
     }
@@ -158,37 +194,79 @@ public class DelegateStateImpl implements DelegateState {
     public Delegate getDelegateByAddress(byte[] address) {
         ByteArray k = ByteArray.of(address);
 
-        if (delegateUpdates.containsKey(k)) {
-            byte[] v = delegateUpdates.get(k);
-            return v == null ? null : Delegate.fromBytes(k.getData(), v);
-        } else if (prev != null) {
-            return prev.getDelegateByAddress(address);
+        byte[] v = delegateUpdates.get(k);
+        if (v != null) {
+            return Delegate.fromBytes(k.getData(), v);
+        } else if (root != null) {
+            return root.getDelegateByAddress(address);
         } else {
-            byte[] v = delegateDB.get(k.getData());
+            v = delegateDB.get(k.getData());
             return v == null ? null : Delegate.fromBytes(k.getData(), v);
         }
     }
 
     @Override
     public List<Delegate> getDelegates() {
+        return getDelegates(Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Delegate> getDelegates(int limit) {
         long t1 = System.nanoTime();
 
-        // traverse all cached update, all the way to database.
-        Map<ByteArray, Delegate> map = new HashMap<>();
-        getDelegates(map);
+        // the updated delegates which are not in the ranking yet
+        Map<ByteArray, Delegate> updated = new HashMap<>();
+        getUpdatedDelegates(updated);
 
-        // sort the results
-        List<Delegate> list = new ArrayList<>(map.values());
-        list.sort((d1, d2) -> {
-            int cmp = Long.compare(d2.getVotes(), d1.getVotes());
-            return (cmp != 0) ? cmp : d1.getNameString().compareTo(d2.getNameString());
-        });
+        DelegateStateImpl base = (root == null) ? this : root;
+        List<Delegate> list;
+        synchronized (base) {
+            DelegateRanking r = base.getRanking();
+            if (updated.isEmpty()) {
+                list = r.getTop(limit);
+            } else {
+                // at most updated.size() of the top delegates are replaced
+                int top = (int) Math.min((long) limit + updated.size(), Integer.MAX_VALUE);
+                list = merge(r.getTop(top), updated, limit);
+            }
+        }
 
         long t2 = System.nanoTime();
         logger.trace("Get delegates duration: {} μs", (t2 - t1) / 1000L);
         return list;
     }
 
+    @Override
+    public int getDelegateRank(byte[] address) {
+        Map<ByteArray, Delegate> updated = new HashMap<>();
+        getUpdatedDelegates(updated);
+
+        ByteArray k = ByteArray.of(address);
+        if (updated.isEmpty()) {
+            DelegateStateImpl base = (root == null) ? this : root;
+            synchronized (base) {
+                return base.getRanking().getRank(k);
+            }
+        }
+
+        List<Delegate> list = getDelegates();
+        for (int i = 0; i < list.size(); i++) {
+            if (Arrays.equals(list.get(i).getAddress(), address)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void discard(Set<ByteArray> addresses) {
+        // [name] => [address], or [address] => [delegate_object]
+        delegateUpdates.removeIf((k, v) -> addresses.contains(k.length() == ADDRESS_LEN ? k : ByteArray.of(v)));
+        // [delegate, voter] => vote
+        voteUpdates.removeIf((k, v) -> addresses.contains(ByteArray.of(Arrays.copyOf(k.getData(), ADDRESS_LEN)))
+                || addresses.contains(ByteArray.of(Arrays.copyOfRange(k.getData(), ADDRESS_LEN, 2 * ADDRESS_LEN))));
+    }
+
     @Override
     public DelegateState track() {
         return new DelegateStateImpl(this);
@@ -197,80 +275,146 @@ public class DelegateStateImpl implements DelegateState {
     @Override
     public void commit() {
         synchronized (delegateUpdates) {
-            if (prev == null) {
-                for (Map.Entry<ByteArray, byte[]> entry : delegateUpdates.entrySet()) {
-                    if (entry.getValue() == null) {
-                        delegateDB.delete(entry.getKey().getData());
-                    } else {
-                        delegateDB.put(entry.getKey().getData(), entry.getValue());
-                    }
+            if (root == null) {
+                List<Pair<byte[], byte[]>> pairs = new ArrayList<>();
+                for (Map.Entry<ByteArray, byte[]> entry : delegateUpdates.getUpdates().entrySet()) {
+                    pairs.add(Pair.of(entry.getKey().getData(), entry.getValue()));
                 }
+                delegateDB.updateBatch(pairs);
+                updateRanking();
+                delegateUpdates.clear();
+            } else if (prev == root) {
+                root.delegateUpdates.merge(delegateUpdates);
+                delegateUpdates.clear();
             } else {
-                for (Entry<ByteArray, byte[]> e : delegateUpdates.entrySet()) {
-                    prev.delegateUpdates.put(e.getKey(), e.getValue());
-                }
+                // the updates are already visible to the previous state
+                delegateCheckpoint = delegateUpdates.checkpoint();
             }
-
-            delegateUpdates.clear();
         }
 
         synchronized (voteUpdates) {
-            if (prev == null) {
-                for (Map.Entry<ByteArray, byte[]> entry : voteUpdates.entrySet()) {
-                    if (entry.getValue() == null) {
-                        voteDB.delete(entry.getKey().getData());
-                    } else {
-                        voteDB.put(entry.getKey().getData(), entry.getValue());
-                    }
+            if (root == null) {
+                List<Pair<byte[], byte[]>> pairs = new ArrayList<>();
+                for (Map.Entry<ByteArray, byte[]> entry : voteUpdates.getUpdates().entrySet()) {
+                    pairs.add(Pair.of(entry.getKey().getData(), entry.getValue()));
                 }
+                voteDB.updateBatch(pairs);
+                voteUpdates.clear();
+            } else if (prev == root) {
+                root.voteUpdates.merge(voteUpdates);
+                voteUpdates.clear();
             } else {
-                for (Entry<ByteArray, byte[]> e : voteUpdates.entrySet()) {
-                    prev.voteUpdates.put(e.getKey(), e.getValue());
-                }
+                voteCheckpoint = voteUpdates.checkpoint();
             }
-
-            voteUpdates.clear();
         }
     }
 
     @Override
     public void rollback() {
-        delegateUpdates.clear();
-        voteUpdates.clear();
+        if (root == null) {
+            // the committed delegates may be dropped with the database batch
+            synchronized (this) {
+                ranking = null;
+            }
+            delegateUpdates.clear();
+            voteUpdates.clear();
+        } else if (prev == root) {
+            delegateUpdates.clear();
+            voteUpdates.clear();
+        } else {
+            delegateUpdates.revert(delegateCheckpoint);
+            voteUpdates.revert(voteCheckpoint);
+        }
     }
 
     /**
-     * Recursively compute the delegates.
+     * Collects the delegates updated by this state and the database backed state,
+     * which are not committed to the ranking yet.
      * 
      * @param map
      */
-    protected void getDelegates(Map<ByteArray, Delegate> map) {
-        for (Map.Entry<ByteArray, byte[]> entry : delegateUpdates.entrySet()) {
+    protected void getUpdatedDelegates(Map<ByteArray, Delegate> map) {
+        for (Map.Entry<ByteArray, byte[]> entry : delegateUpdates.getUpdates().entrySet()) {
             /* filter address */
             if (entry.getKey().length() == ADDRESS_LEN && !map.containsKey(entry.getKey())) {
-                if (entry.getValue() == null) {
-                    map.put(entry.getKey(), null);
-                } else {
-                    map.put(entry.getKey(), Delegate.fromBytes(entry.getKey().getData(), entry.getValue()));
-                }
+                map.put(entry.getKey(), Delegate.fromBytes(entry.getKey().getData(), entry.getValue()));
             }
         }
 
-        if (prev != null) {
-            prev.getDelegates(map);
-        } else {
+        if (root != null) {
+            root.getUpdatedDelegates(map);
+        }
+    }
+
+    /**
+     * Returns the ranking of the committed delegates, which is loaded from the
+     * database on first use. Must be called by the database backed state, while
+     * holding its lock.
+     * 
+     * @return
+     */
+    protected DelegateRanking getRanking() {
+        if (ranking == null) {
+            long t1 = System.nanoTime();
+
+            DelegateRanking r = new DelegateRanking();
             ClosableIterator<Entry<byte[], byte[]>> itr = delegateDB.iterator();
             while (itr.hasNext()) {
                 Entry<byte[], byte[]> entry = itr.next();
-                ByteArray k = ByteArray.of(entry.getKey());
-                byte[] v = entry.getValue();
+                byte[] k = entry.getKey();
 
-                if (k.length() == ADDRESS_LEN && !map.containsKey(k)) {
-                    map.put(k, Delegate.fromBytes(k.getData(), v));
+                if (k.length == ADDRESS_LEN) {
+                    r.put(Delegate.fromBytes(k, entry.getValue()));
                 }
             }
             itr.close();
+            ranking = r;
+
+            long t2 = System.nanoTime();
+            logger.debug("Loaded {} delegates in {} ms", r.size(), (t2 - t1) / 1_000_000L);
         }
+
+        return ranking;
+    }
+
+    /**
+     * Applies the delegate updates of the database backed state to the ranking.
+     */
+    protected synchronized void updateRanking() {
+        if (ranking != null) {
+            for (Map.Entry<ByteArray, byte[]> entry : delegateUpdates.getUpdates().entrySet()) {
+                if (entry.getKey().length() == ADDRESS_LEN) {
+                    ranking.put(Delegate.fromBytes(entry.getKey().getData(), entry.getValue()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges the updated delegates into a ranked list.
+     * 
+     * @param ranked
+     * @param updated
+     * @param limit
+     * @return
+     */
+    protected static List<Delegate> merge(List<Delegate> ranked, Map<ByteArray, Delegate> updated, int limit) {
+        List<Delegate> sorted = new ArrayList<>(updated.values());
+        sorted.sort(DelegateRanking.ORDER);
+
+        List<Delegate> list = new ArrayList<>();
+        int i = 0, j = 0;
+        while (list.size() < limit && (i < ranked.size() || j < sorted.size())) {
+            if (i < ranked.size() && updated.containsKey(ByteArray.of(ranked.get(i).getAddress()))) {
+                i++;
+            } else if (j >= sorted.size()
+                    || (i < ranked.size() && DelegateRanking.ORDER.compare(ranked.get(i), sorted.get(j)) < 0)) {
+                list.add(ranked.get(i++));
+            } else {
+                list.add(sorted.get(j++));
+            }
+        }
+        return list;
     }
 
     /**
@@ -281,13 +425,13 @@ public class DelegateStateImpl implements DelegateState {
      * @return
      */
     protected long getVote(ByteArray key) {
-        if (voteUpdates.containsKey(key)) {
-            byte[] bytes = voteUpdates.get(key);
-            return (bytes == null) ? 0 : Bytes.toLong(bytes);
+        byte[] v = voteUpdates.get(key);
+        if (v != null) {
+            return Bytes.toLong(v);
         }
 
-        if (prev != null) {
-            return prev.getVote(key);
+        if (root != null) {
+            return root.getVote(key);
         } else {
             byte[] bytes = voteDB.get(key.getData());
             return (bytes == null) ? 0 : Bytes.toLong(bytes);
@@ -296,6 +440,10 @@ public class DelegateStateImpl implements DelegateState {
 
     @Override
     public Map<ByteArray, Long> getVotes(byte[] delegate) {
+        if (root != null) {
+            return root.getVotes(delegate);
+        }
+
         Map<ByteArray, Long> result = new HashMap<>();
 
         ClosableIterator<Entry<byte[], byte[]>> itr = voteDB.iterator(delegate);
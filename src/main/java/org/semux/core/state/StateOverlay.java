@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.core.state;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiPredicate;
+
+import org.apache.commons.lang3.tuple.Triple;
+import org.semux.util.ByteArray;
+
+/**
+ * The updates of a tracked state, flattened into one hash map which is shared
+ * by all the states nested in it. Every update is recorded in an undo journal,
+ * so that a nested state can be rolled back to the checkpoint where it was
+ * created.
+ * <p>
+ * Lookups cost one hash map access regardless of the nesting depth. Nested
+ * states must be committed or rolled back in LIFO order.
+ * <p>
+ * Values may be mutable, as long as a value is only mutated by the state which
+ * put it, see {@link #isModifiedSince(ByteArray, int)}; the journal keeps the
+ * previous value objects untouched.
+ *
+ * @param <V>
+ *            the value type
+ */
+public class StateOverlay<V> {
+
+    private final Map<ByteArray, V> updates = new ConcurrentHashMap<>();
+
+    /**
+     * The journal position of the latest update of each key.
+     */
+    private final Map<ByteArray, Integer> positions = new ConcurrentHashMap<>();
+
+    /**
+     * Previous values and positions of the updated keys, null if absent.
+     */
+    private final List<Triple<ByteArray, V, Integer>> journal = new ArrayList<>();
+
+    /**
+     * Returns the updated value of a key, or null if the key hasn't been updated.
+     *
+     * @param key
+     * @return
+     */
+    public V get(ByteArray key) {
+        return updates.get(key);
+    }
+
+    /**
+     * Returns whether a key has been updated since the given checkpoint, which
+     * means the value is owned by the state created at the checkpoint.
+     *
+     * @param key
+     * @param checkpoint
+     * @return
+     */
+    public boolean isModifiedSince(ByteArray key, int checkpoint) {
+        Integer position = positions.get(key);
+        return position != null && position >= checkpoint;
+    }
+
+    /**
+     * Updates the value of a key.
+     *
+     * @param key
+     * @param value
+     */
+    public synchronized void put(ByteArray key, V value) {
+        Integer position = positions.put(key, journal.size());
+        journal.add(Triple.of(key, updates.put(key, value), position));
+    }
+
+    /**
+     * Returns a checkpoint which can be reverted to.
+     *
+     * @return
+     */
+    public synchronized int checkpoint() {
+        return journal.size();
+    }
+
+    /**
+     * Reverts all the updates since the given checkpoint.
+     *
+     * @param checkpoint
+     */
+    public synchronized void revert(int checkpoint) {
+        for (int i = journal.size() - 1; i >= checkpoint; i--) {
+            Triple<ByteArray, V, Integer> e = journal.remove(i);
+            if (e.getMiddle() == null) {
+                updates.remove(e.getLeft());
+                positions.remove(e.getLeft());
+            } else {
+                updates.put(e.getLeft(), e.getMiddle());
+                positions.put(e.getLeft(), e.getRight());
+            }
+        }
+    }
+
+    /**
+     * Merges the updates of another overlay, without journaling.
+     *
+     * @param other
+     */
+    public synchronized void merge(StateOverlay<V> other) {
+        updates.putAll(other.updates);
+        positions.keySet().removeAll(other.updates.keySet());
+    }
+
+    /**
+     * Removes the updates matching the filter, and drops the journal, which means
+     * the remaining updates can no longer be reverted. This must not be called
+     * while nested states are open.
+     *
+     * @param filter
+     */
+    public synchronized void removeIf(BiPredicate<ByteArray, V> filter) {
+        updates.entrySet().removeIf(e -> filter.test(e.getKey(), e.getValue()));
+        positions.clear();
+        journal.clear();
+    }
+
+    /**
+     * Returns an unmodifiable view of the updates.
+     *
+     * @return
+     */
+    public Map<ByteArray, V> getUpdates() {
+        return Collections.unmodifiableMap(updates);
+    }
+
+    /**
+     * Drops all the updates and the journal.
+     */
+    public synchronized void clear() {
+        updates.clear();
+        positions.clear();
+        journal.clear();
+    }
+}
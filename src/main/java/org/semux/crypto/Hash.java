@@ -6,7 +6,9 @@
  */
 package org.semux.crypto;
 
+import java.security.DigestException;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.Security;
 
 import org.bouncycastle.crypto.digests.RIPEMD160Digest;
@@ -14,7 +16,13 @@ import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.semux.config.Constants;
 
 /**
- * Hash generator
+ * Hash generator.
+ * <p>
+ * The digests are kept per thread and reused, which saves the provider lookup
+ * and the allocation of each call. The methods are not reentrant within a
+ * thread, which doesn't matter as none of them calls another while hashing.
+ * A digest is reset whenever hashing fails halfway, so that nothing is left
+ * absorbed for the next call on the thread.
  */
 public class Hash {
 
@@ -24,52 +32,130 @@ public class Hash {
 
     public static final int HASH_LEN = 32;
 
+    public static final int H160_LEN = 20;
+
+    private static final ThreadLocal<MessageDigest> h256Digest = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance(Constants.HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new CryptoException(e);
+        }
+    });
+
+    private static final ThreadLocal<RIPEMD160Digest> h160Digest = ThreadLocal.withInitial(RIPEMD160Digest::new);
+
+    private static final ThreadLocal<byte[]> h160Buffer = ThreadLocal.withInitial(() -> new byte[HASH_LEN]);
+
     /**
      * Generate the 256-bit hash.
-     * 
+     *
      * @param input
      * @return
      */
     public static byte[] h256(byte[] input) {
+        return h256Digest.get().digest(input);
+    }
+
+    /**
+     * Generate the 256-bit hash of a range of the input.
+     *
+     * @param input
+     * @param offset
+     * @param length
+     * @return
+     */
+    public static byte[] h256(byte[] input, int offset, int length) {
+        MessageDigest digest = h256Digest.get();
         try {
-            MessageDigest digest = MessageDigest.getInstance(Constants.HASH_ALGORITHM);
-            return digest.digest(input);
-        } catch (Exception e) {
-            throw new CryptoException(e);
+            digest.update(input, offset, length);
+            return digest.digest();
+        } catch (RuntimeException e) {
+            digest.reset();
+            throw e;
         }
     }
 
     /**
-     * Merge two byte arrays and compute the 256-bit hash.
-     * 
+     * Compute the 256-bit hash of two byte arrays, as if they were merged.
+     *
      * @param one
      * @param two
      * @return
      */
     public static byte[] h256(byte[] one, byte[] two) {
-        byte[] all = new byte[one.length + two.length];
-        System.arraycopy(one, 0, all, 0, one.length);
-        System.arraycopy(two, 0, all, one.length, two.length);
+        MessageDigest digest = h256Digest.get();
+        try {
+            digest.update(one);
+            digest.update(two);
+            return digest.digest();
+        } catch (RuntimeException e) {
+            digest.reset();
+            throw e;
+        }
+    }
 
-        return Hash.h256(all);
+    /**
+     * Writes the 256-bit hash of a range of the input into the output buffer.
+     *
+     * @param input
+     * @param offset
+     * @param length
+     * @param out
+     *            the output buffer, with {@link #HASH_LEN} bytes available from
+     *            outOffset
+     * @param outOffset
+     */
+    public static void h256(byte[] input, int offset, int length, byte[] out, int outOffset) {
+        MessageDigest digest = h256Digest.get();
+        try {
+            digest.update(input, offset, length);
+        } catch (RuntimeException e) {
+            digest.reset();
+            throw e;
+        }
+        try {
+            digest.digest(out, outOffset, HASH_LEN);
+        } catch (DigestException | IllegalArgumentException e) {
+            digest.reset();
+            throw new CryptoException(e);
+        }
     }
 
     /**
      * Generate the 160-bit hash, using h256 and RIPEMD.
-     * 
+     *
      * @param input
      * @return
      */
     public static byte[] h160(byte[] input) {
-        byte[] h256 = h256(input);
-
-        RIPEMD160Digest digest = new RIPEMD160Digest();
-        digest.update(h256, 0, h256.length);
-        byte[] out = new byte[20];
-        digest.doFinal(out, 0);
+        byte[] out = new byte[H160_LEN];
+        h160(input, out, 0);
         return out;
     }
 
+    /**
+     * Writes the 160-bit hash into the output buffer.
+     *
+     * @param input
+     * @param out
+     *            the output buffer, with {@link #H160_LEN} bytes available from
+     *            outOffset
+     * @param outOffset
+     */
+    public static void h160(byte[] input, byte[] out, int outOffset) {
+        byte[] h256 = h160Buffer.get();
+        h256(input, 0, input.length, h256, 0);
+
+        RIPEMD160Digest digest = h160Digest.get();
+        try {
+            digest.update(h256, 0, h256.length);
+            digest.doFinal(out, outOffset);
+        } catch (RuntimeException e) {
+            digest.reset();
+            throw e;
+        }
+    }
+
     private Hash() {
     }
 
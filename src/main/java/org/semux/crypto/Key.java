@@ -6,6 +6,7 @@
  */
 package org.semux.crypto;
 
+import java.nio.ByteBuffer;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.KeyPair;
@@ -14,10 +15,13 @@ import java.security.SignatureException;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.semux.crypto.cache.PublicKeyCache;
+import org.semux.crypto.cache.SignatureCache;
 import org.semux.util.Bytes;
 import org.semux.util.SystemUtil;
 import org.slf4j.Logger;
@@ -44,7 +48,18 @@ public class Key {
 
     private static final Logger logger = LoggerFactory.getLogger(Key.class);
 
+    /**
+     * The minimum number of signatures that are verified in parallel.
+     */
+    private static final int PARALLEL_VERIFY_THRESHOLD = 8;
+
     private static final KeyPairGenerator gen = new KeyPairGenerator();
+
+    /**
+     * EdDSAEngine is stateful but reusable after re-initialization, one instance
+     * per thread avoids the allocation for every signature.
+     */
+    private static final ThreadLocal<EdDSAEngine> engines = ThreadLocal.withInitial(EdDSAEngine::new);
     static {
         /*
          * Algorithm specifications
@@ -149,7 +164,7 @@ public class Key {
      */
     public Signature sign(byte[] msgHash) {
         try {
-            EdDSAEngine engine = new EdDSAEngine();
+            EdDSAEngine engine = engines.get();
             engine.initSign(sk);
             byte[] sig = engine.signOneShot(msgHash);
 
@@ -170,11 +185,19 @@ public class Key {
      */
     public static boolean verify(byte[] msgHash, Signature signature) {
         if (msgHash != null && signature != null) { // avoid null pointer exception
+            if (SignatureCache.contains(msgHash, signature)) {
+                return true;
+            }
+
             try {
-                EdDSAEngine engine = new EdDSAEngine();
+                EdDSAEngine engine = engines.get();
                 engine.initVerify(PublicKeyCache.computeIfAbsent(signature.getPublicKey()));
 
-                return engine.verifyOneShot(msgHash, signature.getS());
+                boolean valid = engine.verifyOneShot(msgHash, signature.getS());
+                if (valid) {
+                    SignatureCache.add(msgHash, signature);
+                }
+                return valid;
             } catch (Exception e) {
                 // do nothing
             }
@@ -198,6 +221,41 @@ public class Key {
         return verify(msgHash, sig);
     }
 
+    /**
+     * Verifies a batch of signatures, in parallel if the batch is large enough.
+     *
+     * @param msgHashes
+     *            message hashes
+     * @param signatures
+     *            signatures, one per message hash
+     * @return True if all the signatures are valid, otherwise false
+     */
+    public static boolean verifyBatch(List<byte[]> msgHashes, List<Signature> signatures) {
+        return findInvalidSignature(msgHashes, signatures) == -1;
+    }
+
+    /**
+     * Finds an invalid signature within a batch.
+     *
+     * @param msgHashes
+     *            message hashes
+     * @param signatures
+     *            signatures, one per message hash
+     * @return the index of an invalid signature, or -1 if all are valid
+     */
+    public static int findInvalidSignature(List<byte[]> msgHashes, List<Signature> signatures) {
+        if (msgHashes.size() != signatures.size()) {
+            throw new IllegalArgumentException("The number of messages and signatures don't match");
+        }
+
+        IntStream indexes = IntStream.range(0, msgHashes.size());
+        if (msgHashes.size() >= PARALLEL_VERIFY_THRESHOLD) {
+            indexes = indexes.parallel();
+        }
+
+        return indexes.filter(i -> !verify(msgHashes.get(i), signatures.get(i))).findAny().orElse(-1);
+    }
+
     /**
      * Returns a string representation of this key.
      * 
@@ -222,6 +280,9 @@ public class Key {
         private byte[] s;
         private byte[] a;
 
+        private byte[] publicKey;
+        private byte[] address;
+
         /**
          * Creates a Signature instance.
          * 
@@ -255,21 +316,29 @@ public class Key {
         }
 
         /**
-         * Returns the public key of the signer.
+         * Returns the public key of the signer. The result is cached, and must not
+         * be modified.
          * 
          * @return
          */
         public byte[] getPublicKey() {
-            return Bytes.merge(X509, a);
+            if (publicKey == null) {
+                publicKey = Bytes.merge(X509, a);
+            }
+            return publicKey;
         }
 
         /**
-         * Returns the address of signer.
+         * Returns the address of signer. The result is cached, and must not be
+         * modified.
          * 
          * @return
          */
         public byte[] getAddress() {
-            return Hash.h160(getPublicKey());
+            if (address == null) {
+                address = Hash.h160(getPublicKey());
+            }
+            return address;
         }
 
         /**
@@ -298,6 +367,24 @@ public class Key {
             return new Signature(s, a);
         }
 
+        /**
+         * Parses from the remaining bytes of a buffer.
+         * 
+         * @param buf
+         * @return a {@link Signature} if success,or null
+         */
+        public static Signature fromBytes(ByteBuffer buf) {
+            if (buf == null || buf.remaining() != LENGTH) {
+                return null;
+            }
+
+            byte[] s = new byte[S_LEN];
+            byte[] a = new byte[A_LEN];
+            buf.duplicate().get(s).get(a);
+
+            return new Signature(s, a);
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o)
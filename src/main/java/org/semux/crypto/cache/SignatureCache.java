@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.crypto.cache;
+
+import org.semux.crypto.Hash;
+import org.semux.crypto.Key.Signature;
+import org.semux.util.ByteArray;
+import org.semux.util.Bytes;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+public final class SignatureCache {
+
+    private static final int MAX_CACHE_SIZE = 64 * 1024;
+
+    /**
+     * The same signature is verified several times: a BFT vote by the message
+     * handler, the vote set and again within the block, a transaction by the
+     * pending manager and again within the block. Remembering the signatures
+     * that have been verified successfully saves most of the repeated EdDSA
+     * checks.
+     * <p>
+     * The cache is a concurrent hash map of ByteArray.of(h256(message) || S ||
+     * A) -> Boolean.TRUE; invalid signatures are never cached. The message is
+     * hashed as it may be a whole encoded proposal, so that the size of an entry
+     * doesn't depend on it.
+     */
+    private static final Cache<ByteArray, Boolean> sigCache = Caffeine.newBuilder()
+            .maximumSize(MAX_CACHE_SIZE).recordStats().build();
+
+    private SignatureCache() {
+    }
+
+    /**
+     * Returns whether the signature of the message has been verified.
+     *
+     * @param message
+     * @param signature
+     * @return
+     */
+    public static boolean contains(byte[] message, Signature signature) {
+        return sigCache.getIfPresent(key(message, signature)) != null;
+    }
+
+    /**
+     * Remembers a successfully verified signature.
+     *
+     * @param message
+     * @param signature
+     */
+    public static void add(byte[] message, Signature signature) {
+        sigCache.put(key(message, signature), Boolean.TRUE);
+    }
+
+    /**
+     * Returns the number of lookups which found a verified signature.
+     *
+     * @return
+     */
+    public static long getHitCount() {
+        return sigCache.stats().hitCount();
+    }
+
+    /**
+     * Returns the number of lookups which required a full verification.
+     *
+     * @return
+     */
+    public static long getMissCount() {
+        return sigCache.stats().missCount();
+    }
+
+    /**
+     * Returns the ratio of lookups which found a verified signature.
+     *
+     * @return
+     */
+    public static double getHitRate() {
+        return sigCache.stats().hitRate();
+    }
+
+    private static ByteArray key(byte[] message, Signature signature) {
+        return ByteArray.of(Bytes.merge(Hash.h256(message), signature.getS(), signature.getA()));
+    }
+}
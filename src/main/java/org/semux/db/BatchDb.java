@@ -0,0 +1,429 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.db;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.semux.util.ByteArray;
+import org.semux.util.Bytes;
+import org.semux.util.ClosableIterator;
+import org.semux.util.SimpleDecoder;
+import org.semux.util.SimpleEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A database which buffers all the updates in memory until they're explicitly
+ * committed by its factory. Reads, including iterations, always observe the
+ * buffered updates.
+ */
+public class BatchDb implements Db {
+
+    /**
+     * Marker of a buffered deletion, compared by reference.
+     */
+    private static final byte[] DELETED = new byte[0];
+
+    private final Db db;
+
+    /**
+     * Buffered updates, sorted in the same order as the underlying database.
+     */
+    private final NavigableMap<ByteArray, byte[]> updates = new ConcurrentSkipListMap<>();
+
+    public BatchDb(Db db) {
+        this.db = db;
+    }
+
+    @Override
+    public byte[] get(byte[] key) {
+        byte[] v = updates.get(ByteArray.of(key));
+        if (v != null) {
+            return (v == DELETED) ? null : v;
+        }
+
+        return db.get(key);
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) {
+        updates.put(ByteArray.of(key), value);
+    }
+
+    @Override
+    public void delete(byte[] key) {
+        updates.put(ByteArray.of(key), DELETED);
+    }
+
+    @Override
+    public void updateBatch(List<Pair<byte[], byte[]>> pairs) {
+        for (Pair<byte[], byte[]> p : pairs) {
+            if (p.getValue() == null) {
+                delete(p.getKey());
+            } else {
+                put(p.getKey(), p.getValue());
+            }
+        }
+    }
+
+    @Override
+    public void updateBatch(List<Pair<byte[], byte[]>> pairs, boolean sync) {
+        updateBatch(pairs);
+    }
+
+    @Override
+    public ClosableIterator<Entry<byte[], byte[]>> iterator() {
+        return iterator(null);
+    }
+
+    @Override
+    public ClosableIterator<Entry<byte[], byte[]>> iterator(byte[] prefix) {
+        Map<ByteArray, byte[]> pending = (prefix == null) ? updates : updates.tailMap(ByteArray.of(prefix), true);
+        return new MergedIterator(db.iterator(prefix), pending.entrySet().iterator());
+    }
+
+    @Override
+    public void close() {
+        db.close();
+    }
+
+    @Override
+    public void destroy() {
+        updates.clear();
+        db.destroy();
+    }
+
+    /**
+     * Returns the buffered updates as key value pairs; pair with null value
+     * represents a deletion.
+     *
+     * @return
+     */
+    protected List<Pair<byte[], byte[]>> getUpdates() {
+        List<Pair<byte[], byte[]>> pairs = new ArrayList<>();
+        for (Entry<ByteArray, byte[]> e : updates.entrySet()) {
+            pairs.add(Pair.of(e.getKey().getData(), e.getValue() == DELETED ? null : e.getValue()));
+        }
+        return pairs;
+    }
+
+    /**
+     * Removes the given updates from the buffer, unless they've been overwritten
+     * in the meantime.
+     *
+     * @param pairs
+     */
+    protected void clearUpdates(List<Pair<byte[], byte[]>> pairs) {
+        for (Pair<byte[], byte[]> p : pairs) {
+            updates.remove(ByteArray.of(p.getKey()), p.getValue() == null ? DELETED : p.getValue());
+        }
+    }
+
+    /**
+     * Drops all the buffered updates.
+     */
+    protected void rollback() {
+        updates.clear();
+    }
+
+    /**
+     * Iterates over the underlying database and the buffered updates in key
+     * order, with buffered updates taking precedence.
+     */
+    private static class MergedIterator implements ClosableIterator<Entry<byte[], byte[]>> {
+        private final ClosableIterator<Entry<byte[], byte[]>> stored;
+        private final Iterator<Entry<ByteArray, byte[]>> pending;
+
+        private Entry<byte[], byte[]> nextStored;
+        private Entry<ByteArray, byte[]> nextPending;
+        private Entry<byte[], byte[]> next;
+
+        MergedIterator(ClosableIterator<Entry<byte[], byte[]>> stored, Iterator<Entry<ByteArray, byte[]>> pending) {
+            this.stored = stored;
+            this.pending = pending;
+            this.next = advance();
+        }
+
+        private Entry<byte[], byte[]> advance() {
+            while (true) {
+                if (nextStored == null && stored.hasNext()) {
+                    nextStored = stored.next();
+                }
+                if (nextPending == null && pending.hasNext()) {
+                    nextPending = pending.next();
+                }
+                if (nextStored == null && nextPending == null) {
+                    return null;
+                }
+
+                int cmp;
+                if (nextStored == null) {
+                    cmp = 1;
+                } else if (nextPending == null) {
+                    cmp = -1;
+                } else {
+                    cmp = ByteArray.of(nextStored.getKey()).compareTo(nextPending.getKey());
+                }
+
+                if (cmp < 0) {
+                    Entry<byte[], byte[]> e = nextStored;
+                    nextStored = null;
+                    return e;
+                } else if (cmp == 0) {
+                    // overwritten by the buffered update
+                    nextStored = null;
+                }
+
+                Entry<ByteArray, byte[]> e = nextPending;
+                nextPending = null;
+                if (e.getValue() != DELETED) {
+                    return new SimpleImmutableEntry<>(e.getKey().getData(), e.getValue());
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<byte[], byte[]> next() {
+            Entry<byte[], byte[]> e = next;
+            next = advance();
+            return e;
+        }
+
+        @Override
+        public void close() {
+            stored.close();
+        }
+    }
+
+    /**
+     * A factory of {@link BatchDb}s which commits the buffered updates of all the
+     * databases as one unit of work.
+     * <p>
+     * Each database receives exactly one batch write per commit. To survive a
+     * crash, the updates are first persisted as a journal in the
+     * {@link DbName#INDEX} database, which is the only synced write of a commit.
+     * The journals are kept until the other databases are synced, which happens
+     * once every {@link #CHECKPOINT_INTERVAL} commits, and the leftover ones are
+     * replayed in order when the factory is created.
+     */
+    public static class BatchDbFactory implements DbFactory {
+
+        private static final Logger logger = LoggerFactory.getLogger(BatchDbFactory.class);
+
+        /**
+         * The prefix of the journal keys, which must not collide with the index DB
+         * key scheme. It's followed by the sequence number of the commit.
+         */
+        protected static final byte[] JOURNAL_KEY = Bytes.of("journal");
+
+        /**
+         * The number of commits between two syncs of all the databases.
+         */
+        protected static final int CHECKPOINT_INTERVAL = 64;
+
+        private final DbFactory factory;
+
+        private final EnumMap<DbName, BatchDb> databases = new EnumMap<>(DbName.class);
+
+        /**
+         * The number of journals written since the last checkpoint, which is also
+         * the sequence number of the next one.
+         */
+        private int journals;
+
+        public BatchDbFactory(DbFactory factory) {
+            this.factory = factory;
+
+            for (DbName name : DbName.values()) {
+                databases.put(name, new BatchDb(factory.getDB(name)));
+            }
+
+            recover();
+        }
+
+        @Override
+        public BatchDb getDB(DbName name) {
+            return databases.get(name);
+        }
+
+        /**
+         * Writes all the buffered updates into the underlying databases.
+         */
+        public synchronized void commit() {
+            EnumMap<DbName, List<Pair<byte[], byte[]>>> batches = new EnumMap<>(DbName.class);
+            for (DbName name : DbName.values()) {
+                List<Pair<byte[], byte[]>> pairs = databases.get(name).getUpdates();
+                if (!pairs.isEmpty()) {
+                    batches.put(name, pairs);
+                }
+            }
+            if (batches.isEmpty()) {
+                return;
+            }
+
+            List<Pair<byte[], byte[]>> journal = new ArrayList<>();
+            journal.add(Pair.of(journalKey(journals++), encodeJournal(batches)));
+            factory.getDB(DbName.INDEX).updateBatch(journal, true);
+
+            apply(batches);
+
+            for (Entry<DbName, List<Pair<byte[], byte[]>>> e : batches.entrySet()) {
+                databases.get(e.getKey()).clearUpdates(e.getValue());
+            }
+
+            if (journals >= CHECKPOINT_INTERVAL) {
+                checkpoint();
+            }
+        }
+
+        /**
+         * Drops all the buffered updates.
+         */
+        public synchronized void rollback() {
+            for (BatchDb db : databases.values()) {
+                db.rollback();
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            if (journals > 0) {
+                checkpoint();
+            }
+            factory.close();
+        }
+
+        /**
+         * Replays the journals of the commits which may not be durable, if any.
+         */
+        protected void recover() {
+            List<byte[]> pending = new ArrayList<>();
+            ClosableIterator<Entry<byte[], byte[]>> itr = factory.getDB(DbName.INDEX).iterator(JOURNAL_KEY);
+            try {
+                while (itr.hasNext()) {
+                    Entry<byte[], byte[]> e = itr.next();
+                    if (!isJournalKey(e.getKey())) {
+                        break;
+                    }
+                    pending.add(e.getValue());
+                }
+            } finally {
+                itr.close();
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            logger.info("Found {} unsynced write batches, replaying...", pending.size());
+            for (byte[] journal : pending) {
+                apply(decodeJournal(journal));
+            }
+            journals = pending.size();
+            checkpoint();
+        }
+
+        /**
+         * Applies the batches, the index database being the last one.
+         *
+         * @param batches
+         */
+        protected void apply(EnumMap<DbName, List<Pair<byte[], byte[]>>> batches) {
+            for (Entry<DbName, List<Pair<byte[], byte[]>>> e : batches.entrySet()) {
+                if (e.getKey() != DbName.INDEX) {
+                    factory.getDB(e.getKey()).updateBatch(e.getValue());
+                }
+            }
+
+            if (batches.containsKey(DbName.INDEX)) {
+                factory.getDB(DbName.INDEX).updateBatch(batches.get(DbName.INDEX));
+            }
+        }
+
+        /**
+         * Syncs all the databases, and removes the journals which are no longer
+         * needed. The removal isn't synced, as the next journal makes it durable,
+         * and replaying the journals of durable commits is harmless.
+         */
+        protected void checkpoint() {
+            for (DbName name : DbName.values()) {
+                if (name != DbName.INDEX) {
+                    // an empty synced batch flushes the log of the database
+                    factory.getDB(name).updateBatch(Collections.emptyList(), true);
+                }
+            }
+
+            List<Pair<byte[], byte[]>> removals = new ArrayList<>();
+            for (int i = 0; i < journals; i++) {
+                removals.add(Pair.of(journalKey(i), null));
+            }
+            factory.getDB(DbName.INDEX).updateBatch(removals);
+            journals = 0;
+        }
+
+        protected static byte[] journalKey(int seq) {
+            return Bytes.merge(JOURNAL_KEY, Bytes.of(seq));
+        }
+
+        private static boolean isJournalKey(byte[] key) {
+            return key.length == JOURNAL_KEY.length + 4
+                    && Arrays.equals(Arrays.copyOf(key, JOURNAL_KEY.length), JOURNAL_KEY);
+        }
+
+        protected byte[] encodeJournal(EnumMap<DbName, List<Pair<byte[], byte[]>>> batches) {
+            SimpleEncoder enc = new SimpleEncoder();
+            enc.writeInt(batches.size());
+            for (Entry<DbName, List<Pair<byte[], byte[]>>> e : batches.entrySet()) {
+                enc.writeByte((byte) e.getKey().ordinal());
+                enc.writeInt(e.getValue().size());
+                for (Pair<byte[], byte[]> p : e.getValue()) {
+                    enc.writeBytes(p.getKey());
+                    enc.writeBoolean(p.getValue() != null);
+                    if (p.getValue() != null) {
+                        enc.writeBytes(p.getValue());
+                    }
+                }
+            }
+            return enc.toBytes();
+        }
+
+        protected EnumMap<DbName, List<Pair<byte[], byte[]>>> decodeJournal(byte[] journal) {
+            EnumMap<DbName, List<Pair<byte[], byte[]>>> batches = new EnumMap<>(DbName.class);
+
+            SimpleDecoder dec = new SimpleDecoder(journal);
+            int n = dec.readInt();
+            for (int i = 0; i < n; i++) {
+                DbName name = DbName.values()[dec.readByte()];
+                List<Pair<byte[], byte[]>> pairs = new ArrayList<>();
+                int size = dec.readInt();
+                for (int j = 0; j < size; j++) {
+                    byte[] key = dec.readBytes();
+                    byte[] value = dec.readBoolean() ? dec.readBytes() : null;
+                    pairs.add(Pair.of(key, value));
+                }
+                batches.put(name, pairs);
+            }
+
+            return batches;
+        }
+    }
+}
@@ -53,6 +53,17 @@ public interface Db {
      */
     void updateBatch(List<Pair<byte[], byte[]>> pairs);
 
+    /**
+     * Updates a list of key value pairs, optionally waiting for the write to be
+     * synced to disk.
+     * 
+     * @param pairs
+     *            key value pairs; pair with null value, will be deleted
+     * @param sync
+     *            whether to sync the write to disk before returning
+     */
+    void updateBatch(List<Pair<byte[], byte[]>> pairs, boolean sync);
+
     /**
      * Returns all the keys.<br>
      * <br>
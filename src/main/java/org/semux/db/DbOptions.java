@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.db;
+
+/**
+ * The tuning options of one LevelDB database.
+ */
+public class DbOptions {
+
+    private long cacheSize = 64L * 1024L * 1024L;
+    private int blockSize = 4 * 1024 * 1024;
+    private int writeBufferSize = 8 * 1024 * 1024;
+    private boolean compression = false;
+    private boolean verifyChecksums = true;
+    private boolean paranoidChecks = true;
+    private int maxOpenFiles = 128;
+
+    /**
+     * Returns the default options of a database, tuned for its access pattern.
+     *
+     * @param name
+     * @return
+     */
+    public static DbOptions defaults(DbName name) {
+        switch (name) {
+        case BLOCK:
+            // append-only and mostly cold, read in large sequential chunks
+            return new DbOptions().cacheSize(16L * 1024L * 1024L).blockSize(64 * 1024)
+                    .writeBufferSize(16 * 1024 * 1024).compression(true);
+        case INDEX:
+            return new DbOptions().cacheSize(32L * 1024L * 1024L).blockSize(16 * 1024);
+        case ACCOUNT:
+            // small values, random point reads
+            return new DbOptions().cacheSize(64L * 1024L * 1024L).blockSize(4 * 1024);
+        case DELEGATE:
+            return new DbOptions().cacheSize(8L * 1024L * 1024L).blockSize(4 * 1024);
+        case VOTE:
+            return new DbOptions().cacheSize(32L * 1024L * 1024L).blockSize(4 * 1024);
+        default:
+            return new DbOptions();
+        }
+    }
+
+    /**
+     * Sets an option by its name, as used in the config file.
+     *
+     * @param option
+     * @param value
+     * @return whether the option is supported
+     * @throws NumberFormatException
+     *             if the value is not a valid number
+     */
+    public boolean set(String option, String value) {
+        switch (option) {
+        case "cacheSize":
+            cacheSize = Long.parseLong(value);
+            return true;
+        case "blockSize":
+            blockSize = Integer.parseInt(value);
+            return true;
+        case "writeBufferSize":
+            writeBufferSize = Integer.parseInt(value);
+            return true;
+        case "compression":
+            compression = Boolean.parseBoolean(value);
+            return true;
+        case "verifyChecksums":
+            verifyChecksums = Boolean.parseBoolean(value);
+            return true;
+        case "paranoidChecks":
+            paranoidChecks = Boolean.parseBoolean(value);
+            return true;
+        case "maxOpenFiles":
+            maxOpenFiles = Integer.parseInt(value);
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    public long cacheSize() {
+        return cacheSize;
+    }
+
+    public DbOptions cacheSize(long cacheSize) {
+        this.cacheSize = cacheSize;
+        return this;
+    }
+
+    public int blockSize() {
+        return blockSize;
+    }
+
+    public DbOptions blockSize(int blockSize) {
+        this.blockSize = blockSize;
+        return this;
+    }
+
+    public int writeBufferSize() {
+        return writeBufferSize;
+    }
+
+    public DbOptions writeBufferSize(int writeBufferSize) {
+        this.writeBufferSize = writeBufferSize;
+        return this;
+    }
+
+    /**
+     * Returns whether the blocks are compressed with Snappy.
+     *
+     * @return
+     */
+    public boolean compression() {
+        return compression;
+    }
+
+    public DbOptions compression(boolean compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    public boolean verifyChecksums() {
+        return verifyChecksums;
+    }
+
+    public DbOptions verifyChecksums(boolean verifyChecksums) {
+        this.verifyChecksums = verifyChecksums;
+        return this;
+    }
+
+    public boolean paranoidChecks() {
+        return paranoidChecks;
+    }
+
+    public DbOptions paranoidChecks(boolean paranoidChecks) {
+        this.paranoidChecks = paranoidChecks;
+        return this;
+    }
+
+    public int maxOpenFiles() {
+        return maxOpenFiles;
+    }
+
+    public DbOptions maxOpenFiles(int maxOpenFiles) {
+        this.maxOpenFiles = maxOpenFiles;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "DbOptions [cacheSize=" + cacheSize + ", blockSize=" + blockSize + ", writeBufferSize="
+                + writeBufferSize + ", compression=" + compression + ", verifyChecksums=" + verifyChecksums
+                + ", paranoidChecks=" + paranoidChecks + ", maxOpenFiles=" + maxOpenFiles + "]";
+    }
+}
@@ -14,6 +14,7 @@ import java.util.EnumMap;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 import org.apache.commons.lang3.tuple.Pair;
 import org.fusesource.leveldbjni.JniDBFactory;
@@ -22,6 +23,7 @@ import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBIterator;
 import org.iq80.leveldb.Options;
 import org.iq80.leveldb.WriteBatch;
+import org.iq80.leveldb.WriteOptions;
 import org.semux.config.Constants;
 import org.semux.db.exception.LevelDbException;
 import org.semux.util.ClosableIterator;
@@ -35,11 +37,17 @@ public class LevelDb implements Db {
     private static final Logger logger = LoggerFactory.getLogger(LevelDb.class);
 
     private File file;
+    private DbOptions dbOptions;
     private DB db;
     private boolean isOpened;
 
     public LevelDb(File file) {
+        this(file, new DbOptions());
+    }
+
+    public LevelDb(File file, DbOptions dbOptions) {
         this.file = file;
+        this.dbOptions = dbOptions;
 
         File dir = file.getParentFile();
         if (!dir.exists() && !dir.mkdirs()) {
@@ -50,20 +58,20 @@ public class LevelDb implements Db {
     }
 
     /**
-     * Creates the default options.
+     * Creates the LevelDB options from the {@link DbOptions} of this database.
      *
      * @return
      */
     protected Options createOptions() {
         Options options = new Options();
         options.createIfMissing(true);
-        options.compressionType(CompressionType.NONE);
-        options.blockSize(4 * 1024 * 1024);
-        options.writeBufferSize(8 * 1024 * 1024);
-        options.cacheSize(64L * 1024L * 1024L);
-        options.paranoidChecks(true);
-        options.verifyChecksums(true);
-        options.maxOpenFiles(128);
+        options.compressionType(dbOptions.compression() ? CompressionType.SNAPPY : CompressionType.NONE);
+        options.blockSize(dbOptions.blockSize());
+        options.writeBufferSize(dbOptions.writeBufferSize());
+        options.cacheSize(dbOptions.cacheSize());
+        options.paranoidChecks(dbOptions.paranoidChecks());
+        options.verifyChecksums(dbOptions.verifyChecksums());
+        options.maxOpenFiles(dbOptions.maxOpenFiles());
 
         return options;
     }
@@ -130,6 +138,11 @@ public class LevelDb implements Db {
 
     @Override
     public void updateBatch(List<Pair<byte[], byte[]>> pairs) {
+        updateBatch(pairs, false);
+    }
+
+    @Override
+    public void updateBatch(List<Pair<byte[], byte[]>> pairs, boolean sync) {
         try (WriteBatch batch = db.createWriteBatch()) {
             for (Pair<byte[], byte[]> p : pairs) {
                 if (p.getValue() == null) {
@@ -138,7 +151,7 @@ public class LevelDb implements Db {
                     batch.put(p.getLeft(), p.getRight());
                 }
             }
-            db.write(batch);
+            db.write(batch, new WriteOptions().sync(sync));
         } catch (IOException e) {
             logger.error("Failed to update batch", e);
             SystemUtil.exitAsync(-1);
@@ -209,10 +222,28 @@ public class LevelDb implements Db {
         private EnumMap<DbName, Db> databases = new EnumMap<>(DbName.class);
 
         private File dataDir;
+        private Function<DbName, DbOptions> options;
         private AtomicBoolean open;
 
+        /**
+         * Creates the databases with their default options.
+         *
+         * @param dataDir
+         */
         public LevelDbFactory(File dataDir) {
+            this(dataDir, DbOptions::defaults);
+        }
+
+        /**
+         * Creates the databases with the given options.
+         *
+         * @param dataDir
+         * @param options
+         *            the options of each database
+         */
+        public LevelDbFactory(File dataDir, Function<DbName, DbOptions> options) {
             this.dataDir = dataDir;
+            this.options = options;
             this.open = new AtomicBoolean(false);
 
             open();
@@ -223,7 +254,7 @@ public class LevelDb implements Db {
                 for (DbName name : DbName.values()) {
                     File file = new File(dataDir,
                             Constants.DATABASE_DIR + File.separator + name.toString().toLowerCase());
-                    databases.put(name, new LevelDb(file));
+                    databases.put(name, new LevelDb(file, options.apply(name)));
                 }
             }
         }
@@ -24,9 +24,29 @@ public enum Capability {
     /**
      * A mandatory capability of Semux testnet.
      */
-    SEM_TESTNET;
+    SEM_TESTNET,
 
-    // TODO: BATCH_SYNC
+    /**
+     * An optional capability which indicates the peer serves ranges of blocks
+     * through ${@link org.semux.net.msg.MessageCode#GET_BLOCKS}.
+     */
+    BATCH_SYNC,
+
+    /**
+     * An optional capability which indicates the peer relays transactions by
+     * announcing their hashes, through
+     * ${@link org.semux.net.msg.MessageCode#TX_HASHES} and
+     * ${@link org.semux.net.msg.MessageCode#GET_TXS}.
+     */
+    TX_INVENTORY,
+
+    /**
+     * An optional capability which indicates the peer accepts proposals which
+     * reference the transactions by short ID, through
+     * ${@link org.semux.net.msg.MessageCode#BFT_COMPACT_PROPOSAL} and
+     * ${@link org.semux.net.msg.MessageCode#BFT_GET_PROPOSAL_TXS}.
+     */
+    COMPACT_PROPOSAL;
 
     // TODO: FAST_SYNC
 
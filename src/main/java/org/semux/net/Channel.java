@@ -27,6 +27,8 @@ public class Channel {
 
     private MessageQueue msgQueue;
 
+    private TransactionInventory txInventory = new TransactionInventory();
+
     private boolean isActive;
 
     /**
@@ -82,6 +84,15 @@ public class Channel {
         return msgQueue;
     }
 
+    /**
+     * Returns the transaction inventory of the remote peer.
+     * 
+     * @return
+     */
+    public TransactionInventory getTxInventory() {
+        return txInventory;
+    }
+
     /**
      * Returns whether this is an inbound channel.
      * 
@@ -7,6 +7,7 @@
 package org.semux.net;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCounted;
 
 /**
  * Represent a frame in the Semux network. Numbers are signed and in big-endian.
@@ -16,8 +17,11 @@ import io.netty.buffer.ByteBuf;
  * <li><code>HEADER := VERSION + COMPRESS_TYPE + PACKET_TYPE + PACKET_ID + PACKET_SIZE + BODY_SIZE</code></li>
  * <li><code>BODY := BINARY_DATA</code></li>
  * </ul>
+ * 
+ * The body is a buffer, usually a slice of a larger pooled buffer, and the
+ * reference count of a frame is the reference count of its body.
  */
-public class Frame {
+public class Frame implements ReferenceCounted {
 
     public static final int HEADER_SIZE = 16;
 
@@ -33,10 +37,10 @@ public class Frame {
     protected int packetSize; /* packet size, 4 bytes */
     protected int bodySize; /* body size, 4 bytes */
 
-    protected byte[] body;
+    protected ByteBuf body;
 
     public Frame(short version, byte compressType, byte packetType, int packetId, int packetSize, int bodySize,
-            byte[] body) {
+            ByteBuf body) {
         this.version = version;
         this.compressType = compressType;
         this.packetType = packetType;
@@ -76,16 +80,16 @@ public class Frame {
      * 
      * @return
      */
-    public byte[] getBody() {
+    public ByteBuf getBody() {
         return body;
     }
 
     /**
-     * Sets the frame body.
+     * Sets the frame body, which is released with the frame.
      * 
      * @param body
      */
-    public void setBody(byte[] body) {
+    public void setBody(ByteBuf body) {
         this.body = body;
     }
 
@@ -128,6 +132,53 @@ public class Frame {
         return new Frame(version, compressType, packetType, packetId, packetSize, bodySize, null);
     }
 
+    @Override
+    public int refCnt() {
+        return body == null ? 1 : body.refCnt();
+    }
+
+    @Override
+    public Frame retain() {
+        if (body != null) {
+            body.retain();
+        }
+        return this;
+    }
+
+    @Override
+    public Frame retain(int increment) {
+        if (body != null) {
+            body.retain(increment);
+        }
+        return this;
+    }
+
+    @Override
+    public Frame touch() {
+        if (body != null) {
+            body.touch();
+        }
+        return this;
+    }
+
+    @Override
+    public Frame touch(Object hint) {
+        if (body != null) {
+            body.touch(hint);
+        }
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return body != null && body.release();
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return body != null && body.release(decrement);
+    }
+
     @Override
     public String toString() {
         return "Frame [version=" + version + ", compressType=" + compressType + ", packetType=" + packetType
@@ -10,81 +10,94 @@ import java.io.IOException;
 import java.util.List;
 
 import org.semux.config.Config;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.ByteToMessageCodec;
+import io.netty.channel.CombinedChannelDuplexHandler;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.MessageToMessageEncoder;
 
-public class SemuxFrameHandler extends ByteToMessageCodec<Frame> {
-
-    private static final Logger logger = LoggerFactory.getLogger(SemuxFrameHandler.class);
-
-    private Config config;
+/**
+ * Splits the inbound bytes into frames, and writes the outbound frames. Frame
+ * bodies are not copied: inbound bodies are slices of the receiving buffer,
+ * and outbound bodies are written along with a pooled header buffer.
+ */
+public class SemuxFrameHandler
+        extends CombinedChannelDuplexHandler<SemuxFrameHandler.Decoder, SemuxFrameHandler.Encoder> {
 
     public SemuxFrameHandler(Config config) {
-        this.config = config;
+        init(new Decoder(config), new Encoder(config));
     }
 
-    @Override
-    protected void encode(ChannelHandlerContext ctx, Frame frame, ByteBuf out) throws Exception {
-        // check version
-        if (frame.getVersion() != Frame.VERSION) {
-            logger.error("Invalid frame version: {}", frame.getVersion());
-            return;
-        }
-
-        // check body size
-        int bodySize = frame.getBodySize();
-        if (bodySize < 0 || bodySize > config.netMaxFrameBodySize()) {
-            logger.error("Invalid frame body size: {}", bodySize);
-            return;
-        }
-
-        // create a buffer
-        ByteBuf buf = out.alloc().buffer(Frame.HEADER_SIZE + bodySize);
-        frame.writeHeader(buf);
-        buf.writeBytes(frame.getBody());
+    protected static class Encoder extends MessageToMessageEncoder<Frame> {
 
-        // NOTE: write() operation does not flush automatically
+        private Config config;
 
-        // write to context
-        ctx.write(buf);
-    }
+        public Encoder(Config config) {
+            this.config = config;
+        }
 
-    @Override
-    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
-        if (in.readableBytes() < Frame.HEADER_SIZE) {
-            return;
+        @Override
+        protected void encode(ChannelHandlerContext ctx, Frame frame, List<Object> out) throws Exception {
+            // check version
+            if (frame.getVersion() != Frame.VERSION) {
+                throw new IOException("Invalid frame version: " + frame.getVersion());
+            }
+
+            // check body size
+            int bodySize = frame.getBodySize();
+            if (bodySize < 0 || bodySize > config.netMaxFrameBodySize()) {
+                throw new IOException("Invalid frame body size: " + bodySize);
+            }
+
+            // create a header buffer, and combine it with the body
+            ByteBuf header = ctx.alloc().buffer(Frame.HEADER_SIZE);
+            frame.writeHeader(header);
+
+            // the frame is released by the encoder, the body by the buffer
+            out.add(ctx.alloc().compositeBuffer(2).addComponents(true, header, frame.getBody().retain()));
         }
+    }
 
-        // read frame header
-        int readerIndex = in.readerIndex();
-        Frame frame = Frame.readHeader(in);
+    protected static class Decoder extends ByteToMessageDecoder {
 
-        // check version
-        if (frame.getVersion() != Frame.VERSION) {
-            throw new IOException("Invalid frame version: " + frame.getVersion());
-        }
+        private Config config;
 
-        // check body size
-        int bodySize = frame.getBodySize();
-        if (bodySize < 0 || bodySize > config.netMaxFrameBodySize()) {
-            throw new IOException("Invalid frame body size: " + bodySize);
+        public Decoder(Config config) {
+            this.config = config;
         }
 
-        if (in.readableBytes() < bodySize) {
-            // reset reader index if not available
-            in.readerIndex(readerIndex);
-        } else {
-            // read body
-            byte[] body = new byte[bodySize];
-            in.readBytes(body);
-            frame.setBody(body);
-
-            // deliver
-            out.add(frame);
+        @Override
+        protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+            if (in.readableBytes() < Frame.HEADER_SIZE) {
+                return;
+            }
+
+            // read frame header
+            int readerIndex = in.readerIndex();
+            Frame frame = Frame.readHeader(in);
+
+            // check version
+            if (frame.getVersion() != Frame.VERSION) {
+                throw new IOException("Invalid frame version: " + frame.getVersion());
+            }
+
+            // check body size
+            int bodySize = frame.getBodySize();
+            if (bodySize < 0 || bodySize > config.netMaxFrameBodySize()) {
+                throw new IOException("Invalid frame body size: " + bodySize);
+            }
+
+            if (in.readableBytes() < bodySize) {
+                // reset reader index if not available
+                in.readerIndex(readerIndex);
+            } else {
+                // read body, without copying
+                frame.setBody(in.readRetainedSlice(bodySize));
+
+                // deliver
+                out.add(frame);
+            }
         }
     }
-}
\ No newline at end of file
+}
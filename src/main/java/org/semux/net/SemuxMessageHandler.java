@@ -7,12 +7,11 @@
 package org.semux.net;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.commons.lang3.tuple.Pair;
 import org.semux.config.Config;
 import org.semux.net.msg.Message;
 import org.semux.net.msg.MessageException;
@@ -21,12 +20,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xerial.snappy.Snappy;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
-
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageCodec;
 
+/**
+ * Converts messages to frames and back, compressing the payload.
+ * <p>
+ * An outbound message is compressed into one pooled buffer, and the frames are
+ * slices of it. The frames of an inbound chunked packet are reassembled into a
+ * composite buffer, and decompressed straight into the message bytes.
+ */
 public class SemuxMessageHandler extends MessageToMessageCodec<Frame, Message> {
 
     private static final Logger logger = LoggerFactory.getLogger(SemuxMessageHandler.class);
@@ -35,8 +40,22 @@ public class SemuxMessageHandler extends MessageToMessageCodec<Frame, Message> {
 
     private static final byte COMPRESS_TYPE = Frame.COMPRESS_SNAPPY;
 
-    private final Cache<Integer, Pair<List<Frame>, AtomicInteger>> incompletePackets = Caffeine.newBuilder()
-            .maximumSize(MAX_PACKETS).build();
+    /**
+     * Packets being reassembled, by packet ID, only accessed by the event loop.
+     * The oldest one is released when there are too many.
+     */
+    private final Map<Integer, IncompletePacket> incompletePackets = new LinkedHashMap<Integer, IncompletePacket>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, IncompletePacket> eldest) {
+            if (size() > MAX_PACKETS) {
+                eldest.getValue().buffer.release();
+                return true;
+            }
+            return false;
+        }
+    };
 
     private Config config;
 
@@ -53,113 +72,180 @@ public class SemuxMessageHandler extends MessageToMessageCodec<Frame, Message> {
     @Override
     protected void encode(ChannelHandlerContext ctx, Message msg, List<Object> out) throws Exception {
         byte[] data = msg.getEncoded();
-        byte[] dataCompressed = data;
 
+        ByteBuf packet;
         switch (COMPRESS_TYPE) {
         case Frame.COMPRESS_SNAPPY:
-            dataCompressed = Snappy.compress(data);
+            // Snappy reads and writes arrays, so the packet is a heap buffer
+            packet = ctx.alloc().heapBuffer(Snappy.maxCompressedLength(data.length));
+            try {
+                int length = Snappy.compress(data, 0, data.length, packet.array(),
+                        packet.arrayOffset() + packet.writerIndex());
+                packet.writerIndex(packet.writerIndex() + length);
+            } catch (IOException e) {
+                packet.release();
+                throw e;
+            }
             break;
         case Frame.COMPRESS_NONE:
+            packet = ctx.alloc().buffer(data.length).writeBytes(data);
             break;
         default:
             logger.error("Unsupported compress type: " + COMPRESS_TYPE);
             return;
         }
 
-        byte packetType = msg.getCode().toByte();
-        int packetId = count.incrementAndGet();
-        int packetSize = dataCompressed.length;
+        try {
+            byte packetType = msg.getCode().toByte();
+            int packetId = count.incrementAndGet();
+            int packetSize = packet.readableBytes();
 
-        if (data.length > config.netMaxPacketSize() || dataCompressed.length > config.netMaxPacketSize()) {
-            logger.error("Invalid packet size, max = {}, actual = {}", config.netMaxPacketSize(), packetSize);
-            return;
-        }
+            if (data.length > config.netMaxPacketSize() || packetSize > config.netMaxPacketSize()) {
+                logger.error("Invalid packet size, max = {}, actual = {}", config.netMaxPacketSize(), packetSize);
+                return;
+            }
 
-        int limit = config.netMaxFrameBodySize();
-        int total = (dataCompressed.length - 1) / limit + 1;
-        for (int i = 0; i < total; i++) {
-            byte[] body = new byte[(i < total - 1) ? limit : dataCompressed.length % limit];
-            System.arraycopy(dataCompressed, i * limit, body, 0, body.length);
+            int limit = config.netMaxFrameBodySize();
+            int total = (packetSize - 1) / limit + 1;
+            for (int i = 0; i < total; i++) {
+                int bodySize = (i < total - 1) ? limit : packetSize - i * limit;
+                ByteBuf body = packet.retainedSlice(packet.readerIndex() + i * limit, bodySize);
 
-            out.add(new Frame(Frame.VERSION, COMPRESS_TYPE, packetType, packetId, packetSize, body.length, body));
+                out.add(new Frame(Frame.VERSION, COMPRESS_TYPE, packetType, packetId, packetSize, bodySize, body));
+            }
+        } finally {
+            packet.release();
         }
     }
 
     @Override
     protected void decode(ChannelHandlerContext ctx, Frame frame, List<Object> out) throws Exception {
         if (frame.isChunked()) {
-            synchronized (incompletePackets) {
-                int packetId = frame.getPacketId();
-                Pair<List<Frame>, AtomicInteger> pair = incompletePackets.getIfPresent(packetId);
-                if (pair == null) {
-                    int packetSize = frame.getPacketSize();
-                    if (packetSize < 0 || packetSize > config.netMaxPacketSize()) {
-                        // this will kill the connection
-                        throw new IOException("Invalid packet size: " + packetSize);
-                    }
-
-                    pair = Pair.of(new ArrayList<>(), new AtomicInteger(packetSize));
-                    incompletePackets.put(packetId, pair);
+            int packetId = frame.getPacketId();
+            IncompletePacket packet = incompletePackets.get(packetId);
+            if (packet == null) {
+                int packetSize = frame.getPacketSize();
+                if (packetSize < 0 || packetSize > config.netMaxPacketSize()) {
+                    // this will kill the connection
+                    throw new IOException("Invalid packet size: " + packetSize);
                 }
 
-                pair.getLeft().add(frame);
-                int remaining = pair.getRight().addAndGet(-frame.getBodySize());
-                if (remaining == 0) {
-                    out.add(decodeMessage(pair.getLeft()));
+                packet = new IncompletePacket(frame,
+                        ctx.alloc().compositeBuffer(packetSize / config.netMaxFrameBodySize() + 1));
+                incompletePackets.put(packetId, packet);
+            } else if (!packet.matches(frame)) {
+                // only the header of the first frame is checked
+                throw new IOException("Inconsistent frame header of packet: " + packetId);
+            }
 
-                    // remove complete packets from cache
-                    incompletePackets.invalidate(packetId);
-                } else if (remaining < 0) {
-                    throw new IOException("Packet remaining size went to negative");
+            // the frame is released by the codec, the body by the packet
+            CompositeByteBuf buffer = packet.buffer;
+            buffer.addComponent(true, frame.getBody().retain());
+            int remaining = packet.packetSize - buffer.readableBytes();
+            if (remaining == 0) {
+                incompletePackets.remove(packetId);
+
+                try {
+                    out.add(decodeMessage(packet.packetType, packet.compressType, buffer));
+                } finally {
+                    buffer.release();
                 }
+            } else if (remaining < 0) {
+                throw new IOException("Packet remaining size went to negative");
             }
         } else {
-            out.add(decodeMessage(Collections.singletonList(frame)));
+            out.add(decodeMessage(frame.getPacketType(), frame.getCompressType(), frame.getBody()));
         }
     }
 
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        // release the buffers of incomplete packets
+        for (IncompletePacket packet : incompletePackets.values()) {
+            packet.buffer.release();
+        }
+        incompletePackets.clear();
+
+        super.handlerRemoved(ctx);
+    }
+
     /**
-     * Decode message from the frames.
+     * Decode message from a packet.
      * 
-     * @param frames
+     * @param packetType
+     * @param compressType
+     * @param packet
+     *            the packet, which is not released
      * @return
      * @throws MessageException
      */
-    protected Message decodeMessage(List<Frame> frames) throws MessageException {
-        if (frames == null || frames.isEmpty()) {
-            throw new MessageException("Frames can't be null or empty");
-        }
-        Frame head = frames.get(0);
-
-        byte packetType = head.getPacketType();
-        int packetSize = head.getPacketSize();
-
-        byte[] data = new byte[packetSize];
-        int pos = 0;
-        for (Frame frame : frames) {
-            System.arraycopy(frame.getBody(), 0, data, pos, frame.getBodySize());
-            pos += frame.getBodySize();
+    protected Message decodeMessage(byte packetType, byte compressType, ByteBuf packet) throws MessageException {
+        if (packet == null) {
+            throw new MessageException("Packet can't be null");
         }
 
-        switch (head.getCompressType()) {
+        byte[] data;
+        switch (compressType) {
         case Frame.COMPRESS_SNAPPY:
+            // socket buffers are direct, so copy the compressed bytes to a pooled heap buffer
+            ByteBuf heap = null;
+            if (!packet.hasArray()) {
+                heap = packet.alloc().heapBuffer(packet.readableBytes());
+                heap.writeBytes(packet, packet.readerIndex(), packet.readableBytes());
+            }
             try {
+                ByteBuf compressed = heap == null ? packet : heap;
+                byte[] array = compressed.array();
+                int offset = compressed.arrayOffset() + compressed.readerIndex();
+                int length = compressed.readableBytes();
+
                 // check uncompressed length to avoid OOM vulnerability
-                int length = Snappy.uncompressedLength(data);
-                if (length > config.netMaxPacketSize()) {
-                    throw new MessageException("Uncompressed data length is too big: " + length);
+                int uncompressedLength = Snappy.uncompressedLength(array, offset, length);
+                if (uncompressedLength > config.netMaxPacketSize()) {
+                    throw new MessageException("Uncompressed data length is too big: " + uncompressedLength);
                 }
-                data = Snappy.uncompress(data);
+                data = new byte[uncompressedLength];
+                Snappy.uncompress(array, offset, length, data, 0);
             } catch (IOException e) {
                 throw new MessageException(e);
+            } finally {
+                if (heap != null) {
+                    heap.release();
+                }
             }
             break;
         case Frame.COMPRESS_NONE:
+            data = new byte[packet.readableBytes()];
+            packet.getBytes(packet.readerIndex(), data);
             break;
         default:
-            throw new MessageException("Unsupported compress type: " + head.getCompressType());
+            throw new MessageException("Unsupported compress type: " + compressType);
         }
 
         return messageFactory.create(packetType, data);
     }
-}
\ No newline at end of file
+
+    /**
+     * A packet being reassembled, with the header of its first frame, which has
+     * been checked.
+     */
+    private static class IncompletePacket {
+        private final byte compressType;
+        private final byte packetType;
+        private final int packetSize;
+        private final CompositeByteBuf buffer;
+
+        IncompletePacket(Frame first, CompositeByteBuf buffer) {
+            this.compressType = first.getCompressType();
+            this.packetType = first.getPacketType();
+            this.packetSize = first.getPacketSize();
+            this.buffer = buffer;
+        }
+
+        boolean matches(Frame frame) {
+            return frame.getCompressType() == compressType
+                    && frame.getPacketType() == packetType
+                    && frame.getPacketSize() == packetSize;
+        }
+    }
+}
@@ -12,10 +12,14 @@ import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
@@ -23,12 +27,12 @@ import java.util.stream.Collectors;
 import org.semux.Kernel;
 import org.semux.Network;
 import org.semux.config.Config;
-import org.semux.core.Block;
 import org.semux.core.BlockHeader;
 import org.semux.core.Blockchain;
 import org.semux.core.Consensus;
 import org.semux.core.PendingManager;
 import org.semux.core.SyncManager;
+import org.semux.core.Transaction;
 import org.semux.net.NodeManager.Node;
 import org.semux.net.msg.Message;
 import org.semux.net.msg.MessageQueue;
@@ -38,14 +42,18 @@ import org.semux.net.msg.consensus.BlockHeaderMessage;
 import org.semux.net.msg.consensus.BlockMessage;
 import org.semux.net.msg.consensus.GetBlockHeaderMessage;
 import org.semux.net.msg.consensus.GetBlockMessage;
+import org.semux.net.msg.consensus.GetBlocksMessage;
 import org.semux.net.msg.consensus.NewHeightMessage;
 import org.semux.net.msg.p2p.DisconnectMessage;
 import org.semux.net.msg.p2p.GetNodesMessage;
+import org.semux.net.msg.p2p.GetTransactionsMessage;
 import org.semux.net.msg.p2p.HelloMessage;
 import org.semux.net.msg.p2p.NodesMessage;
 import org.semux.net.msg.p2p.PingMessage;
 import org.semux.net.msg.p2p.PongMessage;
+import org.semux.net.msg.p2p.TransactionHashesMessage;
 import org.semux.net.msg.p2p.TransactionMessage;
+import org.semux.net.msg.p2p.TransactionsMessage;
 import org.semux.net.msg.p2p.WorldMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -60,6 +68,11 @@ public class SemuxP2pHandler extends SimpleChannelInboundHandler<Message> {
 
     private final static Logger logger = LoggerFactory.getLogger(SemuxP2pHandler.class);
 
+    /**
+     * The interval of transaction announcements, in milliseconds.
+     */
+    private static final long TX_ANNOUNCE_INTERVAL = 200;
+
     private static ScheduledExecutorService exec = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
         private AtomicInteger cnt = new AtomicInteger(0);
 
@@ -69,6 +82,29 @@ public class SemuxP2pHandler extends SimpleChannelInboundHandler<Message> {
         }
     });
 
+    /**
+     * The number of threads serving blocks and block headers.
+     */
+    private static final int BLOCK_SERVER_THREADS = 2;
+
+    /**
+     * The maximum number of pending block requests, of all the peers. Beyond it,
+     * GET_BLOCKS requests are dropped, as peers ask again when their downloads
+     * expire, and requests expecting a response are served on the event loop.
+     */
+    private static final int BLOCK_SERVER_QUEUE_SIZE = 1024;
+
+    private static ExecutorService blockServer = new ThreadPoolExecutor(BLOCK_SERVER_THREADS,
+            BLOCK_SERVER_THREADS, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(BLOCK_SERVER_QUEUE_SIZE),
+            new ThreadFactory() {
+                private AtomicInteger cnt = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    return new Thread(r, "block-server-" + cnt.getAndIncrement());
+                }
+            });
+
     private Channel channel;
 
     private Config config;
@@ -87,6 +123,7 @@ public class SemuxP2pHandler extends SimpleChannelInboundHandler<Message> {
 
     private ScheduledFuture<?> getNodes = null;
     private ScheduledFuture<?> pingPong = null;
+    private ScheduledFuture<?> announceTxs = null;
 
     /**
      * Creates a new P2P handler.
@@ -139,6 +176,15 @@ public class SemuxP2pHandler extends SimpleChannelInboundHandler<Message> {
         stopTimers();
     }
 
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            msgQueue.scheduleFlush();
+        }
+
+        super.channelWritabilityChanged(ctx);
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
         logger.debug("Exception in P2P handler, cid = {}", channel.getId(), cause);
@@ -249,16 +295,66 @@ public class SemuxP2pHandler extends SimpleChannelInboundHandler<Message> {
         }
         case TRANSACTION: {
             TransactionMessage transactionMsg = (TransactionMessage) msg;
+            channel.getTxInventory().markKnown(transactionMsg.getTransaction().getHash());
             pendingMgr.addTransaction(transactionMsg.getTransaction());
             break;
         }
+        case TX_HASHES: {
+            TransactionHashesMessage m = (TransactionHashesMessage) msg;
+            if (isHandshakeDone && m.validate()) {
+                // pull the transactions which are not known yet
+                List<byte[]> hashes = new ArrayList<>();
+                for (byte[] hash : m.getHashes()) {
+                    channel.getTxInventory().markKnown(hash);
+                    if (pendingMgr.requestTransaction(hash, channel)) {
+                        hashes.add(hash);
+                    }
+                }
+                if (!hashes.isEmpty()) {
+                    msgQueue.sendMessage(new GetTransactionsMessage(hashes));
+                }
+            }
+            break;
+        }
+        case GET_TXS: {
+            GetTransactionsMessage m = (GetTransactionsMessage) msg;
+            if (isHandshakeDone && m.validate()) {
+                List<Transaction> txs = new ArrayList<>();
+                for (byte[] hash : m.getHashes()) {
+                    Transaction tx = pendingMgr.getTransaction(hash);
+                    if (tx != null) {
+                        channel.getTxInventory().markKnown(hash);
+                        txs.add(tx);
+                    }
+                }
+                if (!txs.isEmpty()) {
+                    msgQueue.sendMessage(new TransactionsMessage(txs));
+                }
+            }
+            break;
+        }
+        case TRANSACTIONS: {
+            TransactionsMessage m = (TransactionsMessage) msg;
+            if (isHandshakeDone && m.validate()) {
+                for (Transaction tx : m.getTransactions()) {
+                    channel.getTxInventory().markKnown(tx.getHash());
+                    pendingMgr.addTransaction(tx);
+                }
+            }
+            break;
+        }
 
         /* sync */
         case GET_BLOCK: {
             if (isHandshakeDone) {
                 GetBlockMessage m = (GetBlockMessage) msg;
-                Block block = chain.getBlock(m.getNumber());
-                channel.getMessageQueue().sendMessage(new BlockMessage(block));
+                serve(() -> {
+                    byte[] bytes = chain.getBlockBytes(m.getNumber());
+                    if (bytes == null) {
+                        throw new IllegalStateException("Requested block not found: " + m.getNumber());
+                    }
+                    msgQueue.sendMessage(BlockMessage.fromBlockBytes(bytes));
+                }, true);
             }
             break;
         }
@@ -271,8 +367,13 @@ public class SemuxP2pHandler extends SimpleChannelInboundHandler<Message> {
         case GET_BLOCK_HEADER: {
             if (isHandshakeDone) {
                 GetBlockHeaderMessage m = (GetBlockHeaderMessage) msg;
-                BlockHeader header = chain.getBlockHeader(m.getNumber());
-                channel.getMessageQueue().sendMessage(new BlockHeaderMessage(header));
+                serve(() -> {
+                    BlockHeader header = chain.getBlockHeader(m.getNumber());
+                    if (header == null) {
+                        throw new IllegalStateException("Requested block header not found: " + m.getNumber());
+                    }
+                    msgQueue.sendMessage(new BlockHeaderMessage(header));
+                }, true);
             }
             break;
         }
@@ -282,12 +383,23 @@ public class SemuxP2pHandler extends SimpleChannelInboundHandler<Message> {
             }
             break;
         }
+        case GET_BLOCKS: {
+            if (isHandshakeDone) {
+                GetBlocksMessage m = (GetBlocksMessage) msg;
+                long to = Math.min(m.getTo(), m.getFrom() + GetBlocksMessage.MAX_BLOCKS_PER_REQUEST - 1);
+                serveBlocks(m.getFrom(), to);
+            }
+            break;
+        }
 
         /* consensus */
         case BFT_NEW_HEIGHT:
         case BFT_NEW_VIEW:
         case BFT_PROPOSAL:
-        case BFT_VOTE: {
+        case BFT_VOTE:
+        case BFT_COMPACT_PROPOSAL:
+        case BFT_GET_PROPOSAL_TXS:
+        case BFT_PROPOSAL_TXS: {
             if (isHandshakeDone) {
                 consensus.onMessage(channel, msg);
             }
@@ -339,6 +451,12 @@ public class SemuxP2pHandler extends SimpleChannelInboundHandler<Message> {
             pingPong = exec.scheduleAtFixedRate(() -> msgQueue.sendMessage(new PingMessage()),
                     channel.isInbound() ? 1 : 0, 1, TimeUnit.MINUTES);
 
+            // start transaction announcements
+            if (peer.getCapabilities().isSupported(Capability.TX_INVENTORY)) {
+                announceTxs = exec.scheduleAtFixedRate(this::announceTransactions,
+                        TX_ANNOUNCE_INTERVAL, TX_ANNOUNCE_INTERVAL, TimeUnit.MILLISECONDS);
+            }
+
             // set indicator
             isHandshakeDone = true;
         } else {
@@ -346,6 +464,71 @@ public class SemuxP2pHandler extends SimpleChannelInboundHandler<Message> {
         }
     }
 
+    /**
+     * Announces the transactions accepted since the last announcement, in batches.
+     */
+    private void announceTransactions() {
+        List<byte[]> hashes;
+        while (!(hashes = channel.getTxInventory().pollAnnouncements(TransactionHashesMessage.MAX_HASHES))
+                .isEmpty()) {
+            msgQueue.sendMessage(new TransactionHashesMessage(hashes));
+        }
+    }
+
+    /**
+     * Sends the serialized blocks in a range, stopping at the first missing block.
+     *
+     * @param from
+     * @param to
+     */
+    private void serveBlocks(long from, long to) {
+        serve(() -> {
+            for (long i = from; i <= to; i++) {
+                byte[] bytes = chain.getBlockBytes(i);
+                if (bytes == null) {
+                    break;
+                }
+                msgQueue.sendMessage(BlockMessage.fromBlockBytes(bytes));
+            }
+        }, false);
+    }
+
+    /**
+     * Runs a block request off the event loop.
+     * <p>
+     * The peer's message queue waits for the response of a request which expects
+     * one, before sending anything else. Such a request is never dropped: it's
+     * served on the event loop when too many are pending, and the channel is
+     * closed if it fails. Other requests are dropped in both cases.
+     *
+     * @param task
+     * @param expectsResponse
+     */
+    private void serve(Runnable task, boolean expectsResponse) {
+        Runnable r = () -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                logger.debug("Failed to serve block request, cid = {}", channel.getId(), e);
+                if (expectsResponse) {
+                    // the timers are stopped when the channel becomes inactive
+                    msgQueue.disconnect(ReasonCode.BAD_PEER);
+                }
+            }
+        };
+
+        try {
+            blockServer.execute(r);
+        } catch (RejectedExecutionException e) {
+            if (expectsResponse) {
+                logger.debug("Too many block requests, serving one from cid = {} inline", channel.getId());
+                r.run();
+            } else {
+                logger.debug("Too many block requests, dropping one from cid = {}", channel.getId());
+            }
+        }
+    }
+
     /**
      * Returns whether the p2p version is supported.
      *
@@ -378,6 +561,11 @@ public class SemuxP2pHandler extends SimpleChannelInboundHandler<Message> {
             pingPong = null;
         }
 
+        if (announceTxs != null) {
+            announceTxs.cancel(false);
+            announceTxs = null;
+        }
+
         msgQueue.deactivate();
     }
 }
@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.net;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.semux.util.BloomFilter;
+import org.semux.util.ByteArray;
+
+/**
+ * The transaction inventory of one peer: the hashes of the transactions which
+ * the peer is known to have, because it has announced or sent them, or they
+ * have been announced or sent to it, and the hashes waiting to be announced.
+ */
+public class TransactionInventory {
+
+    private static final int KNOWN_CAPACITY = 8 * 1024;
+    private static final double KNOWN_FPP = 0.001;
+    private static final int ANNOUNCEMENTS_MAX_SIZE = 16 * 1024;
+
+    private final BloomFilter known = new BloomFilter(KNOWN_CAPACITY, KNOWN_FPP);
+    private final Set<ByteArray> announcements = new LinkedHashSet<>();
+
+    /**
+     * Marks a transaction as known by the peer.
+     *
+     * @param hash
+     */
+    public synchronized void markKnown(byte[] hash) {
+        known.add(hash);
+    }
+
+    /**
+     * Returns whether a transaction is known by the peer. False positives are
+     * possible, but rare.
+     *
+     * @param hash
+     * @return
+     */
+    public synchronized boolean isKnown(byte[] hash) {
+        return known.mightContain(hash);
+    }
+
+    /**
+     * Schedules a transaction to be announced, unless it's known by the peer.
+     *
+     * @param hash
+     * @return whether the transaction is scheduled
+     */
+    public synchronized boolean announce(byte[] hash) {
+        if (known.mightContain(hash) || announcements.size() >= ANNOUNCEMENTS_MAX_SIZE) {
+            return false;
+        }
+
+        known.add(hash);
+        announcements.add(ByteArray.of(hash));
+        return true;
+    }
+
+    /**
+     * Removes and returns the scheduled announcements, in order.
+     *
+     * @param limit
+     *            the maximum number of hashes
+     * @return
+     */
+    public synchronized List<byte[]> pollAnnouncements(int limit) {
+        List<byte[]> hashes = new ArrayList<>(Math.min(limit, announcements.size()));
+
+        Iterator<ByteArray> it = announcements.iterator();
+        while (it.hasNext() && hashes.size() < limit) {
+            hashes.add(it.next().getData());
+            it.remove();
+        }
+        return hashes;
+    }
+}
@@ -52,6 +52,21 @@ public enum MessageCode {
      */
     TRANSACTION(0x07),
 
+    /**
+     * [0x08] Announce the hashes of new transactions.
+     */
+    TX_HASHES(0x08),
+
+    /**
+     * [0x09] Request transactions by hash.
+     */
+    GET_TXS(0x09),
+
+    /**
+     * [0x0a] Response to a GET_TXS message.
+     */
+    TRANSACTIONS(0x0a),
+
     // =======================================
     // [0x30, 0x3f] Reserved for sync
     // =======================================
@@ -76,6 +91,12 @@ public enum MessageCode {
      */
     BLOCK_HEADER(0x33),
 
+    /**
+     * [0x34] Request a range of blocks from the peer, which responds with one
+     * BLOCK message per block.
+     */
+    GET_BLOCKS(0x34),
+
     // =======================================
     // [0x40, 0x4f] Reserved for BFT
     // =======================================
@@ -98,7 +119,23 @@ public enum MessageCode {
     /**
      * [0x43] BFT vote message.
      */
-    BFT_VOTE(0x43);
+    BFT_VOTE(0x43),
+
+    /**
+     * [0x44] BFT proposal message, which references the transactions by short
+     * ID.
+     */
+    BFT_COMPACT_PROPOSAL(0x44),
+
+    /**
+     * [0x45] Request the missing transactions of a compact proposal.
+     */
+    BFT_GET_PROPOSAL_TXS(0x45),
+
+    /**
+     * [0x46] Response to a BFT_GET_PROPOSAL_TXS message.
+     */
+    BFT_PROPOSAL_TXS(0x46);
 
     private static final MessageCode[] map = new MessageCode[256];
     static {
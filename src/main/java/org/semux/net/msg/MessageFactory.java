@@ -9,19 +9,26 @@ package org.semux.net.msg;
 import org.semux.crypto.Hex;
 import org.semux.net.msg.consensus.BlockHeaderMessage;
 import org.semux.net.msg.consensus.BlockMessage;
+import org.semux.net.msg.consensus.CompactProposalMessage;
 import org.semux.net.msg.consensus.GetBlockHeaderMessage;
 import org.semux.net.msg.consensus.GetBlockMessage;
+import org.semux.net.msg.consensus.GetBlocksMessage;
+import org.semux.net.msg.consensus.GetProposalTransactionsMessage;
 import org.semux.net.msg.consensus.NewHeightMessage;
 import org.semux.net.msg.consensus.NewViewMessage;
 import org.semux.net.msg.consensus.ProposalMessage;
+import org.semux.net.msg.consensus.ProposalTransactionsMessage;
 import org.semux.net.msg.consensus.VoteMessage;
 import org.semux.net.msg.p2p.DisconnectMessage;
 import org.semux.net.msg.p2p.GetNodesMessage;
+import org.semux.net.msg.p2p.GetTransactionsMessage;
 import org.semux.net.msg.p2p.HelloMessage;
 import org.semux.net.msg.p2p.NodesMessage;
 import org.semux.net.msg.p2p.PingMessage;
 import org.semux.net.msg.p2p.PongMessage;
+import org.semux.net.msg.p2p.TransactionHashesMessage;
 import org.semux.net.msg.p2p.TransactionMessage;
+import org.semux.net.msg.p2p.TransactionsMessage;
 import org.semux.net.msg.p2p.WorldMessage;
 import org.semux.util.Bytes;
 import org.semux.util.exception.UnreachableException;
@@ -62,6 +69,12 @@ public class MessageFactory {
                 return new NodesMessage(encoded);
             case TRANSACTION:
                 return new TransactionMessage(encoded);
+            case TX_HASHES:
+                return new TransactionHashesMessage(encoded);
+            case GET_TXS:
+                return new GetTransactionsMessage(encoded);
+            case TRANSACTIONS:
+                return new TransactionsMessage(encoded);
 
             case GET_BLOCK:
                 return new GetBlockMessage(encoded);
@@ -71,6 +84,8 @@ public class MessageFactory {
                 return new GetBlockHeaderMessage(encoded);
             case BLOCK_HEADER:
                 return new BlockHeaderMessage(encoded);
+            case GET_BLOCKS:
+                return new GetBlocksMessage(encoded);
 
             case BFT_NEW_HEIGHT:
                 return new NewHeightMessage(encoded);
@@ -80,6 +95,12 @@ public class MessageFactory {
                 return new ProposalMessage(encoded);
             case BFT_VOTE:
                 return new VoteMessage(encoded);
+            case BFT_COMPACT_PROPOSAL:
+                return new CompactProposalMessage(encoded);
+            case BFT_GET_PROPOSAL_TXS:
+                return new GetProposalTransactionsMessage(encoded);
+            case BFT_PROPOSAL_TXS:
+                return new ProposalTransactionsMessage(encoded);
 
             default:
                 throw new UnreachableException();
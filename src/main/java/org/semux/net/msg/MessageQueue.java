@@ -8,12 +8,8 @@ package org.semux.net.msg;
 
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.semux.config.Config;
 import org.semux.net.msg.p2p.DisconnectMessage;
@@ -25,28 +21,30 @@ import io.netty.channel.ChannelHandlerContext;
 
 /**
  * This class contains the logic for sending messages.
+ * <p>
+ * Queued messages are written by a task on the event loop of the channel,
+ * which is scheduled when a message is added or a request is answered. One
+ * task writes the prioritized responses, then the pending request, then the
+ * other responses, and flushes the channel once. It stops when the byte budget
+ * of {@link Config#netMaxBytesPerFlush()} is used up, or the channel is not
+ * writable, and continues in a later task.
  */
 public class MessageQueue {
 
     private static final Logger logger = LoggerFactory.getLogger(MessageQueue.class);
 
-    private static final ScheduledExecutorService timer = Executors.newScheduledThreadPool(2, new ThreadFactory() {
-        private AtomicInteger cnt = new AtomicInteger(0);
-
-        public Thread newThread(Runnable r) {
-            return new Thread(r, "msg-" + cnt.getAndIncrement());
-        }
-    });
-
     private Config config;
 
     private Queue<MessageWrapper> requests = new ConcurrentLinkedQueue<>();
     private Queue<MessageWrapper> responses = new ConcurrentLinkedQueue<>();
     private Queue<MessageWrapper> prioritizedResponses = new ConcurrentLinkedQueue<>();
 
+    private AtomicLong messagesSent = new AtomicLong(0);
+    private AtomicLong bytesSent = new AtomicLong(0);
+
     private ChannelHandlerContext ctx;
-    private ScheduledFuture<?> timerTask;
-    private boolean initialized;
+    private AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private volatile boolean initialized;
 
     /**
      * Create a message queue with the specified maximum queue size.
@@ -65,13 +63,6 @@ public class MessageQueue {
     public synchronized void activate(ChannelHandlerContext ctx) {
         if (!initialized) {
             this.ctx = ctx;
-            this.timerTask = timer.scheduleAtFixedRate(() -> {
-                try {
-                    nudgeQueue();
-                } catch (Exception t) {
-                    logger.error("Exception in MessageQueue", t);
-                }
-            }, 1, 1, TimeUnit.MILLISECONDS);
 
             initialized = true;
         }
@@ -82,8 +73,6 @@ public class MessageQueue {
      */
     public synchronized void deactivate() {
         if (initialized) {
-            this.timerTask.cancel(false);
-
             initialized = false;
         }
     }
@@ -140,6 +129,8 @@ public class MessageQueue {
                 responses.add(new MessageWrapper(msg));
             }
         }
+
+        scheduleFlush();
         return true;
     }
 
@@ -155,6 +146,9 @@ public class MessageQueue {
 
             if (m.getResponseMessageClass() != null && msg.getClass() == m.getResponseMessageClass()) {
                 mw.answer();
+
+                // send the next request
+                scheduleFlush();
                 return mw;
             }
         }
@@ -171,15 +165,92 @@ public class MessageQueue {
         return requests.size() + responses.size() + prioritizedResponses.size();
     }
 
-    protected void nudgeQueue() {
+    /**
+     * Returns the number of messages sent.
+     *
+     * @return
+     */
+    public long getMessagesSent() {
+        return messagesSent.get();
+    }
+
+    /**
+     * Returns the size of the messages sent, before compression and framing.
+     *
+     * @return
+     */
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * Schedules a flush on the event loop of the channel, unless one is already
+     * scheduled.
+     */
+    public void scheduleFlush() {
+        if (initialized && flushScheduled.compareAndSet(false, true)) {
+            ctx.executor().execute(() -> {
+                try {
+                    flush();
+                } catch (Exception e) {
+                    logger.error("Exception in MessageQueue", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Writes the queued messages within the byte budget, and flushes the channel.
+     * This must be called from the event loop of the channel.
+     */
+    protected void flush() {
+        // messages added from now on need another flush
+        flushScheduled.set(false);
+
+        if (!initialized) {
+            return;
+        }
+
+        int budget = config.netMaxBytesPerFlush();
+        int written = 0;
+        int count = 0;
+
+        MessageWrapper mw;
+        while (written < budget && isWritable() && (mw = prioritizedResponses.poll()) != null) {
+            written += write(mw);
+            count++;
+        }
+
         removeAnsweredMessage(requests.peek());
+        mw = requests.peek();
+        if (written < budget && isWritable() && mw != null && mw.getRetries() == 0) {
+            written += write(mw);
+            count++;
+        }
+
+        while (written < budget && isWritable() && (mw = responses.poll()) != null) {
+            written += write(mw);
+            count++;
+        }
+
+        if (count > 0) {
+            ctx.flush();
+        }
 
-        // send responses
-        MessageWrapper msg = prioritizedResponses.poll();
-        sendToWire(msg == null ? responses.poll() : msg);
+        // yield to the other channels, or wait until the channel is writable
+        if (written >= budget && isWritable() && hasUnsentMessages()) {
+            scheduleFlush();
+        }
+    }
+
+    protected boolean hasUnsentMessages() {
+        MessageWrapper request = requests.peek();
+        return !prioritizedResponses.isEmpty() || !responses.isEmpty()
+                || (request != null && (request.isAnswered() || request.getRetries() == 0));
+    }
 
-        // send requests
-        sendToWire(requests.peek());
+    protected boolean isWritable() {
+        return ctx.channel().isWritable();
     }
 
     protected void removeAnsweredMessage(MessageWrapper mw) {
@@ -188,18 +259,24 @@ public class MessageQueue {
         }
     }
 
-    protected void sendToWire(MessageWrapper mw) {
-
-        if (mw != null && mw.getRetries() == 0) {
-            Message msg = mw.getMessage();
+    /**
+     * Writes a message without flushing.
+     *
+     * @param mw
+     * @return the size of the message
+     */
+    protected int write(MessageWrapper mw) {
+        Message msg = mw.getMessage();
 
-            logger.trace("Wiring message: {}", msg);
-            ctx.writeAndFlush(msg).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+        logger.trace("Wiring message: {}", msg);
+        ctx.write(msg).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+        messagesSent.incrementAndGet();
+        bytesSent.addAndGet(msg.getEncoded().length);
 
-            if (msg.getResponseMessageClass() != null) {
-                mw.increaseRetries();
-                mw.saveTime();
-            }
+        if (msg.getResponseMessageClass() != null) {
+            mw.increaseRetries();
+            mw.saveTime();
         }
+        return msg.getEncoded().length;
     }
 }
@@ -9,8 +9,6 @@ package org.semux.net.msg.consensus;
 import org.semux.core.Block;
 import org.semux.net.msg.Message;
 import org.semux.net.msg.MessageCode;
-import org.semux.util.SimpleDecoder;
-import org.semux.util.SimpleEncoder;
 
 public class BlockMessage extends Message {
 
@@ -20,35 +18,41 @@ public class BlockMessage extends Message {
         super(MessageCode.BLOCK, null);
 
         this.block = block;
-
-        SimpleEncoder enc = new SimpleEncoder();
-        enc.writeBytes(block.toBytesHeader());
-        enc.writeBytes(block.toBytesTransactions());
-        enc.writeBytes(block.toBytesResults());
-        enc.writeBytes(block.toBytesVotes());
-        this.encoded = enc.toBytes();
+        this.encoded = block.toBytes();
     }
 
     public BlockMessage(byte[] encoded) {
+        this(encoded, Block.fromBytes(encoded));
+    }
+
+    private BlockMessage(byte[] encoded, Block block) {
         super(MessageCode.BLOCK, null);
 
         this.encoded = encoded;
+        this.block = block;
+    }
 
-        SimpleDecoder dec = new SimpleDecoder(encoded);
-        byte[] header = dec.readBytes();
-        byte[] transactions = dec.readBytes();
-        byte[] results = dec.readBytes();
-        byte[] votes = dec.readBytes();
-
-        this.block = Block.fromBytes(header, transactions, results, votes);
+    /**
+     * Creates a block message from a serialized block, which is parsed only when
+     * {@link #getBlock()} is called.
+     *
+     * @param bytes
+     *            the serialized block, see {@link Block#toBytes()}
+     * @return
+     */
+    public static BlockMessage fromBlockBytes(byte[] bytes) {
+        return new BlockMessage(bytes, null);
     }
 
     public Block getBlock() {
+        if (block == null) {
+            block = Block.fromBytes(encoded);
+        }
         return block;
     }
 
     @Override
     public String toString() {
-        return "BlockMessage [block=" + block + "]";
+        return "BlockMessage [block=" + getBlock() + "]";
     }
 }
@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.net.msg.consensus;
+
+import java.util.List;
+
+import org.semux.consensus.Proof;
+import org.semux.consensus.Proposal;
+import org.semux.core.BlockHeader;
+import org.semux.core.Transaction;
+import org.semux.crypto.Key.Signature;
+import org.semux.net.msg.Message;
+import org.semux.net.msg.MessageCode;
+import org.semux.util.Bytes;
+import org.semux.util.SimpleDecoder;
+import org.semux.util.SimpleEncoder;
+
+/**
+ * A proposal which references its transactions by short ID, for the peers
+ * which already hold most of them in their pending pools. The missing
+ * transactions are requested with a {@link GetProposalTransactionsMessage}.
+ * <p>
+ * The signature is the one of the full {@link Proposal}, so the proposal
+ * rebuilt from the transactions verifies only if they are the proposed ones.
+ */
+public class CompactProposalMessage extends Message {
+
+    private Proof proof;
+    private BlockHeader blockHeader;
+    private long[] shortIds;
+    private Signature signature;
+
+    public CompactProposalMessage(Proposal proposal) {
+        super(MessageCode.BFT_COMPACT_PROPOSAL, null);
+
+        this.proof = proposal.getProof();
+        this.blockHeader = proposal.getBlockHeader();
+        this.signature = proposal.getSignature();
+
+        List<Transaction> transactions = proposal.getTransactions();
+        this.shortIds = new long[transactions.size()];
+        for (int i = 0; i < shortIds.length; i++) {
+            shortIds[i] = shortId(transactions.get(i).getHash());
+        }
+
+        SimpleEncoder enc = new SimpleEncoder();
+        enc.writeBytes(proof.toBytes());
+        enc.writeBytes(blockHeader.toBytes());
+        enc.writeInt(shortIds.length);
+        for (long id : shortIds) {
+            enc.writeLong(id);
+        }
+        enc.writeBytes(signature.toBytes());
+        this.encoded = enc.toBytes();
+    }
+
+    public CompactProposalMessage(byte[] encoded) {
+        super(MessageCode.BFT_COMPACT_PROPOSAL, null);
+        this.encoded = encoded;
+
+        SimpleDecoder dec = new SimpleDecoder(encoded);
+        this.proof = Proof.fromBytes(dec.readBytes());
+        this.blockHeader = BlockHeader.fromBytes(dec.readBytes());
+        this.shortIds = new long[dec.readLength(8)];
+        for (int i = 0; i < shortIds.length; i++) {
+            shortIds[i] = dec.readLong();
+        }
+        this.signature = Signature.fromBytes(dec.readSlice());
+    }
+
+    /**
+     * Returns the short ID of a transaction: the first 8 bytes of its hash.
+     *
+     * @param hash
+     * @return
+     */
+    public static long shortId(byte[] hash) {
+        return Bytes.toLong(hash);
+    }
+
+    public boolean validate() {
+        return proof != null
+                && blockHeader != null
+                && proof.getHeight() == blockHeader.getNumber()
+                && signature != null;
+    }
+
+    public long getHeight() {
+        return proof.getHeight();
+    }
+
+    public int getView() {
+        return proof.getView();
+    }
+
+    public Proof getProof() {
+        return proof;
+    }
+
+    public BlockHeader getBlockHeader() {
+        return blockHeader;
+    }
+
+    public long[] getShortIds() {
+        return shortIds;
+    }
+
+    public Signature getSignature() {
+        return signature;
+    }
+
+    @Override
+    public String toString() {
+        return "CompactProposalMessage [height=" + getHeight() + ", view=" + getView() + ", # txs = "
+                + shortIds.length + "]";
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.net.msg.consensus;
+
+import org.semux.net.msg.Message;
+import org.semux.net.msg.MessageCode;
+import org.semux.util.SimpleDecoder;
+import org.semux.util.SimpleEncoder;
+
+/**
+ * Requests the blocks in range [from, to]. The peer responds with one
+ * {@link BlockMessage} per block, so no single response is expected and the
+ * requester is responsible for tracking the outstanding blocks.
+ */
+public class GetBlocksMessage extends Message {
+
+    /**
+     * The maximum number of blocks which are served for one request.
+     */
+    public static final int MAX_BLOCKS_PER_REQUEST = 128;
+
+    private long from;
+    private long to;
+
+    public GetBlocksMessage(long from, long to) {
+        super(MessageCode.GET_BLOCKS, null);
+        this.from = from;
+        this.to = to;
+
+        SimpleEncoder enc = new SimpleEncoder();
+        enc.writeLong(from);
+        enc.writeLong(to);
+        this.encoded = enc.toBytes();
+    }
+
+    public GetBlocksMessage(byte[] encoded) {
+        super(MessageCode.GET_BLOCKS, null);
+        this.encoded = encoded;
+
+        SimpleDecoder dec = new SimpleDecoder(encoded);
+        this.from = dec.readLong();
+        this.to = dec.readLong();
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    @Override
+    public String toString() {
+        return "GetBlocksMessage [from=" + from + ", to=" + to + "]";
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.net.msg.consensus;
+
+import org.semux.net.msg.Message;
+import org.semux.net.msg.MessageCode;
+import org.semux.util.SimpleDecoder;
+import org.semux.util.SimpleEncoder;
+
+/**
+ * Requests the transactions of a compact proposal which are missing locally,
+ * by their indexes in the proposal. The peer responds with a
+ * {@link ProposalTransactionsMessage} if it still holds the proposal.
+ */
+public class GetProposalTransactionsMessage extends Message {
+
+    private long height;
+    private int view;
+    private int[] indexes;
+
+    public GetProposalTransactionsMessage(long height, int view, int[] indexes) {
+        super(MessageCode.BFT_GET_PROPOSAL_TXS, null);
+        this.height = height;
+        this.view = view;
+        this.indexes = indexes;
+
+        SimpleEncoder enc = new SimpleEncoder();
+        enc.writeLong(height);
+        enc.writeInt(view);
+        enc.writeInt(indexes.length);
+        for (int index : indexes) {
+            enc.writeInt(index);
+        }
+        this.encoded = enc.toBytes();
+    }
+
+    public GetProposalTransactionsMessage(byte[] encoded) {
+        super(MessageCode.BFT_GET_PROPOSAL_TXS, null);
+        this.encoded = encoded;
+
+        SimpleDecoder dec = new SimpleDecoder(encoded);
+        this.height = dec.readLong();
+        this.view = dec.readInt();
+        this.indexes = new int[dec.readLength(4)];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = dec.readInt();
+        }
+    }
+
+    public long getHeight() {
+        return height;
+    }
+
+    public int getView() {
+        return view;
+    }
+
+    public int[] getIndexes() {
+        return indexes;
+    }
+
+    @Override
+    public String toString() {
+        return "GetProposalTransactionsMessage [height=" + height + ", view=" + view + ", # txs = " + indexes.length
+                + "]";
+    }
+}
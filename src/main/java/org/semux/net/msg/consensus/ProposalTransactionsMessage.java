@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.net.msg.consensus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.semux.core.Transaction;
+import org.semux.net.msg.Message;
+import org.semux.net.msg.MessageCode;
+import org.semux.util.SimpleDecoder;
+import org.semux.util.SimpleEncoder;
+
+/**
+ * Response to a {@link GetProposalTransactionsMessage}, carrying the requested
+ * transactions in the order of the request.
+ */
+public class ProposalTransactionsMessage extends Message {
+
+    private long height;
+    private int view;
+    private List<Transaction> transactions;
+
+    public ProposalTransactionsMessage(long height, int view, List<Transaction> transactions) {
+        super(MessageCode.BFT_PROPOSAL_TXS, null);
+        this.height = height;
+        this.view = view;
+        this.transactions = transactions;
+
+        SimpleEncoder enc = new SimpleEncoder();
+        enc.writeLong(height);
+        enc.writeInt(view);
+        enc.writeInt(transactions.size());
+        for (Transaction tx : transactions) {
+            enc.writeBytes(tx.toBytes());
+        }
+        this.encoded = enc.toBytes();
+    }
+
+    public ProposalTransactionsMessage(byte[] encoded) {
+        super(MessageCode.BFT_PROPOSAL_TXS, null);
+        this.encoded = encoded;
+
+        SimpleDecoder dec = new SimpleDecoder(encoded);
+        this.height = dec.readLong();
+        this.view = dec.readInt();
+        int n = dec.readInt();
+        this.transactions = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            transactions.add(Transaction.fromBytes(dec.readBytes()));
+        }
+    }
+
+    public long getHeight() {
+        return height;
+    }
+
+    public int getView() {
+        return view;
+    }
+
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    @Override
+    public String toString() {
+        return "ProposalTransactionsMessage [height=" + height + ", view=" + view + ", # txs = "
+                + transactions.size() + "]";
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.net.msg.p2p;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.semux.net.msg.Message;
+import org.semux.net.msg.MessageCode;
+import org.semux.util.SimpleDecoder;
+import org.semux.util.SimpleEncoder;
+
+/**
+ * Requests the transactions of the given hashes, which the peer has announced.
+ * The peer responds with a {@link TransactionsMessage}, without the ones it no
+ * longer has.
+ */
+public class GetTransactionsMessage extends Message {
+
+    public static final int MAX_HASHES = 1024;
+
+    private List<byte[]> hashes;
+
+    /**
+     * Create a GET_TXS message.
+     * 
+     * @param hashes
+     */
+    public GetTransactionsMessage(List<byte[]> hashes) {
+        super(MessageCode.GET_TXS, null);
+
+        this.hashes = hashes;
+
+        SimpleEncoder enc = new SimpleEncoder();
+        enc.writeInt(hashes.size());
+        for (byte[] hash : hashes) {
+            enc.writeBytes(hash);
+        }
+        this.encoded = enc.toBytes();
+    }
+
+    /**
+     * Parse a GET_TXS message from byte array.
+     * 
+     * @param encoded
+     */
+    public GetTransactionsMessage(byte[] encoded) {
+        super(MessageCode.GET_TXS, null);
+
+        this.encoded = encoded;
+
+        hashes = new ArrayList<>();
+        SimpleDecoder dec = new SimpleDecoder(encoded);
+        int n = dec.readInt();
+        for (int i = 0; i < n; i++) {
+            hashes.add(dec.readBytes());
+        }
+    }
+
+    public boolean validate() {
+        return hashes != null && hashes.size() <= MAX_HASHES;
+    }
+
+    public List<byte[]> getHashes() {
+        return hashes;
+    }
+
+    @Override
+    public String toString() {
+        return "GetTransactionsMessage [# hashes =" + hashes.size() + "]";
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.net.msg.p2p;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.semux.net.msg.Message;
+import org.semux.net.msg.MessageCode;
+import org.semux.util.SimpleDecoder;
+import org.semux.util.SimpleEncoder;
+
+/**
+ * Announces the hashes of the transactions which have been accepted since the
+ * last announcement. The peer pulls the unknown ones with a
+ * {@link GetTransactionsMessage}.
+ */
+public class TransactionHashesMessage extends Message {
+
+    public static final int MAX_HASHES = 1024;
+
+    private List<byte[]> hashes;
+
+    /**
+     * Create a TX_HASHES message.
+     * 
+     * @param hashes
+     */
+    public TransactionHashesMessage(List<byte[]> hashes) {
+        super(MessageCode.TX_HASHES, null);
+
+        this.hashes = hashes;
+
+        SimpleEncoder enc = new SimpleEncoder();
+        enc.writeInt(hashes.size());
+        for (byte[] hash : hashes) {
+            enc.writeBytes(hash);
+        }
+        this.encoded = enc.toBytes();
+    }
+
+    /**
+     * Parse a TX_HASHES message from byte array.
+     * 
+     * @param encoded
+     */
+    public TransactionHashesMessage(byte[] encoded) {
+        super(MessageCode.TX_HASHES, null);
+
+        this.encoded = encoded;
+
+        hashes = new ArrayList<>();
+        SimpleDecoder dec = new SimpleDecoder(encoded);
+        int n = dec.readInt();
+        for (int i = 0; i < n; i++) {
+            hashes.add(dec.readBytes());
+        }
+    }
+
+    public boolean validate() {
+        return hashes != null && hashes.size() <= MAX_HASHES;
+    }
+
+    public List<byte[]> getHashes() {
+        return hashes;
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionHashesMessage [# hashes =" + hashes.size() + "]";
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.util;
+
+import java.util.Arrays;
+
+/**
+ * A rolling bloom filter, which remembers at least the last {@code capacity}
+ * keys with the given false positive rate. Older keys are forgotten one
+ * generation at a time.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class BloomFilter {
+
+    private final int capacity;
+    private final int numBits;
+    private final int numHashes;
+
+    private long[] current;
+    private long[] previous;
+    private int count;
+
+    /**
+     * Creates a bloom filter.
+     *
+     * @param capacity
+     *            the number of keys per generation
+     * @param fpp
+     *            the false positive rate, when a generation is full
+     */
+    public BloomFilter(int capacity, double fpp) {
+        if (capacity <= 0 || fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("Invalid capacity or false positive rate");
+        }
+
+        double ln2 = Math.log(2);
+        this.capacity = capacity;
+        this.numBits = Math.max(64, (int) Math.ceil(-capacity * Math.log(fpp) / (ln2 * ln2)));
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / capacity * ln2));
+
+        this.current = new long[(numBits + 63) / 64];
+        this.previous = new long[current.length];
+    }
+
+    /**
+     * Adds a key.
+     *
+     * @param key
+     */
+    public void add(byte[] key) {
+        if (count >= capacity) {
+            long[] tmp = previous;
+            previous = current;
+            current = tmp;
+            Arrays.fill(current, 0);
+            count = 0;
+        }
+
+        long h1 = hash(key);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            int bit = (int) Long.remainderUnsigned(h1 + i * h2, numBits);
+            current[bit >>> 6] |= 1L << bit;
+        }
+        count++;
+    }
+
+    /**
+     * Returns whether a key might have been added; false means it definitely
+     * hasn't, or has been forgotten.
+     *
+     * @param key
+     * @return
+     */
+    public boolean mightContain(byte[] key) {
+        long h1 = hash(key);
+        long h2 = mix(h1) | 1;
+        return contains(current, h1, h2) || contains(previous, h1, h2);
+    }
+
+    /**
+     * Removes all the keys.
+     */
+    public void clear() {
+        Arrays.fill(current, 0);
+        Arrays.fill(previous, 0);
+        count = 0;
+    }
+
+    private boolean contains(long[] bits, long h1, long h2) {
+        for (int i = 0; i < numHashes; i++) {
+            int bit = (int) Long.remainderUnsigned(h1 + i * h2, numBits);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 64-bit FNV-1a.
+     */
+    private static long hash(byte[] key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * The finalizer of SplitMix64.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
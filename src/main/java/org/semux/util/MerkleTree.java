@@ -7,46 +7,108 @@
 package org.semux.util;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.semux.crypto.Hash;
 
 /**
  * Simple implementation of the Merkle tree.
+ * <p>
+ * Each level of the tree is stored as a flat buffer of hashes, so that a pair
+ * of siblings is hashed as one contiguous range, and no node objects are
+ * created. An odd node at the end of a level is promoted to the next level
+ * as is. Large levels are hashed in parallel.
  */
 public class MerkleTree {
 
-    private Node root;
+    private static final int HASH_LEN = Hash.HASH_LEN;
+
+    /**
+     * The number of pairs of a level from which it's hashed in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 512;
+
+    /**
+     * The number of pairs hashed by each parallel task.
+     */
+    private static final int PARALLEL_CHUNK = 128;
+
+    private byte[][] levels;
     private int size;
-    private int levels = 0;
 
     /**
      * Construct a Merkle tree.
-     * 
+     *
      * @param hashes
      */
     public MerkleTree(List<byte[]> hashes) {
-        this.size = hashes.size();
+        this(flatten(hashes));
+    }
+
+    /**
+     * Construct a Merkle tree from the concatenated leaf hashes. The buffer is
+     * kept as the bottom level of the tree, and must not be modified.
+     *
+     * @param leaves
+     */
+    public MerkleTree(byte[] leaves) {
+        this.size = count(leaves);
+
+        List<byte[]> list = new ArrayList<>();
+        list.add(size == 0 ? Bytes.EMPTY_HASH : leaves);
+        for (int n = size; n > 1; n = (n + 1) / 2) {
+            byte[] next = new byte[(n + 1) / 2 * HASH_LEN];
+            hashLevel(list.get(list.size() - 1), n, next);
+            list.add(next);
+        }
+        this.levels = list.toArray(new byte[list.size()][]);
+    }
+
+    /**
+     * Computes the Merkle root of the concatenated leaf hashes, without keeping
+     * the tree.
+     *
+     * @param leaves
+     * @return
+     */
+    public static byte[] computeRoot(byte[] leaves) {
+        int n = count(leaves);
+        if (n == 0) {
+            return Bytes.EMPTY_HASH;
+        } else if (n == 1) {
+            return leaves.clone();
+        }
 
-        List<Node> nodes = new ArrayList<>();
-        for (byte[] b : hashes) {
-            nodes.add(new Node(b));
+        // two buffers are swapped between the levels, as a parallel level can't
+        // be hashed in place
+        byte[] in = leaves;
+        byte[] out = new byte[(n + 1) / 2 * HASH_LEN];
+        byte[] spare = n > 2 ? new byte[(n + 3) / 4 * HASH_LEN] : null;
+        for (; n > 1; n = (n + 1) / 2) {
+            hashLevel(in, n, out);
+            byte[] tmp = (in == leaves) ? spare : in;
+            in = out;
+            out = tmp;
         }
-        this.root = build(nodes);
+
+        return Arrays.copyOf(in, HASH_LEN);
     }
 
     /**
      * Get the root hash.
-     * 
+     *
      * @return
      */
     public byte[] getRootHash() {
-        return root.value;
+        return Arrays.copyOf(levels[levels.length - 1], HASH_LEN);
     }
 
     /**
      * Get the size of elements.
-     * 
+     *
      * @return
      */
     public int size() {
@@ -54,72 +116,94 @@ public class MerkleTree {
     }
 
     /**
-     * Returns the Merkle proof of the Nth element.
-     * 
+     * Returns the Merkle proof of the Nth element: the hashes on the path from
+     * the root down to the element.
+     *
      * @param i
      *            the element index, starting from zero.
      * @return
      */
     public List<byte[]> getProof(int i) {
-        List<byte[]> proof = new ArrayList<>();
-
-        int half = 1 << (levels - 2);
-        Node p = root;
-        do {
-            // shallow copy
-            proof.add(p.value);
+        if (size > 0 && (i < 0 || i >= size)) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", size: " + size);
+        }
 
-            if (i < half) {
-                p = p.left;
-            } else {
-                p = p.right;
-            }
-            i -= half;
-            half >>= 1;
-        } while (p != null);
+        List<byte[]> proof = new ArrayList<>();
+        for (int level = levels.length - 1; level >= 0; level--) {
+            int offset = (i >> level) * HASH_LEN;
+            proof.add(Arrays.copyOfRange(levels[level], offset, offset + HASH_LEN));
+        }
 
         return proof;
     }
 
-    private Node build(List<Node> nodes) {
-        if (nodes.isEmpty()) {
-            return new Node(Bytes.EMPTY_HASH);
+    /**
+     * Hashes a level of n nodes into the next level.
+     *
+     * @param in
+     * @param n
+     * @param out
+     */
+    private static void hashLevel(byte[] in, int n, byte[] out) {
+        int pairs = n / 2;
+        if (pairs >= PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(new HashPairs(in, out, 0, pairs));
+        } else {
+            hashPairs(in, out, 0, pairs);
         }
 
-        while (nodes.size() > 1) {
-            List<Node> list = new ArrayList<>();
-
-            for (int i = 0; i < nodes.size(); i += 2) {
-                Node left = nodes.get(i);
-                if (i + 1 < nodes.size()) {
-                    Node right = nodes.get(i + 1);
-                    list.add(new Node(Hash.h256(left.value, right.value), left, right));
-                } else {
-                    list.add(new Node(left.value, left, null));
-                }
-            }
+        if (n % 2 == 1) {
+            System.arraycopy(in, (n - 1) * HASH_LEN, out, pairs * HASH_LEN, HASH_LEN);
+        }
+    }
 
-            levels++;
-            nodes = list;
+    private static void hashPairs(byte[] in, byte[] out, int from, int to) {
+        for (int i = from; i < to; i++) {
+            Hash.h256(in, 2 * i * HASH_LEN, 2 * HASH_LEN, out, i * HASH_LEN);
         }
+    }
 
-        levels++;
-        return nodes.get(0);
+    private static int count(byte[] leaves) {
+        if (leaves.length % HASH_LEN != 0) {
+            throw new IllegalArgumentException("Invalid length of leaves: " + leaves.length);
+        }
+        return leaves.length / HASH_LEN;
     }
 
-    private static class Node {
-        byte[] value;
-        Node left;
-        Node right;
+    private static byte[] flatten(List<byte[]> hashes) {
+        byte[] leaves = new byte[hashes.size() * HASH_LEN];
+        for (int i = 0; i < hashes.size(); i++) {
+            System.arraycopy(hashes.get(i), 0, leaves, i * HASH_LEN, HASH_LEN);
+        }
+        return leaves;
+    }
 
-        public Node(byte[] value) {
-            this.value = value;
+    /**
+     * Hashes a range of pairs, splitting it until it's small enough.
+     */
+    private static class HashPairs extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient byte[] in;
+        private final transient byte[] out;
+        private final int from;
+        private final int to;
+
+        public HashPairs(byte[] in, byte[] out, int from, int to) {
+            this.in = in;
+            this.out = out;
+            this.from = from;
+            this.to = to;
         }
 
-        public Node(byte[] value, Node left, Node right) {
-            this.value = value;
-            this.left = left;
-            this.right = right;
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_CHUNK) {
+                hashPairs(in, out, from, to);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new HashPairs(in, out, from, mid), new HashPairs(in, out, mid, to));
+            }
         }
     }
 }
@@ -6,7 +6,6 @@
  */
 package org.semux.util;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import org.semux.core.Transaction;
@@ -23,11 +22,11 @@ public class MerkleUtil {
      * @return
      */
     public static byte[] computeTransactionsRoot(List<Transaction> txs) {
-        List<byte[]> hashes = new ArrayList<>();
-        for (Transaction tx : txs) {
-            hashes.add(tx.getHash());
+        byte[] leaves = new byte[txs.size() * Hash.HASH_LEN];
+        for (int i = 0; i < txs.size(); i++) {
+            System.arraycopy(txs.get(i).getHash(), 0, leaves, i * Hash.HASH_LEN, Hash.HASH_LEN);
         }
-        return new MerkleTree(hashes).getRootHash();
+        return MerkleTree.computeRoot(leaves);
     }
 
     /**
@@ -38,11 +37,11 @@ public class MerkleUtil {
      * @return
      */
     public static byte[] computeResultsRoot(List<TransactionResult> results) {
-        List<byte[]> hashes = new ArrayList<>();
-        for (TransactionResult tx : results) {
-            hashes.add(Hash.h256(tx.toBytes()));
+        byte[] leaves = new byte[results.size() * Hash.HASH_LEN];
+        for (int i = 0; i < results.size(); i++) {
+            System.arraycopy(results.get(i).getHash(), 0, leaves, i * Hash.HASH_LEN, Hash.HASH_LEN);
         }
-        return new MerkleTree(hashes).getRootHash();
+        return MerkleTree.computeRoot(leaves);
     }
 
     private MerkleUtil() {
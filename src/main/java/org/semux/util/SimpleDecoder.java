@@ -7,6 +7,7 @@
 package org.semux.util;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 
 import org.semux.util.exception.SimpleCodecException;
 
@@ -33,6 +34,16 @@ public class SimpleDecoder {
         this.index = from;
     }
 
+    /**
+     * Creates a decoder over the remaining bytes of a heap buffer, without
+     * copying them.
+     *
+     * @param in
+     */
+    public SimpleDecoder(ByteBuffer in) {
+        this(in.array(), in.arrayOffset() + in.position(), in.arrayOffset() + in.limit());
+    }
+
     public boolean readBoolean() {
         require(1);
         return in[index++] != 0;
@@ -75,6 +86,22 @@ public class SimpleDecoder {
         return readBytes(true);
     }
 
+    /**
+     * Reads a byte array as a view of the input, without copying it. The view
+     * shares the input array, and must not be modified.
+     *
+     * @return
+     */
+    public ByteBuffer readSlice() {
+        int len = readSize();
+
+        require(len);
+        ByteBuffer slice = ByteBuffer.wrap(in, index, len).slice();
+        index += len;
+
+        return slice;
+    }
+
     public String readString() {
         try {
             return new String(readBytes(), ENCODING);
@@ -83,6 +110,24 @@ public class SimpleDecoder {
         }
     }
 
+    /**
+     * Reads the length of an array whose elements take elementSize bytes each,
+     * and checks it against the bytes left, so that a forged length can't make
+     * the caller allocate a huge array.
+     *
+     * @param elementSize
+     * @return
+     * @throws SimpleCodecException
+     *             if the length is negative or exceeds the bytes left
+     */
+    public int readLength(int elementSize) {
+        int length = readInt();
+        if (length < 0 || length > (to - index) / elementSize) {
+            throw new SimpleCodecException("Invalid length: " + length);
+        }
+        return length;
+    }
+
     public int getReadIndex() {
         return index;
     }
@@ -6,53 +6,73 @@
  */
 package org.semux.util;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-
-import org.semux.util.exception.SimpleCodecException;
+import java.util.Arrays;
 
+/**
+ * An unsynchronized encoder, which writes big-endian values into a growable
+ * byte array.
+ * <p>
+ * When the size of the output is known in advance, pass it as the size hint,
+ * so that the buffer is never grown, and {@link #toBytes()} returns it without
+ * a copy.
+ */
 public class SimpleEncoder {
-    private ByteArrayOutputStream out;
+    private static final int DEFAULT_SIZE = 64;
+
+    private byte[] buf;
+    private int count;
+
+    public SimpleEncoder(byte[] toAppend, int sizeHint) {
+        this.buf = new byte[Math.max(toAppend.length, sizeHint)];
+        System.arraycopy(toAppend, 0, buf, 0, toAppend.length);
+        this.count = toAppend.length;
+    }
 
     public SimpleEncoder(byte[] toAppend) {
-        this.out = new ByteArrayOutputStream();
-        try {
-            out.write(toAppend);
-        } catch (IOException e) {
-            throw new SimpleCodecException(e);
-        }
+        this(toAppend, toAppend.length + DEFAULT_SIZE);
+    }
+
+    /**
+     * Creates an encoder with the expected size of the output.
+     *
+     * @param sizeHint
+     */
+    public SimpleEncoder(int sizeHint) {
+        this(Bytes.EMPTY_BYTES, sizeHint);
     }
 
     public SimpleEncoder() {
-        this(Bytes.EMPTY_BYTES);
+        this(DEFAULT_SIZE);
     }
 
     public void writeBoolean(boolean b) {
-        out.write(b ? 1 : 0);
+        writeByte((byte) (b ? 1 : 0));
     }
 
     public void writeByte(byte b) {
-        out.write(b);
+        ensureCapacity(1);
+        buf[count++] = b;
     }
 
     public void writeShort(short s) {
-        out.write(0xFF & (s >>> 8));
-        out.write(0xFF & s);
+        ensureCapacity(2);
+        buf[count++] = (byte) (s >>> 8);
+        buf[count++] = (byte) s;
     }
 
     public void writeInt(int i) {
-        out.write(0xFF & (i >>> 24));
-        out.write(0xFF & (i >>> 16));
-        out.write(0xFF & (i >>> 8));
-        out.write(0xFF & i);
+        ensureCapacity(4);
+        buf[count++] = (byte) (i >>> 24);
+        buf[count++] = (byte) (i >>> 16);
+        buf[count++] = (byte) (i >>> 8);
+        buf[count++] = (byte) i;
     }
 
     public void writeLong(long l) {
-        int i1 = (int) (l >>> 32);
-        int i2 = (int) l;
-
-        writeInt(i1);
-        writeInt(i2);
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buf[count++] = (byte) (l >>> shift);
+        }
     }
 
     public void writeBytes(byte[] bytes, boolean vlq) {
@@ -62,11 +82,9 @@ public class SimpleEncoder {
             writeInt(bytes.length);
         }
 
-        try {
-            out.write(bytes);
-        } catch (IOException e) {
-            throw new SimpleCodecException(e);
-        }
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buf, count, bytes.length);
+        count += bytes.length;
     }
 
     public void writeBytes(byte[] bytes) {
@@ -77,17 +95,53 @@ public class SimpleEncoder {
         writeBytes(Bytes.of(s));
     }
 
+    /**
+     * Returns the encoded bytes. The internal buffer is returned as is when it's
+     * exactly full, which is safe because any later write grows it into a new
+     * array.
+     *
+     * @return
+     */
     public byte[] toBytes() {
-        return out.toByteArray();
+        return count == buf.length ? buf : Arrays.copyOf(buf, count);
     }
 
     public int getWriteIndex() {
-        return out.size();
+        return count;
+    }
+
+    /**
+     * Returns the encoded size of a byte array written by
+     * {@link #writeBytes(byte[])}, including the size prefix.
+     *
+     * @param bytes
+     * @return
+     */
+    public static int sizeOfBytes(byte[] bytes) {
+        return sizeOfSize(bytes.length) + bytes.length;
+    }
+
+    /**
+     * Returns the number of bytes taken by a size prefix.
+     *
+     * @param size
+     * @return
+     */
+    public static int sizeOfSize(int size) {
+        if (size < 0x80) {
+            return 1;
+        } else if (size < 0x4000) {
+            return 2;
+        } else if (size < 0x200000) {
+            return 3;
+        } else {
+            return 4;
+        }
     }
 
     /**
      * Writes a size into the output byte array.
-     * 
+     *
      * @param size
      * @throws IllegalArgumentException
      *             when the input size is negative
@@ -99,19 +153,23 @@ public class SimpleEncoder {
             throw new IllegalArgumentException("Size can't be larger than 0x0FFFFFFF: " + size);
         }
 
-        int[] buf = new int[4];
-        int i = buf.length;
-        do {
-            buf[--i] = size & 0x7f;
-            size >>>= 7;
-        } while (size > 0);
-
-        while (i < buf.length) {
-            if (i != buf.length - 1) {
-                out.write((byte) (buf[i++] | 0x80));
-            } else {
-                out.write((byte) buf[i++]);
-            }
+        int n = sizeOfSize(size);
+        ensureCapacity(n);
+        for (int shift = 7 * (n - 1); shift > 0; shift -= 7) {
+            buf[count++] = (byte) (((size >>> shift) & 0x7f) | 0x80);
+        }
+        buf[count++] = (byte) (size & 0x7f);
+    }
+
+    /**
+     * Grows the buffer, if needed, to fit n more bytes.
+     *
+     * @param n
+     */
+    private void ensureCapacity(int n) {
+        int required = count + n;
+        if (required > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(required, buf.length << 1));
         }
     }
 }
@@ -6,6 +6,10 @@
  */
 package org.semux.bench;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -15,13 +19,16 @@ import org.semux.config.Constants;
 import org.semux.config.DevnetConfig;
 import org.semux.core.Block;
 import org.semux.core.BlockHeader;
+import org.semux.core.BlockchainImpl;
 import org.semux.core.Genesis;
 import org.semux.core.Transaction;
 import org.semux.core.TransactionResult;
 import org.semux.core.TransactionType;
 import org.semux.crypto.Key;
 import org.semux.crypto.Key.Signature;
+import org.semux.db.LevelDb.LevelDbFactory;
 import org.semux.util.Bytes;
+import org.semux.util.FileUtil;
 import org.semux.util.MerkleUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -90,6 +97,59 @@ public class BlockchainPerformance {
         return block;
     }
 
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Measures the encoding work of building and checking a block, without the
+     * signature verification: the size accounting of the transactions, the
+     * Merkle roots, the block encoding and the results validation.
+     */
+    public static void testBlockBuilding() {
+        int txsPerBlock = 1000;
+        int repeat = 200;
+
+        List<Transaction> txs = new ArrayList<>();
+        List<TransactionResult> res = new ArrayList<>();
+        for (int i = 0; i < txsPerBlock; i++) {
+            txs.add(new Transaction(config.network(), TransactionType.TRANSFER, Bytes.random(20), 1,
+                    config.minTransactionFee(), i, System.currentTimeMillis(), Bytes.EMPTY_BYTES).sign(key));
+            res.add(new TransactionResult(true));
+        }
+
+        long a1 = 0;
+        long t1 = 0;
+        for (int n = -repeat; n < repeat; n++) {
+            if (n == 0) {
+                // after warming up
+                a1 = allocatedBytes();
+                t1 = System.nanoTime();
+            }
+
+            int size = 0;
+            for (Transaction tx : txs) {
+                size += tx.size();
+            }
+
+            BlockHeader header = new BlockHeader(1, key.toAddress(), Bytes.EMPTY_HASH, System.currentTimeMillis(),
+                    MerkleUtil.computeTransactionsRoot(txs), MerkleUtil.computeResultsRoot(res), Bytes.EMPTY_HASH,
+                    Bytes.EMPTY_BYTES);
+            Block block = new Block(header, txs, res);
+            size += block.size() + block.toBytesHeader().length;
+
+            if (!Block.validateResults(header, res) || size <= 0) {
+                throw new IllegalStateException("Invalid block");
+            }
+        }
+        long t2 = System.nanoTime();
+        long a2 = allocatedBytes();
+
+        logger.info("Perf_block_building: {} μs/block, {} KB allocated/block, {} txs/block",
+                (t2 - t1) / repeat / 1_000, (a2 - a1) / repeat / 1024, txsPerBlock);
+    }
+
     public static void testBlockValidation(Block block) {
         Genesis gen = Genesis.load(Network.DEVNET);
 
@@ -127,10 +187,105 @@ public class BlockchainPerformance {
         logger.info("Perf_transaction_validation: {} μs/time", (t2 - t1) / repeat / 1_000);
     }
 
+    public static void testAddBlock() throws IOException {
+        File dataDir = Files.createTempDirectory("semux").toFile();
+        LevelDbFactory factory = new LevelDbFactory(dataDir);
+        try {
+            BlockchainImpl chain = new BlockchainImpl(config, factory);
+
+            // all transactions are sent to the same address, like an exchange
+            byte[] to = Bytes.random(20);
+            int repeat = 100;
+            int txsPerBlock = 1000;
+
+            long elapsed = 0;
+            for (int n = 1; n <= repeat; n++) {
+                List<Transaction> txs = new ArrayList<>();
+                List<TransactionResult> res = new ArrayList<>();
+                for (int i = 0; i < txsPerBlock; i++) {
+                    Transaction tx = new Transaction(config.network(), TransactionType.TRANSFER, to, 1,
+                            config.minTransactionFee(), (long) n * txsPerBlock + i, System.currentTimeMillis(),
+                            Bytes.EMPTY_BYTES).sign(key);
+                    txs.add(tx);
+                    res.add(new TransactionResult(true));
+                }
+
+                BlockHeader header = new BlockHeader(n, key.toAddress(), chain.getLatestBlockHash(),
+                        System.currentTimeMillis(), MerkleUtil.computeTransactionsRoot(txs),
+                        MerkleUtil.computeResultsRoot(res), Bytes.EMPTY_HASH, Bytes.EMPTY_BYTES);
+                Block block = new Block(header, txs, res);
+
+                long t1 = System.nanoTime();
+                chain.addBlock(block);
+                elapsed += System.nanoTime() - t1;
+            }
+
+            logger.info("Perf_block_add_same_recipient: {} ms/block, {} txs/block", elapsed / repeat / 1_000_000,
+                    txsPerBlock);
+        } finally {
+            factory.close();
+            FileUtil.recursiveDelete(dataDir);
+        }
+    }
+
+    public static void testGetRecentBlocks() throws IOException {
+        File dataDir = Files.createTempDirectory("semux").toFile();
+        LevelDbFactory factory = new LevelDbFactory(dataDir);
+        try {
+            BlockchainImpl chain = new BlockchainImpl(config, factory);
+
+            int numberOfBlocks = 500;
+            int recentBlocks = 100;
+            int txsPerBlock = 100;
+            int repeat = 100;
+            for (int n = 1; n <= numberOfBlocks; n++) {
+                List<Transaction> txs = new ArrayList<>();
+                List<TransactionResult> res = new ArrayList<>();
+                for (int i = 0; i < txsPerBlock; i++) {
+                    txs.add(new Transaction(config.network(), TransactionType.TRANSFER, Bytes.random(20), 1,
+                            config.minTransactionFee(), (long) n * txsPerBlock + i, System.currentTimeMillis(),
+                            Bytes.EMPTY_BYTES).sign(key));
+                    res.add(new TransactionResult(true));
+                }
+
+                BlockHeader header = new BlockHeader(n, key.toAddress(), chain.getLatestBlockHash(),
+                        System.currentTimeMillis(), MerkleUtil.computeTransactionsRoot(txs),
+                        MerkleUtil.computeResultsRoot(res), Bytes.EMPTY_HASH, Bytes.EMPTY_BYTES);
+                chain.addBlock(new Block(header, txs, res));
+            }
+
+            // reopen, with empty caches
+            chain = new BlockchainImpl(config, factory);
+
+            long t1 = System.nanoTime();
+            for (long n = numberOfBlocks - recentBlocks + 1; n <= numberOfBlocks; n++) {
+                chain.getBlock(n);
+            }
+            long t2 = System.nanoTime();
+            for (int i = 0; i < repeat; i++) {
+                for (long n = numberOfBlocks - recentBlocks + 1; n <= numberOfBlocks; n++) {
+                    chain.getBlock(n);
+                }
+            }
+            long t3 = System.nanoTime();
+
+            logger.info("Perf_block_get_uncached: {} μs/block, {} txs/block", (t2 - t1) / recentBlocks / 1_000,
+                    txsPerBlock);
+            logger.info("Perf_block_get_cached: {} ns/block, hit rate = {}", (t3 - t2) / recentBlocks / repeat,
+                    chain.getBlockCacheStats().hitRate());
+        } finally {
+            factory.close();
+            FileUtil.recursiveDelete(dataDir);
+        }
+    }
+
     public static void main(String[] args) throws Exception {
         Block block = testBlockCreation();
         testBlockValidation(block);
         testTransactionValidation();
+        testBlockBuilding();
+        testAddBlock();
+        testGetRecentBlocks();
 
         System.exit(0);
     }
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import org.semux.config.Config;
+import org.semux.config.Constants;
+import org.semux.config.DevnetConfig;
+import org.semux.consensus.Vote;
+import org.semux.consensus.VoteType;
+import org.semux.core.Block;
+import org.semux.core.BlockHeader;
+import org.semux.core.Transaction;
+import org.semux.core.TransactionResult;
+import org.semux.core.TransactionType;
+import org.semux.crypto.Key;
+import org.semux.crypto.Key.Signature;
+import org.semux.util.Bytes;
+import org.semux.util.MerkleUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the time and the heap allocations of decoding and re-encoding
+ * transactions, votes and blocks.
+ */
+public class CodecPerformance {
+    private static final Logger logger = LoggerFactory.getLogger(CodecPerformance.class);
+
+    private static final int NUMBER_OF_TRANSACTIONS = 1_000;
+    private static final int NUMBER_OF_VOTES = 64;
+
+    private static Config config = new DevnetConfig(Constants.DEFAULT_DATA_DIR);
+    private static Key key = new Key();
+
+    private static Transaction createTransaction(int nonce) {
+        return new Transaction(config.network(), TransactionType.TRANSFER, Bytes.random(20), 1,
+                config.minTransactionFee(), nonce, System.currentTimeMillis(), Bytes.EMPTY_BYTES).sign(key);
+    }
+
+    private static Vote createVote() {
+        return Vote.newApprove(VoteType.PRECOMMIT, 1, 0, Bytes.random(32)).sign(key);
+    }
+
+    private static Block createBlock() {
+        List<Transaction> txs = new ArrayList<>();
+        List<TransactionResult> res = new ArrayList<>();
+        for (int i = 0; i < NUMBER_OF_TRANSACTIONS; i++) {
+            txs.add(createTransaction(i));
+            res.add(new TransactionResult(true));
+        }
+        List<Signature> votes = new ArrayList<>();
+        for (int i = 0; i < NUMBER_OF_VOTES; i++) {
+            votes.add(createVote().getSignature());
+        }
+
+        BlockHeader header = new BlockHeader(1, key.toAddress(), Bytes.random(32), System.currentTimeMillis(),
+                MerkleUtil.computeTransactionsRoot(txs), MerkleUtil.computeResultsRoot(res), Bytes.EMPTY_HASH,
+                Bytes.EMPTY_BYTES);
+        Block block = new Block(header, txs, res);
+        block.setView(1);
+        block.setVotes(votes);
+        return block;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Decodes the bytes and encodes the decoded object again, which has no
+     * memoized encoding.
+     */
+    private static void testRoundTrip(String name, byte[] bytes, UnaryOperator<byte[]> roundTrip, int repeat) {
+        for (int i = 0; i < repeat / 5; i++) {
+            roundTrip.apply(bytes);
+        }
+
+        long a1 = allocatedBytes();
+        long t1 = System.nanoTime();
+        for (int i = 0; i < repeat; i++) {
+            roundTrip.apply(bytes);
+        }
+        long t2 = System.nanoTime();
+        long a2 = allocatedBytes();
+
+        logger.info("Perf_codec_{}: {} ns/round trip, {} bytes allocated/round trip, {} bytes encoded", name,
+                (t2 - t1) / repeat, (a2 - a1) / repeat, bytes.length);
+    }
+
+    public static void main(String[] args) {
+        testRoundTrip("transaction", createTransaction(0).toBytes(),
+                bytes -> Transaction.fromBytes(bytes).toBytes(), 1_000_000);
+        testRoundTrip("vote", createVote().toBytes(),
+                bytes -> Vote.fromBytes(bytes).toBytes(), 1_000_000);
+        testRoundTrip("block", createBlock().toBytes(),
+                bytes -> Block.fromBytes(bytes).toBytes(), 1_000);
+    }
+}
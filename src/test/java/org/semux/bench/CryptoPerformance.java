@@ -6,8 +6,16 @@
  */
 package org.semux.bench;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
 import org.semux.crypto.Hash;
 import org.semux.crypto.Key;
+import org.semux.crypto.Key.Signature;
+import org.semux.crypto.cache.SignatureCache;
+import org.semux.util.Bytes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,6 +24,40 @@ public class CryptoPerformance {
 
     private static int[] DATA_SIZES = { 1024, 1024 * 1024 };
     private static int REPEAT = 1000;
+    private static int SMALL_REPEAT = 1_000_000;
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Measures the time and the heap allocation per call of a hash function on
+     * small inputs, the size of transaction hashes, Merkle nodes and public keys.
+     */
+    private static void testSmallHash(String name, Consumer<byte[]> hash) {
+        byte[] data = Bytes.random(32);
+        for (int i = 0; i < SMALL_REPEAT / 10; i++) {
+            hash.accept(data);
+        }
+
+        long a1 = allocatedBytes();
+        long t1 = System.nanoTime();
+        for (int i = 0; i < SMALL_REPEAT; i++) {
+            hash.accept(data);
+        }
+        long t2 = System.nanoTime();
+        long a2 = allocatedBytes();
+
+        logger.info("Perf_{}: {} ns/call, {} bytes allocated/call", name, (t2 - t1) / SMALL_REPEAT,
+                (a2 - a1) / SMALL_REPEAT);
+    }
+
+    public static void testSmallHashes() {
+        testSmallHash("h256_32b", Hash::h256);
+        testSmallHash("h256_merge_32b_32b", data -> Hash.h256(data, data));
+        testSmallHash("h160_32b", Hash::h160);
+    }
 
     public static void testH256() {
         for (int size : DATA_SIZES) {
@@ -64,24 +106,64 @@ public class CryptoPerformance {
     public static void testVerify() {
         for (int size : DATA_SIZES) {
             Key eckey = new Key();
-            byte[] data = new byte[size];
-            byte[] hash = Hash.h256(data);
-            byte[] sig = eckey.sign(hash).toBytes();
+            byte[][] hashes = new byte[REPEAT][];
+            byte[][] sigs = new byte[REPEAT][];
+            for (int i = 0; i < REPEAT; i++) {
+                byte[] data = Bytes.random(size);
+                hashes[i] = Hash.h256(data);
+                sigs[i] = eckey.sign(hashes[i]).toBytes();
+            }
 
+            // distinct signatures, which miss the signature cache
             long t1 = System.nanoTime();
             for (int i = 0; i < REPEAT; i++) {
-                Key.verify(hash, sig);
+                Key.verify(hashes[i], sigs[i]);
             }
             long t2 = System.nanoTime();
 
+            // the same signatures again, all cache hits
+            for (int i = 0; i < REPEAT; i++) {
+                Key.verify(hashes[i], sigs[i]);
+            }
+            long t3 = System.nanoTime();
+
             logger.info("Perf_verify_{}k: {} μs/time", size / 1024, (t2 - t1) / 1_000 / REPEAT);
+            logger.info("Perf_verify_cached_{}k: {} μs/time", size / 1024, (t3 - t2) / 1_000 / REPEAT);
+        }
+        logger.info("Signature cache: hit rate = {}", SignatureCache.getHitRate());
+    }
+
+    public static void testVerifyBatch() {
+        int batch = 512;
+
+        List<byte[]> hashes = new ArrayList<>();
+        List<Signature> sigs = new ArrayList<>();
+        for (int i = 0; i < batch * 2; i++) {
+            byte[] hash = Hash.h256(Bytes.random(32));
+            hashes.add(hash);
+            sigs.add(new Key().sign(hash));
         }
+
+        // distinct signatures for each run, so that the signature cache doesn't hit
+        long t1 = System.nanoTime();
+        for (int i = 0; i < batch; i++) {
+            Key.verify(hashes.get(i), sigs.get(i));
+        }
+        long t2 = System.nanoTime();
+        Key.verifyBatch(hashes.subList(batch, batch * 2), sigs.subList(batch, batch * 2));
+        long t3 = System.nanoTime();
+
+        logger.info("Perf_verify_single: {} signatures/s", batch * 1_000_000_000L / (t2 - t1));
+        logger.info("Perf_verify_batch: {} signatures/s, {} cores", batch * 1_000_000_000L / (t3 - t2),
+                Runtime.getRuntime().availableProcessors());
     }
 
     public static void main(String[] args) throws Exception {
+        testSmallHashes();
         testH256();
         testH160();
         testSign();
         testVerify();
+        testVerifyBatch();
     }
 }
@@ -7,10 +7,24 @@
 package org.semux.bench;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.semux.config.Constants;
+import org.semux.db.Db;
+import org.semux.db.DbName;
+import org.semux.db.DbOptions;
 import org.semux.db.LevelDb;
+import org.semux.db.LevelDb.LevelDbFactory;
 import org.semux.util.Bytes;
+import org.semux.util.FileUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,6 +33,11 @@ public class DBPerformance {
 
     private static final int REPEAT = 100_000;
 
+    private static final int NUMBER_OF_ACCOUNTS = 200_000;
+    private static final int NUMBER_OF_BLOCKS = 20_000;
+    private static final int TXS_PER_BLOCK = 20;
+    private static final int BATCH_SIZE = 1_000;
+
     private static LevelDb getTestDB() {
         return new LevelDb(new File(Constants.DEFAULT_DATA_DIR, "test"));
     }
@@ -54,11 +73,115 @@ public class DBPerformance {
         }
     }
 
-    public static void main(String[] args) {
+    /**
+     * Creates a transaction-like record: hashes and signatures are random, the
+     * other fields are small numbers.
+     */
+    private static byte[] randomTransaction(Random random) {
+        byte[] tx = new byte[160];
+        random.nextBytes(tx);
+        for (int i = 96; i < tx.length; i += 8) {
+            tx[i] = (byte) random.nextInt(4);
+        }
+        return tx;
+    }
+
+    private static long size(File dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            return paths.map(Path::toFile).filter(File::isFile).mapToLong(File::length).sum();
+        }
+    }
+
+    /**
+     * Loads a synthetic dataset, shaped like the mainnet databases, and measures
+     * the random reads of each database.
+     *
+     * @param profile
+     * @param options
+     */
+    public static void testProfile(String profile, Function<DbName, DbOptions> options) throws IOException {
+        File dataDir = Files.createTempDirectory("semux").toFile();
+        try {
+            Random random = new Random(1);
+            List<byte[]> addresses = new ArrayList<>();
+            List<byte[]> txHashes = new ArrayList<>();
+
+            // load
+            long t1 = System.nanoTime();
+            LevelDbFactory factory = new LevelDbFactory(dataDir, options);
+            List<Pair<byte[], byte[]>> batch = new ArrayList<>();
+            for (int i = 0; i < NUMBER_OF_ACCOUNTS; i++) {
+                byte[] address = Bytes.random(20);
+                addresses.add(address);
+                batch.add(Pair.of(Bytes.merge((byte) 0, address), Bytes.random(24)));
+                if (batch.size() == BATCH_SIZE) {
+                    factory.getDB(DbName.ACCOUNT).updateBatch(batch);
+                    batch.clear();
+                }
+            }
+            for (int n = 0; n < NUMBER_OF_BLOCKS; n++) {
+                List<Pair<byte[], byte[]>> index = new ArrayList<>();
+                byte[] txs = new byte[0];
+                for (int i = 0; i < TXS_PER_BLOCK; i++) {
+                    txs = Bytes.merge(txs, randomTransaction(random));
+                    byte[] hash = Bytes.random(32);
+                    if (i == 0) {
+                        txHashes.add(hash);
+                    }
+                    index.add(Pair.of(Bytes.merge((byte) 1, hash), Bytes.merge(Bytes.of((long) n), Bytes.of(i))));
+                }
+                factory.getDB(DbName.BLOCK).put(Bytes.merge((byte) 0, Bytes.of((long) n)), Bytes.random(200));
+                factory.getDB(DbName.BLOCK).put(Bytes.merge((byte) 1, Bytes.of((long) n)), txs);
+                factory.getDB(DbName.INDEX).updateBatch(index);
+            }
+            factory.close();
+            long t2 = System.nanoTime();
+
+            // random reads, after reopening
+            factory = new LevelDbFactory(dataDir, options);
+            Db account = factory.getDB(DbName.ACCOUNT);
+            Db index = factory.getDB(DbName.INDEX);
+            Db block = factory.getDB(DbName.BLOCK);
+
+            long t3 = System.nanoTime();
+            for (int i = 0; i < REPEAT; i++) {
+                account.get(Bytes.merge((byte) 0, addresses.get(random.nextInt(addresses.size()))));
+            }
+            long t4 = System.nanoTime();
+            for (int i = 0; i < REPEAT; i++) {
+                index.get(Bytes.merge((byte) 1, txHashes.get(random.nextInt(txHashes.size()))));
+            }
+            long t5 = System.nanoTime();
+            for (int i = 0; i < REPEAT / 10; i++) {
+                long n = random.nextInt(NUMBER_OF_BLOCKS);
+                block.get(Bytes.merge((byte) 0, Bytes.of(n)));
+                block.get(Bytes.merge((byte) 1, Bytes.of(n)));
+            }
+            long t6 = System.nanoTime();
+            factory.close();
+
+            logger.info("Perf_db_profile_{}: load = {} ms, account = {} ns/read, index = {} ns/read, "
+                    + "block = {} ns/read, size = {} MB", profile, (t2 - t1) / 1_000_000,
+                    (t4 - t3) / REPEAT, (t5 - t4) / REPEAT, (t6 - t5) / (REPEAT / 10),
+                    size(dataDir) / 1024 / 1024);
+        } finally {
+            FileUtil.recursiveDelete(dataDir);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
         testWrite();
         testRead();
 
         LevelDb db = getTestDB();
         db.destroy();
+
+        // warm up the JIT before comparing
+        testProfile("warmup", DbOptions::defaults);
+
+        testProfile("legacy", name -> new DbOptions());
+        testProfile("default", DbOptions::defaults);
+        testProfile("compressed", name -> DbOptions.defaults(name).compression(true));
+        testProfile("no_checksums", name -> DbOptions.defaults(name).verifyChecksums(false));
     }
 }
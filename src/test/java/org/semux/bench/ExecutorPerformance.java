@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.semux.config.Config;
+import org.semux.config.Constants;
+import org.semux.config.DevnetConfig;
+import org.semux.core.BlockchainImpl;
+import org.semux.core.Transaction;
+import org.semux.core.TransactionExecutor;
+import org.semux.core.TransactionType;
+import org.semux.core.Unit;
+import org.semux.core.state.AccountState;
+import org.semux.core.state.DelegateState;
+import org.semux.crypto.Key;
+import org.semux.db.LevelDb.LevelDbFactory;
+import org.semux.util.Bytes;
+import org.semux.util.FileUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the throughput of the transaction executor. A block of transactions
+ * is executed as a node does: once when it's proposed, and again when it's
+ * validated and applied. The transactions are decoded again for every round,
+ * so that nothing is carried over between rounds.
+ */
+public class ExecutorPerformance {
+    private static final Logger logger = LoggerFactory.getLogger(ExecutorPerformance.class);
+
+    private static final int NUMBER_OF_SENDERS = 100;
+    private static final int NUMBER_OF_TRANSACTIONS = 1_000;
+    private static final int EXECUTIONS = 3;
+    private static final int REPEAT = 200;
+
+    private static Config config = new DevnetConfig(Constants.DEFAULT_DATA_DIR);
+
+    private static List<Key> senders = new ArrayList<>();
+    static {
+        for (int i = 0; i < NUMBER_OF_SENDERS; i++) {
+            senders.add(new Key());
+        }
+    }
+
+    private static List<byte[]> createTransactions() {
+        List<byte[]> txs = new ArrayList<>();
+        for (int i = 0; i < NUMBER_OF_TRANSACTIONS; i++) {
+            Key sender = senders.get(i % NUMBER_OF_SENDERS);
+            txs.add(new Transaction(config.network(), TransactionType.TRANSFER, Bytes.random(20), 1,
+                    config.minTransactionFee(), i / NUMBER_OF_SENDERS, System.currentTimeMillis(),
+                    Bytes.EMPTY_BYTES).sign(sender).toBytes());
+        }
+        return txs;
+    }
+
+    private static List<Transaction> decode(List<byte[]> encoded) {
+        List<Transaction> txs = new ArrayList<>();
+        for (byte[] bytes : encoded) {
+            txs.add(Transaction.fromBytes(bytes));
+        }
+        return txs;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void execute(TransactionExecutor exec, List<Transaction> txs, AccountState as,
+            DelegateState ds) {
+        for (int i = 0; i < EXECUTIONS; i++) {
+            AccountState as2 = as.track();
+            DelegateState ds2 = ds.track();
+            exec.execute(txs, as2, ds2);
+            as2.rollback();
+            ds2.rollback();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        File dataDir = Files.createTempDirectory("semux").toFile();
+        LevelDbFactory factory = new LevelDbFactory(dataDir);
+        try {
+            BlockchainImpl chain = new BlockchainImpl(config, factory);
+            AccountState as = chain.getAccountState();
+            DelegateState ds = chain.getDelegateState();
+            for (Key sender : senders) {
+                as.adjustAvailable(sender.toAddress(), 1_000 * Unit.SEM);
+            }
+            as.commit();
+
+            TransactionExecutor exec = new TransactionExecutor(config);
+            List<byte[]> encoded = createTransactions();
+            for (int i = 0; i < REPEAT / 5; i++) {
+                execute(exec, decode(encoded), as, ds);
+            }
+
+            long time = 0;
+            long allocated = 0;
+            for (int i = 0; i < REPEAT; i++) {
+                List<Transaction> txs = decode(encoded);
+
+                long a1 = allocatedBytes();
+                long t1 = System.nanoTime();
+                execute(exec, txs, as, ds);
+                long t2 = System.nanoTime();
+                long a2 = allocatedBytes();
+
+                time += t2 - t1;
+                allocated += a2 - a1;
+            }
+
+            long executed = (long) REPEAT * EXECUTIONS * NUMBER_OF_TRANSACTIONS;
+            logger.info("Perf_executor: {} txs/s, {} bytes allocated/tx", executed * 1_000_000_000L / time,
+                    allocated / executed);
+        } finally {
+            factory.close();
+            FileUtil.recursiveDelete(dataDir);
+        }
+
+        System.exit(0);
+    }
+}
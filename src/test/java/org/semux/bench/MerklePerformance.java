@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.semux.config.Config;
+import org.semux.config.Constants;
+import org.semux.config.DevnetConfig;
+import org.semux.core.Transaction;
+import org.semux.core.TransactionType;
+import org.semux.crypto.Key;
+import org.semux.util.Bytes;
+import org.semux.util.MerkleTree;
+import org.semux.util.MerkleUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the time and the heap allocations of computing the transactions
+ * root of a block, and of building a Merkle tree and taking the proofs of all
+ * its elements.
+ */
+public class MerklePerformance {
+    private static final Logger logger = LoggerFactory.getLogger(MerklePerformance.class);
+
+    private static Config config = new DevnetConfig(Constants.DEFAULT_DATA_DIR);
+    private static Key key = new Key();
+
+    private static List<Transaction> createTransactions(int n) {
+        List<Transaction> txs = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Transaction tx = new Transaction(config.network(), TransactionType.TRANSFER, Bytes.random(20), 1,
+                    config.minTransactionFee(), i, System.currentTimeMillis(), Bytes.EMPTY_BYTES).sign(key);
+            txs.add(tx);
+        }
+        return txs;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void test(String name, Runnable task, int repeat) {
+        for (int i = 0; i < repeat / 5; i++) {
+            task.run();
+        }
+
+        long a1 = allocatedBytes();
+        long t1 = System.nanoTime();
+        for (int i = 0; i < repeat; i++) {
+            task.run();
+        }
+        long t2 = System.nanoTime();
+        long a2 = allocatedBytes();
+
+        logger.info("Perf_merkle_{}: {} μs/op, {} bytes allocated/op", name, (t2 - t1) / 1_000 / repeat,
+                (a2 - a1) / repeat);
+    }
+
+    public static void main(String[] args) {
+        for (int n : new int[] { 1_000, 10_000 }) {
+            List<Transaction> txs = createTransactions(n);
+            List<byte[]> hashes = new ArrayList<>();
+            for (Transaction tx : txs) {
+                hashes.add(tx.getHash());
+            }
+            int repeat = 10_000_000 / n;
+
+            test("root_" + n, () -> MerkleUtil.computeTransactionsRoot(txs), repeat);
+            test("tree_" + n, () -> new MerkleTree(hashes), repeat);
+            MerkleTree tree = new MerkleTree(hashes);
+            test("proofs_" + n, () -> {
+                for (int i = 0; i < n; i++) {
+                    tree.getProof(i);
+                }
+            }, repeat);
+        }
+    }
+}
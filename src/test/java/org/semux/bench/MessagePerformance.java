@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.bench;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.semux.config.Config;
+import org.semux.config.Constants;
+import org.semux.config.DevnetConfig;
+import org.semux.core.Block;
+import org.semux.core.BlockHeader;
+import org.semux.core.Transaction;
+import org.semux.core.TransactionResult;
+import org.semux.core.TransactionType;
+import org.semux.crypto.Key;
+import org.semux.net.Frame;
+import org.semux.net.SemuxFrameHandler;
+import org.semux.net.SemuxMessageHandler;
+import org.semux.net.msg.Message;
+import org.semux.net.msg.MessageException;
+import org.semux.net.msg.MessageFactory;
+import org.semux.net.msg.consensus.BlockMessage;
+import org.semux.util.Bytes;
+import org.semux.util.MerkleUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xerial.snappy.Snappy;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+/**
+ * Measures the time and the heap allocations of a {@link BlockMessage}
+ * encode/decode round trip, through the frame and message handlers, and
+ * through the copying byte array path they replaced.
+ */
+public class MessagePerformance {
+    private static final Logger logger = LoggerFactory.getLogger(MessagePerformance.class);
+
+    private static final int NUMBER_OF_TRANSACTIONS = 1_000;
+    private static final int WARMUP = 200;
+    private static final int REPEAT = 1_000;
+
+    private static Config config = new DevnetConfig(Constants.DEFAULT_DATA_DIR);
+    private static MessageFactory messageFactory = new MessageFactory();
+
+    private static Block createBlock() {
+        Key key = new Key();
+        List<Transaction> txs = new ArrayList<>();
+        List<TransactionResult> res = new ArrayList<>();
+        for (int i = 0; i < NUMBER_OF_TRANSACTIONS; i++) {
+            txs.add(new Transaction(config.network(), TransactionType.TRANSFER, Bytes.random(20), 1,
+                    config.minTransactionFee(), i, System.currentTimeMillis(), Bytes.EMPTY_BYTES).sign(key));
+            res.add(new TransactionResult(true));
+        }
+
+        BlockHeader header = new BlockHeader(1, key.toAddress(), Bytes.random(32), System.currentTimeMillis(),
+                MerkleUtil.computeTransactionsRoot(txs), MerkleUtil.computeResultsRoot(res), Bytes.EMPTY_HASH,
+                Bytes.EMPTY_BYTES);
+        return new Block(header, txs, res);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * The pooled buffer path of the frame and message handlers.
+     */
+    private static Message roundTripPooled(EmbeddedChannel sender, EmbeddedChannel receiver, Message msg) {
+        sender.writeOutbound(msg);
+        ByteBuf buf;
+        while ((buf = sender.readOutbound()) != null) {
+            receiver.writeInbound(buf);
+        }
+        return receiver.readInbound();
+    }
+
+    /**
+     * The byte array path: compress, split into chunks, copy each chunk into a
+     * buffer, and back.
+     */
+    private static Message roundTripCopying(Message msg) throws IOException, MessageException {
+        byte[] data = msg.getEncoded();
+        byte[] compressed = Snappy.compress(data);
+
+        int limit = config.netMaxFrameBodySize();
+        int total = (compressed.length - 1) / limit + 1;
+        List<ByteBuf> bufs = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            byte[] body = new byte[(i < total - 1) ? limit : compressed.length - i * limit];
+            System.arraycopy(compressed, i * limit, body, 0, body.length);
+
+            Frame frame = new Frame(Frame.VERSION, Frame.COMPRESS_SNAPPY, msg.getCode().toByte(), 1,
+                    compressed.length, body.length, null);
+            ByteBuf buf = ByteBufAllocator.DEFAULT.buffer(Frame.HEADER_SIZE + body.length);
+            frame.writeHeader(buf);
+            buf.writeBytes(body);
+            bufs.add(buf);
+        }
+
+        List<byte[]> bodies = new ArrayList<>();
+        for (ByteBuf buf : bufs) {
+            Frame frame = Frame.readHeader(buf);
+            byte[] body = new byte[frame.getBodySize()];
+            buf.readBytes(body);
+            bodies.add(body);
+            buf.release();
+        }
+        byte[] packet = new byte[compressed.length];
+        int pos = 0;
+        for (byte[] body : bodies) {
+            System.arraycopy(body, 0, packet, pos, body.length);
+            pos += body.length;
+        }
+
+        return messageFactory.create(msg.getCode().toByte(), Snappy.uncompress(packet));
+    }
+
+    public static void main(String[] args) throws IOException, MessageException {
+        BlockMessage msg = new BlockMessage(createBlock());
+        logger.info("Perf_message_size: {} bytes, {} transactions", msg.getEncoded().length, NUMBER_OF_TRANSACTIONS);
+
+        for (int i = 0; i < WARMUP; i++) {
+            roundTripCopying(msg);
+        }
+        long a1 = allocatedBytes();
+        long t1 = System.nanoTime();
+        for (int i = 0; i < REPEAT; i++) {
+            roundTripCopying(msg);
+        }
+        long t2 = System.nanoTime();
+        long a2 = allocatedBytes();
+        logger.info("Perf_message_copying: {} μs/round trip, {} KB allocated/round trip",
+                (t2 - t1) / 1_000 / REPEAT, (a2 - a1) / 1024 / REPEAT);
+
+        EmbeddedChannel sender = new EmbeddedChannel(new SemuxFrameHandler(config), new SemuxMessageHandler(config));
+        EmbeddedChannel receiver = new EmbeddedChannel(new SemuxFrameHandler(config),
+                new SemuxMessageHandler(config));
+        for (int i = 0; i < WARMUP; i++) {
+            roundTripPooled(sender, receiver, msg);
+        }
+        long a3 = allocatedBytes();
+        long t3 = System.nanoTime();
+        for (int i = 0; i < REPEAT; i++) {
+            roundTripPooled(sender, receiver, msg);
+        }
+        long t4 = System.nanoTime();
+        long a4 = allocatedBytes();
+        logger.info("Perf_message_pooled: {} μs/round trip, {} KB allocated/round trip",
+                (t4 - t3) / 1_000 / REPEAT, (a4 - a3) / 1024 / REPEAT);
+
+        sender.finishAndReleaseAll();
+        receiver.finishAndReleaseAll();
+    }
+}
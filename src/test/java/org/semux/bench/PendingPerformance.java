@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.semux.KernelMock;
+import org.semux.config.Config;
+import org.semux.config.Constants;
+import org.semux.config.DevnetConfig;
+import org.semux.core.BlockchainImpl;
+import org.semux.core.PendingManager;
+import org.semux.core.Transaction;
+import org.semux.core.TransactionType;
+import org.semux.core.Wallet;
+import org.semux.core.state.AccountState;
+import org.semux.crypto.Key;
+import org.semux.db.LevelDb.LevelDbFactory;
+import org.semux.net.ChannelManager;
+import org.semux.util.ByteArray;
+import org.semux.util.Bytes;
+import org.semux.util.FileUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Load test of the {@link PendingManager}: injects signed transfers from
+ * multiple threads and measures the accept rate and latency.
+ */
+public class PendingPerformance {
+    private static final Logger logger = LoggerFactory.getLogger(PendingPerformance.class);
+
+    private static final int NUMBER_OF_SENDERS = 500;
+    private static final int TXS_PER_SENDER = 100;
+    private static final int NUMBER_OF_PRODUCERS = 4;
+
+    private static Config config = new DevnetConfig(Constants.DEFAULT_DATA_DIR);
+
+    /**
+     * Records the time when each transaction is accepted, and ignores the pool
+     * size limit.
+     */
+    private static class PendingManagerProbe extends PendingManager {
+        private final Map<ByteArray, Long> accepted = new ConcurrentHashMap<>();
+
+        public PendingManagerProbe(KernelMock kernel) {
+            super(kernel);
+        }
+
+        @Override
+        protected void relay(Transaction tx) {
+            accepted.put(ByteArray.of(tx.getHash()), System.nanoTime());
+        }
+
+        @Override
+        protected boolean isFull() {
+            return false;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        File dataDir = Files.createTempDirectory("semux").toFile();
+        LevelDbFactory factory = new LevelDbFactory(dataDir);
+        try {
+            KernelMock kernel = new KernelMock(config, new Wallet(new File(dataDir, "wallet.data")), new Key());
+            kernel.setBlockchain(new BlockchainImpl(config, factory));
+            kernel.setChannelManager(new ChannelManager(kernel));
+
+            // fund the senders and sign the transfers
+            AccountState as = kernel.getBlockchain().getAccountState();
+            long now = System.currentTimeMillis();
+            List<List<Transaction>> producers = new ArrayList<>();
+            for (int i = 0; i < NUMBER_OF_PRODUCERS; i++) {
+                producers.add(new ArrayList<>());
+            }
+            for (int i = 0; i < NUMBER_OF_SENDERS; i++) {
+                Key sender = new Key();
+                byte[] to = Bytes.random(20); // the hash doesn't cover the sender
+                as.adjustAvailable(sender.toAddress(), 1_000_000L * config.minTransactionFee());
+                for (int nonce = 0; nonce < TXS_PER_SENDER; nonce++) {
+                    Transaction tx = new Transaction(config.network(), TransactionType.TRANSFER, to, 1,
+                            config.minTransactionFee(), nonce, now, Bytes.EMPTY_BYTES).sign(sender);
+                    producers.get(i % NUMBER_OF_PRODUCERS).add(tx);
+                }
+            }
+            as.commit();
+            for (List<Transaction> txs : producers) {
+                // nonces of one sender stay roughly in order, like in a real network
+                Collections.shuffle(txs.subList(0, txs.size() / 2));
+            }
+
+            PendingManagerProbe pendingMgr = new PendingManagerProbe(kernel);
+            pendingMgr.start();
+
+            // inject
+            int total = NUMBER_OF_SENDERS * TXS_PER_SENDER;
+            Map<ByteArray, Long> submitted = new ConcurrentHashMap<>();
+            List<Thread> threads = new ArrayList<>();
+            long t1 = System.nanoTime();
+            for (List<Transaction> txs : producers) {
+                Thread t = new Thread(() -> {
+                    for (Transaction tx : txs) {
+                        submitted.put(ByteArray.of(tx.getHash()), System.nanoTime());
+                        pendingMgr.addTransaction(tx);
+                    }
+                }, "pending-bench");
+                t.start();
+                threads.add(t);
+            }
+            for (Thread t : threads) {
+                t.join();
+            }
+            long t2 = System.nanoTime();
+
+            long deadline = System.currentTimeMillis() + 120_000;
+            while (pendingMgr.accepted.size() < total && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            long t3 = System.nanoTime();
+            pendingMgr.stop();
+
+            long[] latencies = pendingMgr.accepted.entrySet().stream()
+                    .mapToLong(e -> e.getValue() - submitted.get(e.getKey()))
+                    .toArray();
+            Arrays.sort(latencies);
+
+            logger.info("Perf_pending_inject: {} txs in {} ms", total, (t2 - t1) / 1_000_000);
+            logger.info("Perf_pending_accept: {} / {} txs, {} tx/s", latencies.length, total,
+                    latencies.length * 1_000_000_000L / (t3 - t1));
+            if (latencies.length > 0) {
+                logger.info("Perf_pending_latency: p50 = {} ms, p99 = {} ms, max = {} ms",
+                        latencies[latencies.length / 2] / 1_000_000,
+                        latencies[(int) (latencies.length * 0.99)] / 1_000_000,
+                        latencies[latencies.length - 1] / 1_000_000);
+            }
+        } finally {
+            factory.close();
+            FileUtil.recursiveDelete(dataDir);
+        }
+
+        System.exit(0);
+    }
+}
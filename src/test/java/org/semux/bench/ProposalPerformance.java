@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.bench;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.semux.config.Config;
+import org.semux.config.Constants;
+import org.semux.config.DevnetConfig;
+import org.semux.consensus.Proof;
+import org.semux.consensus.Proposal;
+import org.semux.core.BlockHeader;
+import org.semux.core.Transaction;
+import org.semux.core.TransactionResult;
+import org.semux.core.TransactionType;
+import org.semux.crypto.Key;
+import org.semux.net.SemuxFrameHandler;
+import org.semux.net.SemuxMessageHandler;
+import org.semux.net.msg.Message;
+import org.semux.net.msg.consensus.CompactProposalMessage;
+import org.semux.net.msg.consensus.ProposalMessage;
+import org.semux.util.Bytes;
+import org.semux.util.MerkleUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+/**
+ * Compares the full and the compact proposal messages: the bytes on the wire,
+ * and the time to encode, frame, decode and validate a proposal, when the
+ * receiver already holds all its transactions. The transfer time is modeled
+ * for a given link bandwidth.
+ */
+public class ProposalPerformance {
+    private static final Logger logger = LoggerFactory.getLogger(ProposalPerformance.class);
+
+    private static final int NUMBER_OF_TRANSACTIONS = 1_000;
+    private static final int REPEAT = 200;
+    private static final long LINK_BITS_PER_SECOND = 10_000_000L;
+
+    private static Config config = new DevnetConfig(Constants.DEFAULT_DATA_DIR);
+
+    private static Map<Long, Transaction> pending = new HashMap<>();
+
+    private static Proposal createProposal() {
+        Key key = new Key();
+        List<Transaction> txs = new ArrayList<>();
+        List<TransactionResult> res = new ArrayList<>();
+        for (int i = 0; i < NUMBER_OF_TRANSACTIONS; i++) {
+            Transaction tx = new Transaction(config.network(), TransactionType.TRANSFER, Bytes.random(20), 1,
+                    config.minTransactionFee(), i, System.currentTimeMillis(), Bytes.EMPTY_BYTES).sign(key);
+            txs.add(tx);
+            res.add(new TransactionResult(true));
+            pending.put(CompactProposalMessage.shortId(tx.getHash()), tx);
+        }
+
+        BlockHeader header = new BlockHeader(1, key.toAddress(), Bytes.random(32), System.currentTimeMillis(),
+                MerkleUtil.computeTransactionsRoot(txs), MerkleUtil.computeResultsRoot(res), Bytes.EMPTY_HASH,
+                Bytes.EMPTY_BYTES);
+        return new Proposal(new Proof(1, 0), header, txs).sign(key);
+    }
+
+    /**
+     * Sends a message through a pair of channels, and returns the received
+     * message and the bytes on the wire.
+     */
+    private static Message transfer(EmbeddedChannel sender, EmbeddedChannel receiver, Message msg, long[] wire) {
+        sender.writeOutbound(msg);
+        ByteBuf buf;
+        while ((buf = sender.readOutbound()) != null) {
+            wire[0] += buf.readableBytes();
+            receiver.writeInbound(buf);
+        }
+        return receiver.readInbound();
+    }
+
+    private static Proposal receiveFull(Message msg) {
+        return ((ProposalMessage) msg).getProposal();
+    }
+
+    private static Proposal receiveCompact(Message msg) {
+        CompactProposalMessage m = (CompactProposalMessage) msg;
+        List<Transaction> txs = new ArrayList<>();
+        for (long id : m.getShortIds()) {
+            txs.add(pending.get(id));
+        }
+        return new Proposal(m.getProof(), m.getBlockHeader(), txs, m.getSignature());
+    }
+
+    private static void test(String name, Message msg, boolean compact) {
+        EmbeddedChannel sender = new EmbeddedChannel(new SemuxFrameHandler(config), new SemuxMessageHandler(config));
+        EmbeddedChannel receiver = new EmbeddedChannel(new SemuxFrameHandler(config),
+                new SemuxMessageHandler(config));
+
+        long[] wire = new long[1];
+        for (int i = 0; i < REPEAT; i++) {
+            Message received = transfer(sender, receiver, msg, wire);
+            Proposal p = compact ? receiveCompact(received) : receiveFull(received);
+            if (!p.validate()) {
+                throw new IllegalStateException("Invalid proposal");
+            }
+        }
+
+        wire[0] = 0;
+        long t1 = System.nanoTime();
+        for (int i = 0; i < REPEAT; i++) {
+            Message received = transfer(sender, receiver, msg, wire);
+            Proposal p = compact ? receiveCompact(received) : receiveFull(received);
+            p.validate();
+        }
+        long t2 = System.nanoTime();
+
+        long bytes = wire[0] / REPEAT;
+        logger.info("Perf_proposal_{}: {} bytes encoded, {} bytes on the wire, {} μs to process, {} μs to transfer "
+                + "at {} Mbit/s", name, msg.getEncoded().length, bytes, (t2 - t1) / 1_000 / REPEAT,
+                bytes * 8 * 1_000_000 / LINK_BITS_PER_SECOND, LINK_BITS_PER_SECOND / 1_000_000);
+
+        sender.finishAndReleaseAll();
+        receiver.finishAndReleaseAll();
+    }
+
+    public static void main(String[] args) {
+        Proposal proposal = createProposal();
+
+        test("full", new ProposalMessage(proposal), false);
+        test("compact", new CompactProposalMessage(proposal), true);
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.semux.config.Config;
+import org.semux.config.Constants;
+import org.semux.config.DevnetConfig;
+import org.semux.core.BlockchainImpl;
+import org.semux.core.state.AccountState;
+import org.semux.db.LevelDb.LevelDbFactory;
+import org.semux.util.Bytes;
+import org.semux.util.FileUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the nested track/commit cycles of the account state.
+ */
+public class StatePerformance {
+    private static final Logger logger = LoggerFactory.getLogger(StatePerformance.class);
+
+    private static Config config = new DevnetConfig(Constants.DEFAULT_DATA_DIR);
+
+    private static final int NUMBER_OF_ACCOUNTS = 1000;
+    private static final int REPEAT = 10_000;
+
+    private static List<byte[]> accounts = new ArrayList<>();
+    static {
+        for (int i = 0; i < NUMBER_OF_ACCOUNTS; i++) {
+            accounts.add(Bytes.random(20));
+        }
+    }
+
+    /**
+     * Lookups through a stack of nested states, each of them with one update.
+     *
+     * @param root
+     * @param depth
+     */
+    public static void testLookup(AccountState root, int depth) {
+        List<AccountState> stack = new ArrayList<>();
+        AccountState as = root.track();
+        stack.add(as);
+        for (int i = 1; i < depth; i++) {
+            as = as.track();
+            as.adjustAvailable(accounts.get(i % NUMBER_OF_ACCOUNTS), 1);
+            stack.add(as);
+        }
+
+        long t1 = System.nanoTime();
+        for (int i = 0; i < REPEAT; i++) {
+            as.getAccount(accounts.get(i % NUMBER_OF_ACCOUNTS));
+        }
+        long t2 = System.nanoTime();
+        logger.info("Perf_state_lookup_depth_{}: {} ns/lookup", depth, (t2 - t1) / REPEAT);
+
+        for (int i = stack.size() - 1; i >= 0; i--) {
+            stack.get(i).rollback();
+        }
+    }
+
+    /**
+     * The pattern of the pending manager: one nested state per transaction on top
+     * of a long-living tracked state.
+     *
+     * @param root
+     */
+    public static void testTrackCommit(AccountState root) {
+        AccountState pending = root.track();
+
+        long t1 = System.nanoTime();
+        for (int i = 0; i < REPEAT; i++) {
+            AccountState as = pending.track();
+            byte[] from = accounts.get(i % NUMBER_OF_ACCOUNTS);
+            byte[] to = accounts.get((i + 1) % NUMBER_OF_ACCOUNTS);
+            as.increaseNonce(from);
+            as.adjustAvailable(from, -1);
+            as.adjustAvailable(to, 1);
+            if (i % 10 == 0) {
+                as.rollback();
+            } else {
+                as.commit();
+            }
+        }
+        long t2 = System.nanoTime();
+        pending.commit();
+        long t3 = System.nanoTime();
+        root.commit();
+        long t4 = System.nanoTime();
+
+        logger.info("Perf_state_track_commit: {} ns/cycle", (t2 - t1) / REPEAT);
+        logger.info("Perf_state_commit_tracked: {} μs", (t3 - t2) / 1_000);
+        logger.info("Perf_state_commit_root: {} μs", (t4 - t3) / 1_000);
+    }
+
+    public static void main(String[] args) throws IOException {
+        File dataDir = Files.createTempDirectory("semux").toFile();
+        LevelDbFactory factory = new LevelDbFactory(dataDir);
+        try {
+            BlockchainImpl chain = new BlockchainImpl(config, factory);
+            AccountState root = chain.getAccountState();
+            for (byte[] account : accounts) {
+                root.adjustAvailable(account, 1_000_000);
+            }
+            root.commit();
+
+            for (int depth : new int[] { 1, 10, 100, 1000 }) {
+                testLookup(root, depth);
+            }
+            testTrackCommit(root);
+        } finally {
+            factory.close();
+            FileUtil.recursiveDelete(dataDir);
+        }
+
+        System.exit(0);
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.semux.KernelMock;
+import org.semux.config.Config;
+import org.semux.config.Constants;
+import org.semux.config.DevnetConfig;
+import org.semux.consensus.SemuxSync;
+import org.semux.consensus.Vote;
+import org.semux.consensus.VoteType;
+import org.semux.core.Block;
+import org.semux.core.BlockHeader;
+import org.semux.core.Blockchain;
+import org.semux.core.BlockchainImpl;
+import org.semux.core.Transaction;
+import org.semux.core.TransactionResult;
+import org.semux.core.TransactionType;
+import org.semux.core.Wallet;
+import org.semux.crypto.Hex;
+import org.semux.crypto.Key;
+import org.semux.crypto.Key.Signature;
+import org.semux.db.DbFactory;
+import org.semux.db.LevelDb.LevelDbFactory;
+import org.semux.net.Channel;
+import org.semux.net.ChannelManager;
+import org.semux.net.msg.consensus.BlockMessage;
+import org.semux.util.Bytes;
+import org.semux.util.FileUtil;
+import org.semux.util.MerkleUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replays a generated chain, stored in a local LevelDB, through
+ * {@link SemuxSync} and measures the import speed.
+ */
+public class SyncPerformance {
+    private static final Logger logger = LoggerFactory.getLogger(SyncPerformance.class);
+
+    private static final int NUMBER_OF_BLOCKS = 500;
+    private static final int TXS_PER_BLOCK = 100;
+    private static final int NUMBER_OF_VALIDATORS = 100;
+
+    private static Config config = new DevnetConfig(Constants.DEFAULT_DATA_DIR);
+
+    private static Key sender = new Key();
+    private static List<Key> validators = new ArrayList<>();
+    private static List<String> validatorAddresses = new ArrayList<>();
+    static {
+        for (int i = 0; i < NUMBER_OF_VALIDATORS; i++) {
+            Key key = new Key();
+            validators.add(key);
+            validatorAddresses.add(Hex.encode(key.toAddress()));
+        }
+    }
+
+    /**
+     * Creates a blockchain whose validator set is the generated validators.
+     *
+     * @param factory
+     * @return
+     */
+    private static BlockchainImpl createChain(DbFactory factory) {
+        BlockchainImpl chain = new BlockchainImpl(config, factory) {
+            @Override
+            public List<String> getValidators() {
+                return validatorAddresses;
+            }
+        };
+        chain.getAccountState().adjustAvailable(sender.toAddress(), 1_000_000_000L * config.minTransactionFee());
+        chain.getAccountState().commit();
+        return chain;
+    }
+
+    public static void generateChain(Blockchain chain) {
+        byte[] to = Bytes.random(20);
+        int twoThirds = (int) Math.ceil(NUMBER_OF_VALIDATORS * 2.0 / 3.0);
+
+        for (int n = 1; n <= NUMBER_OF_BLOCKS; n++) {
+            List<Transaction> txs = new ArrayList<>();
+            List<TransactionResult> res = new ArrayList<>();
+            for (int i = 0; i < TXS_PER_BLOCK; i++) {
+                Transaction tx = new Transaction(config.network(), TransactionType.TRANSFER, to, 1,
+                        config.minTransactionFee(), (long) (n - 1) * TXS_PER_BLOCK + i,
+                        System.currentTimeMillis(), Bytes.EMPTY_BYTES).sign(sender);
+                txs.add(tx);
+                res.add(new TransactionResult(true));
+            }
+
+            Key coinbase = validators.get(n % NUMBER_OF_VALIDATORS);
+            BlockHeader header = new BlockHeader(n, coinbase.toAddress(), chain.getLatestBlockHash(),
+                    chain.getLatestBlock().getTimestamp() + 1, MerkleUtil.computeTransactionsRoot(txs),
+                    MerkleUtil.computeResultsRoot(res), Bytes.EMPTY_HASH, Bytes.EMPTY_BYTES);
+            Block block = new Block(header, txs, res);
+
+            List<Signature> votes = new ArrayList<>();
+            Vote vote = new Vote(VoteType.PRECOMMIT, Vote.VALUE_APPROVE, n, 0, block.getHash());
+            for (int i = 0; i < twoThirds; i++) {
+                votes.add(validators.get(i).sign(vote.getEncoded()));
+            }
+            block.setView(0);
+            block.setVotes(votes);
+
+            chain.addBlock(block);
+        }
+    }
+
+    public static void testSync(Blockchain source) throws IOException, InterruptedException {
+        File dataDir = Files.createTempDirectory("semux").toFile();
+        LevelDbFactory factory = new LevelDbFactory(dataDir);
+        try {
+            KernelMock kernel = new KernelMock(config, new Wallet(new File(dataDir, "wallet.data")), new Key());
+            kernel.setBlockchain(createChain(factory));
+            kernel.setChannelManager(new ChannelManager(kernel));
+            SemuxSync sync = new SemuxSync(kernel);
+
+            long target = source.getLatestBlockNumber() + 1;
+            Thread t = new Thread(() -> sync.start(target), "sync-bench");
+            t.start();
+            while (!sync.isRunning()) {
+                Thread.sleep(1);
+            }
+
+            // feed all the blocks, as if they were downloaded already
+            long t1 = System.nanoTime();
+            Channel channel = new Channel();
+            for (long i = 1; i < target; i++) {
+                sync.onMessage(channel, new BlockMessage(source.getBlock(i)));
+            }
+            t.join();
+            long t2 = System.nanoTime();
+
+            long imported = kernel.getBlockchain().getLatestBlockNumber();
+            logger.info("Perf_sync_import: {} blocks/s, {} txs/block, {} blocks imported",
+                    imported * 1_000_000_000L / (t2 - t1), TXS_PER_BLOCK, imported);
+        } finally {
+            factory.close();
+            FileUtil.recursiveDelete(dataDir);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        File dataDir = Files.createTempDirectory("semux").toFile();
+        LevelDbFactory factory = new LevelDbFactory(dataDir);
+        try {
+            BlockchainImpl source = createChain(factory);
+
+            long t1 = System.nanoTime();
+            generateChain(source);
+            long t2 = System.nanoTime();
+            logger.info("Perf_sync_generate: {} blocks in {} ms", NUMBER_OF_BLOCKS, (t2 - t1) / 1_000_000);
+
+            testSync(source);
+        } finally {
+            factory.close();
+            FileUtil.recursiveDelete(dataDir);
+        }
+
+        System.exit(0);
+    }
+}
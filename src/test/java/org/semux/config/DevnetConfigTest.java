@@ -7,9 +7,12 @@
 package org.semux.config;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 import org.semux.Network;
+import org.semux.db.DbName;
 
 public class DevnetConfigTest {
 
@@ -19,4 +22,18 @@ public class DevnetConfigTest {
         assertEquals(Network.DEVNET, config.network());
     }
 
+    @Test
+    public void testDbOptions() {
+        DevnetConfig config = new DevnetConfig(Constants.DEFAULT_DATA_DIR);
+        assertTrue(config.dbOptions(DbName.BLOCK).compression());
+        assertFalse(config.dbOptions(DbName.ACCOUNT).compression());
+
+        assertTrue(config.setDbOption("db.account.cacheSize", "1024"));
+        assertTrue(config.setDbOption("db.vote.compression", "true"));
+        assertFalse(config.setDbOption("db.account.unknown", "1"));
+        assertFalse(config.setDbOption("db.unknown.cacheSize", "1"));
+        assertEquals(1024L, config.dbOptions(DbName.ACCOUNT).cacheSize());
+        assertTrue(config.dbOptions(DbName.VOTE).compression());
+    }
+
 }
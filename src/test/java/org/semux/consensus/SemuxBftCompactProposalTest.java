@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.consensus;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.semux.Network;
+import org.semux.core.BlockHeader;
+import org.semux.core.PendingManager;
+import org.semux.core.Transaction;
+import org.semux.core.TransactionResult;
+import org.semux.core.TransactionType;
+import org.semux.crypto.Key;
+import org.semux.net.Channel;
+import org.semux.net.Peer;
+import org.semux.net.msg.Message;
+import org.semux.net.msg.MessageQueue;
+import org.semux.net.msg.ReasonCode;
+import org.semux.net.msg.consensus.CompactProposalMessage;
+import org.semux.net.msg.consensus.GetProposalTransactionsMessage;
+import org.semux.net.msg.consensus.ProposalTransactionsMessage;
+import org.semux.util.Bytes;
+import org.semux.util.MerkleUtil;
+
+public class SemuxBftCompactProposalTest {
+
+    private SemuxBft bft;
+    private Channel channel;
+    private MessageQueue msgQueue;
+
+    private Proposal proposal;
+
+    @Before
+    public void setUp() {
+        bft = mock(SemuxBft.class);
+        bft.events = new LinkedBlockingQueue<>();
+        bft.partialProposals = new ConcurrentHashMap<>();
+        bft.pendingMgr = mock(PendingManager.class);
+        doCallRealMethod().when(bft).onCompactProposal(any(), any());
+        doCallRealMethod().when(bft).onProposalTransactions(any(), any());
+        doCallRealMethod().when(bft).onGetProposalTransactions(any(), any());
+
+        Peer peer = mock(Peer.class);
+        when(peer.getPeerId()).thenReturn("peer");
+        msgQueue = mock(MessageQueue.class);
+        channel = mock(Channel.class);
+        when(channel.getRemotePeer()).thenReturn(peer);
+        when(channel.getMessageQueue()).thenReturn(msgQueue);
+
+        Key key = new Key();
+        List<Transaction> txs = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            txs.add(new Transaction(Network.DEVNET, TransactionType.TRANSFER, Bytes.random(20), 1, 1, i,
+                    System.currentTimeMillis(), Bytes.EMPTY_BYTES).sign(key));
+        }
+        BlockHeader header = new BlockHeader(1, key.toAddress(), Bytes.random(32), System.currentTimeMillis(),
+                MerkleUtil.computeTransactionsRoot(txs),
+                MerkleUtil.computeResultsRoot(Collections.<TransactionResult> emptyList()), Bytes.EMPTY_HASH,
+                Bytes.EMPTY_BYTES);
+        proposal = new Proposal(new Proof(1, 0), header, txs).sign(key);
+    }
+
+    private void addPending(Transaction tx) {
+        when(bft.pendingMgr.getTransactionByShortId(CompactProposalMessage.shortId(tx.getHash()))).thenReturn(tx);
+    }
+
+    private CompactProposalMessage compact() {
+        return new CompactProposalMessage(new CompactProposalMessage(proposal).getEncoded());
+    }
+
+    private <T extends Message> T sent(Class<T> clazz) {
+        ArgumentCaptor<T> captor = ArgumentCaptor.forClass(clazz);
+        verify(msgQueue).sendMessage(captor.capture());
+        return captor.getValue();
+    }
+
+    private void assertRebuilt() {
+        assertEquals(1, bft.events.size());
+        Proposal p = bft.events.poll().getData();
+        assertArrayEquals(proposal.toBytes(), p.toBytes());
+        assertTrue(p.validate());
+    }
+
+    @Test
+    public void testAllTransactionsPending() {
+        proposal.getTransactions().forEach(this::addPending);
+
+        bft.onCompactProposal(channel, compact());
+
+        assertRebuilt();
+        verify(msgQueue, never()).sendMessage(any());
+    }
+
+    @Test
+    public void testMissingTransactions() {
+        List<Transaction> txs = proposal.getTransactions();
+        for (int i = 0; i < txs.size(); i += 2) {
+            addPending(txs.get(i));
+        }
+
+        bft.onCompactProposal(channel, compact());
+        assertTrue(bft.events.isEmpty());
+
+        GetProposalTransactionsMessage request = sent(GetProposalTransactionsMessage.class);
+        assertArrayEquals(new int[] { 1, 3, 5, 7 }, request.getIndexes());
+
+        List<Transaction> missing = new ArrayList<>();
+        for (int index : request.getIndexes()) {
+            missing.add(txs.get(index));
+        }
+        bft.onProposalTransactions(channel, new ProposalTransactionsMessage(1, 0, missing));
+
+        assertRebuilt();
+        assertTrue(bft.partialProposals.isEmpty());
+    }
+
+    @Test
+    public void testServeTransactions() {
+        bft.proposal = proposal;
+
+        bft.onGetProposalTransactions(channel, new GetProposalTransactionsMessage(1, 0, new int[] { 2, 6 }));
+
+        ProposalTransactionsMessage response = sent(ProposalTransactionsMessage.class);
+        assertEquals(2, response.getTransactions().size());
+        assertArrayEquals(proposal.getTransactions().get(2).getHash(), response.getTransactions().get(0).getHash());
+        assertArrayEquals(proposal.getTransactions().get(6).getHash(), response.getTransactions().get(1).getHash());
+    }
+
+    @Test
+    public void testWrongTransactions() {
+        // the pending transaction of a short ID is not the proposed one
+        List<Transaction> txs = proposal.getTransactions();
+        txs.forEach(this::addPending);
+        when(bft.pendingMgr.getTransactionByShortId(CompactProposalMessage.shortId(txs.get(0).getHash())))
+                .thenReturn(txs.get(1));
+
+        bft.onCompactProposal(channel, compact());
+        assertTrue(bft.events.isEmpty());
+
+        // all the transactions are fetched again
+        GetProposalTransactionsMessage request = sent(GetProposalTransactionsMessage.class);
+        assertEquals(txs.size(), request.getIndexes().length);
+
+        // and a bad response is rejected
+        List<Transaction> wrong = new ArrayList<>(txs);
+        Collections.swap(wrong, 0, 1);
+        bft.onProposalTransactions(channel, new ProposalTransactionsMessage(1, 0, wrong));
+        assertTrue(bft.events.isEmpty());
+        verify(msgQueue).disconnect(ReasonCode.BAD_PEER);
+    }
+}
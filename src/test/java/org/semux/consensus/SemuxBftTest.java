@@ -8,6 +8,7 @@ package org.semux.consensus;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
@@ -36,6 +37,7 @@ import org.semux.core.Unit;
 import org.semux.crypto.Key;
 import org.semux.rules.KernelRule;
 import org.semux.rules.TemporaryDbRule;
+import org.semux.util.ByteArray;
 import org.semux.util.Bytes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -141,6 +143,32 @@ public class SemuxBftTest {
         assertFalse(semuxBFT.getUnvalidatedTransactions(Collections.singletonList(tx2)).isEmpty());
     }
 
+    @Test
+    public void testApplyValidatedBlock() {
+        Key to = new Key();
+        Key from = new Key();
+        Transaction tx = createTransaction(to, from, System.currentTimeMillis(), 0);
+
+        BlockchainImpl chain = new BlockchainImpl(kernelRule.getKernel().getConfig(), temporaryDBRule);
+        kernelRule.getKernel().setBlockchain(chain);
+        chain.getAccountState().adjustAvailable(from.toAddress(), 1000 * Unit.SEM);
+        SemuxBft semuxBFT = new SemuxBft(kernelRule.getKernel());
+
+        Block block = kernelRule.createBlock(Collections.singletonList(tx));
+        assertTrue(semuxBFT.validateBlock(block.getHeader(), block.getTransactions()));
+        SemuxBft.ValidBlock validBlock = semuxBFT.validBlocks.getIfPresent(ByteArray.of(block.getHash()));
+        assertNotNull(validBlock);
+
+        // the validated updates are committed without executing the block again
+        byte[] marker = Bytes.random(20);
+        validBlock.getAccountState().adjustAvailable(marker, 1);
+        semuxBFT.applyBlock(validBlock);
+
+        assertEquals(block.getNumber(), chain.getLatestBlockNumber());
+        assertEquals(10 * Unit.SEM, chain.getAccountState().getAccount(to.toAddress()).getAvailable());
+        assertEquals(1, chain.getAccountState().getAccount(marker).getAvailable());
+    }
+
     private Transaction createTransaction(Key to, Key from, long time, long nonce) {
         return new Transaction(
                 kernelRule.getKernel().getConfig().network(),
@@ -6,7 +6,9 @@
  */
 package org.semux.consensus;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
@@ -18,6 +20,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.semux.consensus.SemuxSync.DownloadWindow;
 import org.semux.core.Block;
 import org.semux.core.BlockchainImpl;
 import org.semux.core.Transaction;
@@ -85,4 +88,65 @@ public class SemuxSyncTest {
         assertFalse(semuxSync.validateBlock(block2, as, ds));
     }
 
+    @Test
+    public void testPreValidateBlock() {
+        kernelRule.getKernel().setBlockchain(new BlockchainImpl(kernelRule.getKernel().getConfig(), temporaryDBRule));
+        SemuxSync semuxSync = new SemuxSync(kernelRule.getKernel());
+
+        Key from = new Key();
+        Transaction tx = new Transaction(
+                kernelRule.getKernel().getConfig().network(),
+                TransactionType.TRANSFER,
+                new Key().toAddress(),
+                10 * Unit.SEM,
+                kernelRule.getKernel().getConfig().minTransactionFee(),
+                0,
+                System.currentTimeMillis(),
+                Bytes.EMPTY_BYTES).sign(from);
+        Block block = kernelRule.createBlock(Collections.singletonList(tx));
+
+        Key validator = new Key();
+        Vote vote = new Vote(VoteType.PRECOMMIT, Vote.VALUE_APPROVE, block.getNumber(), 0, block.getHash());
+        block.setVotes(Collections.singletonList(validator.sign(vote.getEncoded())));
+        assertTrue(semuxSync.preValidateBlock(block));
+
+        // vote for another block
+        block.setVotes(Collections.singletonList(validator.sign(Bytes.random(32))));
+        assertFalse(semuxSync.preValidateBlock(block));
+    }
+
+    @Test
+    public void testDownloadWindow() {
+        DownloadWindow window = new DownloadWindow();
+        assertEquals(DownloadWindow.INITIAL_SIZE, window.available());
+
+        // a peer delivering 16 blocks every 100 ms
+        long now = 0;
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 16; i++) {
+                window.onRequested(now);
+            }
+            now += 100;
+            for (int i = 0; i < 16; i++) {
+                window.onCompleted(true, now);
+            }
+        }
+        assertEquals(0, window.getOutstanding());
+        assertTrue(window.getSize() > DownloadWindow.INITIAL_SIZE);
+        assertTrue(window.getSize() <= DownloadWindow.MAX_SIZE);
+
+        // blocks delivered by other peers are released
+        int size = window.getSize();
+        window.onRequested(now);
+        window.onCompleted(false, now);
+        assertEquals(size, window.available());
+
+        // expiry halves the window
+        window.shrink();
+        assertEquals(Math.max(DownloadWindow.MIN_SIZE, size / 2), window.getSize());
+        for (int i = 0; i < 10; i++) {
+            window.shrink();
+        }
+        assertEquals(DownloadWindow.MIN_SIZE, window.getSize());
+    }
 }
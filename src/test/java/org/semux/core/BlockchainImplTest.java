@@ -13,6 +13,9 @@ import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -118,6 +121,80 @@ public class BlockchainImplTest {
         assertArrayEquals(Genesis.load(network).getHash(), chain.getGenesis().getHash());
     }
 
+    @Test
+    public void testGetBlockBytes() {
+        assertNull(chain.getBlockBytes(1));
+
+        Block newBlock = createBlock(1);
+        chain.addBlock(newBlock);
+        assertArrayEquals(newBlock.toBytes(), chain.getBlockBytes(1));
+
+        // read from the database
+        BlockchainImpl chain2 = new BlockchainImpl(config, temporaryDBFactory);
+        assertArrayEquals(newBlock.toBytes(), chain2.getBlockBytes(1));
+        assertArrayEquals(chain2.getBlock(0).toBytes(), chain2.getBlockBytes(0));
+        assertArrayEquals(newBlock.getHash(), Block.fromBytes(chain2.getBlockBytes(1)).getHash());
+    }
+
+    @Test
+    public void testAddBlockFailureRollsBack() {
+        chain.getAccountState().adjustAvailable(to, 10);
+        Block block = spy(createBlock(1));
+        doAnswer(invocation -> {
+            // read the buffered block before failing
+            assertNotNull(chain.getBlock(1));
+            assertNotNull(chain.getBlockBytes(1));
+            assertEquals(1, chain.getBlockNumber(block.getHash()));
+            throw new IllegalStateException();
+        }).when(block).getTransactionIndices();
+
+        try {
+            chain.addBlock(block);
+            fail("the block should have been rejected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertNull(chain.getBlock(1));
+        assertNull(chain.getBlockBytes(1));
+        assertNull(chain.getBlockHeader(1));
+        assertEquals(-1, chain.getBlockNumber(block.getHash()));
+        assertEquals(0, chain.getAccountState().getAccount(to).getAvailable());
+
+        // the next block is committed without the partial updates
+        Block newBlock = createBlock(1);
+        chain.addBlock(newBlock);
+        assertArrayEquals(newBlock.getHash(), chain.getBlockHeader(1).getHash());
+        assertEquals(-1, chain.getBlockNumber(block.getHash()));
+    }
+
+    @Test
+    public void testBlockCache() {
+        Block block1 = createBlock(1);
+        Block block2 = createBlock(2);
+
+        // missing blocks are not cached
+        assertNull(chain.getBlock(2));
+        assertNull(chain.getBlockHeader(2));
+        assertEquals(-1, chain.getBlockNumber(block2.getHash()));
+
+        chain.addBlock(block1);
+        chain.addBlock(block2);
+        assertArrayEquals(block2.getHash(), chain.getBlock(2).getHash());
+        assertArrayEquals(block2.getHash(), chain.getBlockHeader(2).getHash());
+        assertEquals(2, chain.getBlockNumber(block2.getHash()));
+
+        // read from the database once, then from cache
+        BlockchainImpl chain2 = new BlockchainImpl(config, temporaryDBFactory);
+        long hits = chain2.getBlockCacheStats().hitCount();
+        long misses = chain2.getBlockNumberCacheStats().missCount();
+        assertArrayEquals(block1.getHash(), chain2.getBlock(1).getHash());
+        assertArrayEquals(block1.getHash(), chain2.getBlock(block1.getHash()).getHash());
+        assertArrayEquals(block1.getHash(), chain2.getBlockHeader(1).getHash());
+        // the block by hash, and the header of the cached block
+        assertEquals(hits + 2, chain2.getBlockCacheStats().hitCount());
+        assertEquals(misses + 1, chain2.getBlockNumberCacheStats().missCount());
+    }
+
     @Test
     public void testGetBlockHeader() {
         assertArrayEquals(Genesis.load(network).getHash(), chain.getBlockHeader(0).getHash());
@@ -200,6 +277,21 @@ public class BlockchainImplTest {
         assertEquals(1, chain.getTransactionCount(tx.getFrom()));
     }
 
+    @Test
+    public void testGetTransactionCountSameAccount() {
+        Transaction tx2 = new Transaction(network, TransactionType.TRANSFER, to, value, fee, nonce + 1, timestamp,
+                data).sign(key);
+        chain.addBlock(createBlock(1, Arrays.asList(tx, tx2), Arrays.asList(res, res)));
+
+        assertEquals(2, chain.getTransactionCount(from));
+        assertEquals(2, chain.getTransactionCount(to));
+
+        List<Transaction> txs = chain.getTransactions(to, 0, 100);
+        assertEquals(2, txs.size());
+        assertArrayEquals(tx.getHash(), txs.get(0).getHash());
+        assertArrayEquals(tx2.getHash(), txs.get(1).getHash());
+    }
+
     @Test
     public void testGetAccountTransactions() {
         assertNull(chain.getTransaction(tx.getHash()));
@@ -8,9 +8,16 @@ package org.semux.core;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.semux.core.PendingManager.ALLOWED_TIME_DRIFT;
 import static org.semux.core.TransactionResult.Error.INVALID_TIMESTAMP;
 
@@ -23,13 +30,19 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.semux.KernelMock;
 import org.semux.Network;
+import org.powermock.reflect.Whitebox;
 import org.semux.core.state.AccountState;
+import org.semux.core.state.DelegateState;
 import org.semux.crypto.Key;
 import org.semux.db.LevelDb.LevelDbFactory;
+import org.semux.net.Channel;
 import org.semux.net.ChannelManager;
+import org.semux.net.msg.MessageQueue;
+import org.semux.net.msg.p2p.GetTransactionsMessage;
 import org.semux.rules.KernelRule;
 import org.semux.util.ArrayUtil;
 import org.semux.util.Bytes;
@@ -99,6 +112,52 @@ public class PendingManagerTest {
         assertEquals(1, pendingMgr.getPendingTransactions().size());
     }
 
+    @Test
+    public void testRequestTransactionFromNextAnnouncer() {
+        byte[] hash = Bytes.random(32);
+        Channel first = mockChannel();
+        Channel second = mockChannel();
+        Channel third = mockChannel();
+        long now = System.currentTimeMillis();
+
+        // pulled from the first announcer only
+        assertTrue(pendingMgr.requestTransaction(hash, first));
+        assertFalse(pendingMgr.requestTransaction(hash, second));
+        assertFalse(pendingMgr.requestTransaction(hash, third));
+
+        // not retried before the request expires
+        pendingMgr.retryRequests(now);
+        verify(second.getMessageQueue(), never()).sendMessage(any());
+
+        // then pulled from the other announcers in turn
+        pendingMgr.retryRequests(now + PendingManager.REQUEST_TIMEOUT + 1);
+        assertRequested(second, hash);
+        verify(third.getMessageQueue(), never()).sendMessage(any());
+
+        pendingMgr.retryRequests(now + 2 * PendingManager.REQUEST_TIMEOUT + 2);
+        assertRequested(third, hash);
+
+        // and forgotten when no one is left, so that it's pulled on the next
+        // announcement
+        pendingMgr.retryRequests(now + 3 * PendingManager.REQUEST_TIMEOUT + 3);
+        assertTrue(pendingMgr.requestTransaction(hash, second));
+    }
+
+    private Channel mockChannel() {
+        Channel channel = mock(Channel.class);
+        MessageQueue msgQueue = mock(MessageQueue.class);
+        when(channel.isActive()).thenReturn(true);
+        when(channel.getMessageQueue()).thenReturn(msgQueue);
+        return channel;
+    }
+
+    private void assertRequested(Channel channel, byte[] hash) {
+        ArgumentCaptor<GetTransactionsMessage> captor = ArgumentCaptor.forClass(GetTransactionsMessage.class);
+        verify(channel.getMessageQueue()).sendMessage(captor.capture());
+        assertEquals(1, captor.getValue().getHashes().size());
+        assertArrayEquals(hash, captor.getValue().getHashes().get(0));
+    }
+
     @Test
     public void testAddTransactionSyncErrorInvalidFormat() {
         Transaction tx = new Transaction(network, type, to, value, fee, 0, 0, Bytes.EMPTY_BYTES).sign(key);
@@ -108,6 +167,29 @@ public class PendingManagerTest {
         assertEquals(TransactionResult.Error.INVALID_FORMAT, result.error);
     }
 
+    @Test
+    public void testAddTransactionSyncFailureRollsBack() {
+        AccountState as = spy(Whitebox.<AccountState> getInternalState(pendingMgr, "pendingAS").track());
+        DelegateState ds = spy(Whitebox.<DelegateState> getInternalState(pendingMgr, "pendingDS").track());
+        AccountState pendingAS = spy(Whitebox.<AccountState> getInternalState(pendingMgr, "pendingAS"));
+        DelegateState pendingDS = spy(Whitebox.<DelegateState> getInternalState(pendingMgr, "pendingDS"));
+        doReturn(as).when(pendingAS).track();
+        doReturn(ds).when(pendingDS).track();
+        Whitebox.setInternalState(pendingMgr, "pendingAS", pendingAS);
+        Whitebox.setInternalState(pendingMgr, "pendingDS", pendingDS);
+
+        // sent from an account without balance
+        Transaction tx = new Transaction(network, type, to, value, fee, 0, System.currentTimeMillis(),
+                Bytes.EMPTY_BYTES).sign(new Key());
+        PendingManager.ProcessTransactionResult result = pendingMgr.addTransactionSync(tx);
+        assertEquals(0, result.accepted);
+        assertNotNull(result.error);
+
+        verify(as).rollback();
+        verify(ds).rollback();
+        verify(as, never()).commit();
+    }
+
     @Test
     public void testAddTransactionSyncErrorDuplicatedHash() {
         Transaction tx = new Transaction(network, type, to, value, fee, 0, System.currentTimeMillis(),
@@ -195,6 +277,84 @@ public class PendingManagerTest {
         assertEquals(perm.length, pendingMgr.getPendingTransactions().size());
     }
 
+    @Test
+    public void testMultipleSenders() throws InterruptedException {
+        long now = System.currentTimeMillis();
+
+        List<Key> senders = Arrays.asList(new Key(), new Key(), new Key());
+        for (Key sender : senders) {
+            accountState.adjustAvailable(sender.toAddress(), 1 * Unit.SEM);
+        }
+        pendingMgr.reset();
+
+        // each sender's transactions arrive in reverse nonce order
+        for (int nonce = 9; nonce >= 0; nonce--) {
+            for (Key sender : senders) {
+                // the transaction hash doesn't cover the sender
+                byte[] recipient = sender.toAddress();
+                Transaction tx = new Transaction(network, type, recipient, value, fee, nonce, now, Bytes.EMPTY_BYTES)
+                        .sign(sender);
+                pendingMgr.addTransaction(tx);
+            }
+        }
+
+        Thread.sleep(500);
+        assertEquals(30, pendingMgr.getPendingTransactions().size());
+        for (Key sender : senders) {
+            assertEquals(10, pendingMgr.getNonce(sender.toAddress()));
+        }
+    }
+
+    @Test
+    public void testBlockTemplate() throws InterruptedException {
+        long now = System.currentTimeMillis();
+
+        Key cheap = new Key();
+        Key expensive = new Key();
+        accountState.adjustAvailable(cheap.toAddress(), 1 * Unit.SEM);
+        accountState.adjustAvailable(expensive.toAddress(), 1 * Unit.SEM);
+        pendingMgr.reset();
+
+        Transaction tx1 = new Transaction(network, type, cheap.toAddress(), value, fee, 0, now, Bytes.EMPTY_BYTES)
+                .sign(cheap);
+        Transaction tx2 = new Transaction(network, type, expensive.toAddress(), value, fee * 2, 0, now,
+                Bytes.EMPTY_BYTES).sign(expensive);
+        Transaction tx3 = new Transaction(network, type, expensive.toAddress(), value, fee, 1, now,
+                Bytes.EMPTY_BYTES).sign(expensive);
+        pendingMgr.addTransaction(tx1);
+        pendingMgr.addTransaction(tx2);
+        pendingMgr.addTransaction(tx3);
+
+        Thread.sleep(500);
+        assertEquals(3, pendingMgr.getPendingTransactions().size());
+
+        // higher fee rate first, then arrival order, and nonce order per sender
+        List<PendingManager.PendingTransaction> template = pendingMgr.getBlockTemplate(Integer.MAX_VALUE);
+        assertEquals(3, template.size());
+        assertArrayEquals(tx2.getHash(), template.get(0).transaction.getHash());
+        assertArrayEquals(tx1.getHash(), template.get(1).transaction.getHash());
+        assertArrayEquals(tx3.getHash(), template.get(2).transaction.getHash());
+
+        // size limit
+        template = pendingMgr.getBlockTemplate(tx2.size() + tx1.size());
+        assertEquals(2, template.size());
+        assertEquals(0, pendingMgr.getBlockTemplate(0).size());
+    }
+
+    @Test
+    public void testMissingSignature() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        long nonce = accountState.getAccount(from).getNonce();
+
+        // validated by the background worker
+        Transaction unsigned = new Transaction(network, type, to, value, fee, nonce, now, Bytes.EMPTY_BYTES);
+        pendingMgr.addTransaction(unsigned);
+
+        Thread.sleep(100);
+        assertEquals(0, pendingMgr.getPendingTransactions().size());
+        assertEquals(0, pendingMgr.getQueue().size());
+    }
+
     @Test
     public void testNewBlock() throws InterruptedException {
         long now = System.currentTimeMillis();
@@ -232,6 +392,83 @@ public class PendingManagerTest {
         assertArrayEquals(tx3.getHash(), pendingMgr.getPendingTransactions().get(0).transaction.getHash());
     }
 
+    @Test
+    public void testDelegateNameTakenByBlock() {
+        long burn = kernel.getConfig().minDelegateBurnAmount();
+        byte[] name = Bytes.of("d" + System.nanoTime() % 1_000_000_000L);
+        Key pendingKey = new Key();
+        Key blockKey = new Key();
+        accountState.adjustAvailable(pendingKey.toAddress(), burn + fee);
+
+        Transaction pending = new Transaction(network, TransactionType.DELEGATE, Bytes.EMPTY_ADDRESS, burn, fee, 0,
+                System.currentTimeMillis(), name).sign(pendingKey);
+        assertEquals(1, pendingMgr.addTransactionSync(pending).accepted);
+
+        // the block registers the name to someone else
+        Transaction registered = new Transaction(network, TransactionType.DELEGATE, Bytes.EMPTY_ADDRESS, burn, fee,
+                0, System.currentTimeMillis(), name).sign(blockKey);
+        DelegateState ds = kernel.getBlockchain().getDelegateState();
+        assertTrue(ds.register(blockKey.toAddress(), name));
+        BlockHeader header = new BlockHeader(1, Bytes.random(20), Bytes.random(32), System.currentTimeMillis(),
+                Bytes.random(32), Bytes.random(32), Bytes.random(32), Bytes.EMPTY_BYTES);
+        pendingMgr.onBlockAdded(new Block(header, Arrays.asList(registered),
+                Arrays.asList(new TransactionResult(true))));
+
+        assertTrue(pendingMgr.getPendingTransactions().isEmpty());
+        assertTrue(pendingMgr.getBlockTemplate(Integer.MAX_VALUE).isEmpty());
+        ds.rollback();
+    }
+
+    @Test
+    public void testReconcile() throws InterruptedException {
+        long now = System.currentTimeMillis();
+
+        Key a = new Key();
+        Key b = new Key();
+        Key c = new Key();
+        byte[] ra = Bytes.random(20);
+        byte[] rb = Bytes.random(20);
+        for (Key k : Arrays.asList(a, b, c)) {
+            accountState.adjustAvailable(k.toAddress(), 1 * Unit.SEM);
+        }
+        pendingMgr.reset();
+
+        Transaction a0 = new Transaction(network, type, ra, value, fee, 0, now, Bytes.EMPTY_BYTES).sign(a);
+        Transaction a1 = new Transaction(network, type, ra, value, fee, 1, now, Bytes.EMPTY_BYTES).sign(a);
+        Transaction b0 = new Transaction(network, type, rb, value, fee, 0, now, Bytes.EMPTY_BYTES).sign(b);
+        Transaction b1 = new Transaction(network, type, rb, value, fee, 1, now, Bytes.EMPTY_BYTES).sign(b);
+        // depends on the account of a, through the recipient
+        Transaction c0 = new Transaction(network, type, a.toAddress(), value, fee, 0, now, Bytes.EMPTY_BYTES)
+                .sign(c);
+        for (Transaction tx : Arrays.asList(a0, a1, b0, b1, c0)) {
+            pendingMgr.addTransaction(tx);
+        }
+
+        Thread.sleep(500);
+        assertEquals(5, pendingMgr.getPendingTransactions().size());
+
+        // a block including a0
+        BlockHeader header = new BlockHeader(1, Bytes.random(20), Bytes.random(32), now, Bytes.random(32),
+                Bytes.random(32), Bytes.random(32), new byte[0]);
+        Block block = new Block(header, Arrays.asList(a0), Arrays.asList(new TransactionResult(true)));
+        accountState.increaseNonce(a.toAddress());
+        accountState.adjustAvailable(a.toAddress(), -value - fee);
+        accountState.adjustAvailable(ra, value);
+        pendingMgr.onBlockAdded(block);
+
+        List<PendingManager.PendingTransaction> pending = pendingMgr.getPendingTransactions();
+        assertEquals(4, pending.size());
+        assertEquals(2, pendingMgr.getNonce(a.toAddress()));
+        assertEquals(2, pendingMgr.getNonce(b.toAddress()));
+        assertEquals(1, pendingMgr.getNonce(c.toAddress()));
+
+        // only the transactions of b are kept as is
+        PendingManager.ReconcileStats stats = pendingMgr.getReconcileStats();
+        assertEquals(1, stats.getCount());
+        assertEquals(2, stats.getLastKept());
+        assertEquals(3, stats.getLastExecuted());
+    }
+
     @After
     public void stop() {
         pendingMgr.stop();
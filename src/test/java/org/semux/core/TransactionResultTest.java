@@ -8,12 +8,15 @@ package org.semux.core;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Test;
+import org.semux.crypto.Hash;
 import org.semux.util.Bytes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,6 +44,27 @@ public class TransactionResultTest {
         testFields(TransactionResult.fromBytes(res.toBytes()));
     }
 
+    @Test
+    public void testHash() {
+        TransactionResult res = new TransactionResult(valid, returns, new ArrayList<>(logs));
+        assertArrayEquals(Hash.h256(res.toBytes()), res.getHash());
+
+        // modifications reset the serialization
+        res.addLog(Bytes.random(8));
+        assertEquals(logs.size() + 1, TransactionResult.fromBytes(res.toBytes()).getLogs().size());
+        assertArrayEquals(Hash.h256(res.toBytes()), res.getHash());
+
+        res.setSuccess(false);
+        assertFalse(TransactionResult.fromBytes(res.toBytes()).isSuccess());
+        assertArrayEquals(Hash.h256(res.toBytes()), res.getHash());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testLogsReadOnly() {
+        TransactionResult res = new TransactionResult(valid, returns, new ArrayList<>(logs));
+        res.getLogs().add(Bytes.random(8));
+    }
+
     @Test
     public void testTransactionResultSize() {
         TransactionResult res = new TransactionResult(valid, returns, logs);
@@ -57,6 +57,19 @@ public class TransactionTest {
         testFields(Transaction.fromBytes(tx.toBytes()));
     }
 
+    @Test
+    public void testResign() {
+        Transaction tx = new Transaction(network, type, to, value, fee, nonce, timestamp, data).sign(key);
+        byte[] bytes = tx.toBytes();
+        assertEquals(bytes.length, tx.size());
+
+        // the serialization includes the new signature
+        Key key2 = new Key();
+        tx.sign(key2);
+        assertArrayEquals(key2.toAddress(), Transaction.fromBytes(tx.toBytes()).getFrom());
+        assertEquals(tx.toBytes().length, tx.size());
+    }
+
     @Test
     public void testTransactionSize() {
         Transaction tx = new Transaction(network, type, to, value, fee, nonce, timestamp, Bytes.random(128))
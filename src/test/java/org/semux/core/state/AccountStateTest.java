@@ -19,6 +19,8 @@ import org.semux.config.DevnetConfig;
 import org.semux.core.Blockchain;
 import org.semux.core.BlockchainImpl;
 import org.semux.core.Genesis.Premine;
+import org.semux.db.Db;
+import org.semux.db.DbName;
 import org.semux.rules.TemporaryDbRule;
 import org.semux.util.ByteArray;
 import org.semux.util.Bytes;
@@ -113,4 +115,76 @@ public class AccountStateTest {
         state.rollback();
         assertEquals(0, state2.getAccount(address).getNonce());
     }
+
+    @Test
+    public void testNestedTrack() {
+        byte[] address = Bytes.random(20);
+
+        AccountState state1 = state.track();
+        state1.adjustAvailable(address, 1);
+
+        AccountState state2 = state1.track();
+        state2.adjustAvailable(address, 10);
+        AccountState state3 = state2.track();
+        state3.adjustAvailable(address, 100);
+        assertEquals(111, state3.getAccount(address).getAvailable());
+
+        state3.rollback();
+        assertEquals(11, state2.getAccount(address).getAvailable());
+
+        state2.commit();
+        assertEquals(11, state1.getAccount(address).getAvailable());
+        assertEquals(0, state.getAccount(address).getAvailable());
+
+        AccountState state4 = state1.track();
+        state4.adjustAvailable(address, 1000);
+        state4.rollback();
+        assertEquals(11, state1.getAccount(address).getAvailable());
+
+        state1.commit();
+        assertEquals(11, state.getAccount(address).getAvailable());
+    }
+
+    @Test
+    public void testUpdateInPlace() {
+        byte[] address = Bytes.random(20);
+
+        AccountState state1 = state.track();
+        state1.adjustAvailable(address, 1);
+        Account acc = state1.getAccount(address);
+
+        AccountState state2 = state1.track();
+        state2.adjustAvailable(address, 10);
+        state2.increaseNonce(address);
+        state2.adjustLocked(address, 5);
+        assertEquals(1, acc.getAvailable());
+
+        state2.rollback();
+        acc = state1.getAccount(address);
+        assertEquals(1, acc.getAvailable());
+        assertEquals(0, acc.getLocked());
+        assertEquals(0, acc.getNonce());
+    }
+
+    @Test
+    public void testCommitRoot() {
+        Db db = temporaryDBFactory.getDB(DbName.ACCOUNT);
+        AccountState root = new AccountStateImpl(db);
+        byte[] address = Bytes.random(20);
+        byte[] key = Bytes.merge((byte) 0, address);
+        assertEquals(0, root.getAccount(address).getAvailable());
+
+        AccountState state1 = root.track();
+        state1.adjustAvailable(address, 1);
+        state1.commit();
+        root.commit();
+        assertEquals(1, root.getAccount(address).getAvailable());
+        assertEquals(1, Account.fromBytes(address, db.get(key)).getAvailable());
+
+        // the cached accounts are dropped on rollback, as the database batch may be
+        db.delete(key);
+        assertEquals(1, root.getAccount(address).getAvailable());
+        root.rollback();
+        assertEquals(0, root.getAccount(address).getAvailable());
+    }
 }
@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.core.state;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.semux.util.ByteArray;
+import org.semux.util.Bytes;
+
+public class DelegateRankingTest {
+
+    @Test
+    public void testRanking() {
+        Random random = new Random(1);
+        DelegateRanking ranking = new DelegateRanking();
+        Map<ByteArray, Delegate> delegates = new HashMap<>();
+
+        for (int i = 0; i < 5000; i++) {
+            Delegate d;
+            if (i < 500 || random.nextInt(4) == 0) {
+                d = new Delegate(Bytes.random(20), Bytes.of("d" + i), 0, random.nextInt(100));
+            } else {
+                // update the votes of an existing delegate
+                List<Delegate> list = new ArrayList<>(delegates.values());
+                Delegate old = list.get(random.nextInt(list.size()));
+                d = new Delegate(old.getAddress(), old.getName(), 0, random.nextInt(100));
+            }
+            ranking.put(d);
+            delegates.put(ByteArray.of(d.getAddress()), d);
+        }
+
+        List<Delegate> expected = new ArrayList<>(delegates.values());
+        expected.sort(DelegateRanking.ORDER);
+
+        assertEquals(expected.size(), ranking.size());
+        assertEquals(expected, ranking.getAll());
+        assertEquals(expected.subList(0, 10), ranking.getTop(10));
+        for (int i = 0; i < expected.size(); i += 7) {
+            assertEquals(i, ranking.getRank(ByteArray.of(expected.get(i).getAddress())));
+        }
+
+        ranking.remove(ByteArray.of(expected.get(0).getAddress()));
+        assertEquals(expected.subList(1, 11), ranking.getTop(10));
+        assertEquals(-1, ranking.getRank(ByteArray.of(expected.get(0).getAddress())));
+    }
+}
@@ -10,8 +10,10 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -154,6 +156,57 @@ public class DelegateStateTest {
         assertEquals(value2, (long) votes.get(new ByteArray(voterKey2.toAddress())));
     }
 
+    @Test
+    public void testRanking() {
+        byte[] voter = new Key().toAddress();
+        byte[] d1 = new Key().toAddress();
+        byte[] d2 = new Key().toAddress();
+
+        ds.register(d1, Bytes.of("d1"));
+        ds.register(d2, Bytes.of("d2"));
+        ds.vote(voter, d1, 10);
+        ds.vote(voter, d2, 20);
+        ds.commit();
+        assertEquals(0, ds.getDelegateRank(d2));
+        assertEquals(1, ds.getDelegateRank(d1));
+        assertEquals(-1, ds.getDelegateRank(new Key().toAddress()));
+
+        // updates of a tracked state are ranked before being committed
+        DelegateState ds2 = ds.track();
+        ds2.vote(voter, d1, 20);
+        assertEquals(0, ds2.getDelegateRank(d1));
+        assertArrayEquals(d1, ds2.getDelegates(1).get(0).getAddress());
+        assertArrayEquals(d2, ds.getDelegates(1).get(0).getAddress());
+
+        ds2.commit();
+        assertArrayEquals(d1, ds.getDelegates(1).get(0).getAddress());
+        ds.commit();
+        assertEquals(0, ds.getDelegateRank(d1));
+        assertEquals(delegates.size() + 2, ds.getDelegates().size());
+        assertEquals(2, ds.getDelegates(2).size());
+    }
+
+    @Test
+    public void testDiscard() {
+        byte[] d1 = new Key().toAddress();
+        byte[] d2 = new Key().toAddress();
+        byte[] voter = new Key().toAddress();
+
+        DelegateState ds2 = ds.track();
+        ds2.register(d1, Bytes.of("d1"));
+        ds2.register(d2, Bytes.of("d2"));
+        ds2.vote(voter, d2, 10);
+
+        ds2.discard(Collections.singleton(ByteArray.of(d1)));
+        assertNull(ds2.getDelegateByAddress(d1));
+        assertNull(ds2.getDelegateByName(Bytes.of("d1")));
+        assertEquals(10, ds2.getDelegateByName(Bytes.of("d2")).getVotes());
+
+        ds2.discard(Collections.singleton(ByteArray.of(voter)));
+        assertEquals(0, ds2.getVote(voter, d2));
+        assertNotNull(ds2.getDelegateByAddress(d2));
+    }
+
     @After
     public void rollback() {
         ds.rollback();
@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.core.state;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.semux.util.ByteArray;
+import org.semux.util.Bytes;
+
+public class StateOverlayTest {
+
+    private ByteArray k1 = ByteArray.of(Bytes.of("k1"));
+    private ByteArray k2 = ByteArray.of(Bytes.of("k2"));
+
+    @Test
+    public void testRevert() {
+        StateOverlay<byte[]> overlay = new StateOverlay<>();
+        overlay.put(k1, Bytes.of("v1"));
+
+        int checkpoint = overlay.checkpoint();
+        overlay.put(k1, Bytes.of("v2"));
+        overlay.put(k2, Bytes.of("v3"));
+        overlay.put(k1, Bytes.of("v4"));
+        assertArrayEquals(Bytes.of("v4"), overlay.get(k1));
+
+        overlay.revert(checkpoint);
+        assertArrayEquals(Bytes.of("v1"), overlay.get(k1));
+        assertNull(overlay.get(k2));
+        assertEquals(checkpoint, overlay.checkpoint());
+
+        overlay.revert(0);
+        assertNull(overlay.get(k1));
+        assertEquals(0, overlay.getUpdates().size());
+    }
+
+    @Test
+    public void testMerge() {
+        StateOverlay<byte[]> overlay = new StateOverlay<>();
+        overlay.put(k1, Bytes.of("v1"));
+
+        StateOverlay<byte[]> other = new StateOverlay<>();
+        other.put(k1, Bytes.of("v2"));
+        other.put(k2, Bytes.of("v3"));
+
+        overlay.merge(other);
+        assertArrayEquals(Bytes.of("v2"), overlay.get(k1));
+        assertArrayEquals(Bytes.of("v3"), overlay.get(k2));
+
+        overlay.clear();
+        assertEquals(0, overlay.getUpdates().size());
+        assertEquals(0, overlay.checkpoint());
+    }
+
+    @Test
+    public void testIsModifiedSince() {
+        StateOverlay<byte[]> overlay = new StateOverlay<>();
+        overlay.put(k1, Bytes.of("v1"));
+
+        int checkpoint = overlay.checkpoint();
+        assertTrue(overlay.isModifiedSince(k1, 0));
+        assertFalse(overlay.isModifiedSince(k1, checkpoint));
+
+        overlay.put(k1, Bytes.of("v2"));
+        assertTrue(overlay.isModifiedSince(k1, checkpoint));
+
+        overlay.revert(checkpoint);
+        assertFalse(overlay.isModifiedSince(k1, checkpoint));
+        assertTrue(overlay.isModifiedSince(k1, 0));
+
+        StateOverlay<byte[]> other = new StateOverlay<>();
+        other.put(k1, Bytes.of("v3"));
+        overlay.merge(other);
+        assertFalse(overlay.isModifiedSince(k1, 0));
+    }
+
+    @Test
+    public void testRemoveIf() {
+        StateOverlay<byte[]> overlay = new StateOverlay<>();
+        overlay.put(k1, Bytes.of("v1"));
+        overlay.put(k2, Bytes.of("v2"));
+
+        overlay.removeIf((k, v) -> k.equals(k1));
+        assertNull(overlay.get(k1));
+        assertArrayEquals(Bytes.of("v2"), overlay.get(k2));
+
+        // the journal is dropped
+        assertEquals(0, overlay.checkpoint());
+        assertFalse(overlay.isModifiedSince(k2, 0));
+    }
+}
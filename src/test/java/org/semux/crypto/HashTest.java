@@ -7,6 +7,12 @@
 package org.semux.crypto;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.semux.util.Bytes;
@@ -54,4 +60,84 @@ public class HashTest {
         assertEquals(msgH160, Hex.encode(hash));
         assertEquals(20, hash.length);
     }
+
+    @Test
+    public void testH256Range() {
+        byte[] raw = Bytes.merge(Bytes.random(3), Bytes.of(msg), Bytes.random(5));
+        byte[] hash = Hash.h256(raw, 3, 4);
+
+        assertEquals(msgBlake2b, Hex.encode(hash));
+    }
+
+    @Test
+    public void testIntoBuffer() {
+        byte[] raw = Bytes.of(msg);
+
+        byte[] out = new byte[2 + Hash.HASH_LEN];
+        Hash.h256(raw, 0, raw.length, out, 2);
+        assertEquals(msgBlake2b, Hex.encode(Arrays.copyOfRange(out, 2, out.length)));
+
+        out = new byte[2 + Hash.H160_LEN];
+        Hash.h160(raw, out, 2);
+        assertEquals(msgH160, Hex.encode(Arrays.copyOfRange(out, 2, out.length)));
+    }
+
+    @Test
+    public void testIntoShortBuffer() {
+        byte[] raw = Bytes.of(msg);
+        try {
+            Hash.h256(raw, 0, raw.length, new byte[Hash.HASH_LEN - 1], 0);
+            fail("CryptoException expected");
+        } catch (CryptoException e) {
+            // the digest is reset
+            assertEquals(msgBlake2b, Hex.encode(Hash.h256(raw)));
+        }
+    }
+
+    @Test
+    public void testMergeFailure() {
+        byte[] raw = Bytes.of(msg);
+        try {
+            Hash.h256(Bytes.random(8), null);
+            fail("NullPointerException expected");
+        } catch (NullPointerException e) {
+            // the first array isn't left in the digest
+            assertEquals(msgBlake2b, Hex.encode(Hash.h256(raw)));
+        }
+    }
+
+    @Test
+    public void testH160IntoShortBuffer() {
+        byte[] raw = Bytes.of(msg);
+        try {
+            Hash.h160(raw, new byte[Hash.H160_LEN - 1], 0);
+            fail("ArrayIndexOutOfBoundsException expected");
+        } catch (ArrayIndexOutOfBoundsException e) {
+            // the digest is reset
+            assertEquals(msgH160, Hex.encode(Hash.h160(raw)));
+        }
+    }
+
+    @Test
+    public void testThreads() throws InterruptedException {
+        byte[] raw = Bytes.of(msg);
+        AtomicInteger mismatches = new AtomicInteger();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    if (!msgBlake2b.equals(Hex.encode(Hash.h256(raw)))) {
+                        mismatches.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertEquals(0, mismatches.get());
+    }
 }
@@ -9,12 +9,16 @@ package org.semux.crypto;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.math.BigInteger;
 import java.security.KeyPair;
 import java.security.SignatureException;
 import java.security.spec.InvalidKeySpecException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import org.bouncycastle.util.Arrays;
 import org.junit.Assert;
@@ -102,6 +106,19 @@ public class KeyTest {
         assertArrayEquals(key.toAddress(), Signature.fromBytes(sig).getAddress());
     }
 
+    @Test
+    public void testSignatureMemoization() {
+        Key key = new Key();
+        Signature sig = Signature.fromBytes(key.sign(Bytes.random(32)).toBytes());
+
+        byte[] publicKey = sig.getPublicKey();
+        byte[] address = sig.getAddress();
+        assertArrayEquals(key.getPublicKey(), publicKey);
+        assertArrayEquals(key.toAddress(), address);
+        assertSame(publicKey, sig.getPublicKey());
+        assertSame(address, sig.getAddress());
+    }
+
     @Test
     public void testSignLargeData() throws SignatureException {
         byte[] data = Bytes.random(1024 * 1024);
@@ -150,4 +167,28 @@ public class KeyTest {
         assertEquals("302a300506032b6570032100b72dc8ebc9f53d21837dc96483da08765ea11f25c1bd4c3cb49318c944d67b9b",
                 Hex.encode(account.getPublicKey()));
     }
+
+    @Test
+    public void testVerifyBatch() {
+        List<byte[]> msgs = new ArrayList<>();
+        List<Signature> sigs = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            byte[] msg = Bytes.random(32);
+            msgs.add(msg);
+            sigs.add(new Key().sign(msg));
+        }
+        assertTrue(Key.verifyBatch(Collections.emptyList(), Collections.emptyList()));
+        assertTrue(Key.verifyBatch(msgs, sigs));
+        assertEquals(-1, Key.findInvalidSignature(msgs, sigs));
+
+        // swap one signature with a signature of another message
+        sigs.set(17, new Key().sign(Bytes.random(32)));
+        assertFalse(Key.verifyBatch(msgs, sigs));
+        assertEquals(17, Key.findInvalidSignature(msgs, sigs));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testVerifyBatchSizeMismatch() {
+        Key.verifyBatch(Collections.singletonList(Bytes.random(32)), Collections.emptyList());
+    }
 }
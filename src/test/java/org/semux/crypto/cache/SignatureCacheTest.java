@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.crypto.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.semux.crypto.Key;
+import org.semux.crypto.Key.Signature;
+import org.semux.util.Bytes;
+
+public class SignatureCacheTest {
+
+    @Test
+    public void testCache() {
+        Key key = new Key();
+        byte[] msg = Bytes.random(32);
+        Signature sig = key.sign(msg);
+        assertFalse(SignatureCache.contains(msg, sig));
+
+        long hits = SignatureCache.getHitCount();
+        assertTrue(Key.verify(msg, sig));
+        assertTrue(SignatureCache.contains(msg, sig));
+        assertTrue(Key.verify(msg, sig));
+        assertEquals(hits + 2, SignatureCache.getHitCount());
+    }
+
+    @Test
+    public void testInvalidSignature() {
+        Key key = new Key();
+        byte[] msg = Bytes.random(32);
+        Signature sig = key.sign(Bytes.random(32));
+
+        assertFalse(Key.verify(msg, sig));
+        assertFalse(SignatureCache.contains(msg, sig));
+
+        // the signature of another message is not a hit
+        Signature sig2 = key.sign(msg);
+        assertTrue(Key.verify(msg, sig2));
+        assertFalse(Key.verify(Bytes.random(32), sig2));
+    }
+
+    @Test
+    public void testLargeMessage() {
+        Key key = new Key();
+        byte[] msg = Bytes.random(256 * 1024);
+        Signature sig = key.sign(msg);
+
+        assertTrue(Key.verify(msg, sig));
+        assertTrue(SignatureCache.contains(msg, sig));
+
+        // a change anywhere in the message is not a hit
+        msg[msg.length - 1]++;
+        assertFalse(SignatureCache.contains(msg, sig));
+        assertFalse(Key.verify(msg, sig));
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.db;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.semux.db.BatchDb.BatchDbFactory;
+import org.semux.rules.TemporaryDbRule;
+import org.semux.util.Bytes;
+import org.semux.util.ClosableIterator;
+
+public class BatchDbTest {
+
+    @Rule
+    public TemporaryDbRule temporaryDBFactory = new TemporaryDbRule();
+
+    private BatchDbFactory factory;
+
+    @Before
+    public void setUp() {
+        factory = new BatchDbFactory(temporaryDBFactory);
+    }
+
+    @Test
+    public void testCommit() {
+        Db db = factory.getDB(DbName.ACCOUNT);
+        db.put(Bytes.of("k1"), Bytes.of("v1"));
+
+        assertArrayEquals(Bytes.of("v1"), db.get(Bytes.of("k1")));
+        assertNull(temporaryDBFactory.getDB(DbName.ACCOUNT).get(Bytes.of("k1")));
+
+        factory.commit();
+        assertArrayEquals(Bytes.of("v1"), temporaryDBFactory.getDB(DbName.ACCOUNT).get(Bytes.of("k1")));
+
+        // the journal is kept until the next checkpoint
+        assertNotNull(temporaryDBFactory.getDB(DbName.INDEX).get(BatchDbFactory.journalKey(0)));
+    }
+
+    @Test
+    public void testCheckpoint() {
+        DbFactory spied = mock(DbFactory.class);
+        for (DbName name : DbName.values()) {
+            Db db = spy(temporaryDBFactory.getDB(name));
+            when(spied.getDB(name)).thenReturn(db);
+        }
+        BatchDbFactory factory = new BatchDbFactory(spied);
+        Db account = spied.getDB(DbName.ACCOUNT);
+        Db index = spied.getDB(DbName.INDEX);
+
+        // only the journal is synced
+        factory.getDB(DbName.ACCOUNT).put(Bytes.of("k0"), Bytes.of("v0"));
+        factory.commit();
+        verify(index).updateBatch(anyList(), eq(true));
+        verify(account, never()).updateBatch(anyList(), eq(true));
+
+        // until the other databases are synced, and the journals removed
+        for (int i = 1; i < BatchDbFactory.CHECKPOINT_INTERVAL; i++) {
+            factory.getDB(DbName.ACCOUNT).put(Bytes.of("k" + i), Bytes.of("v" + i));
+            factory.commit();
+        }
+        verify(index, times(BatchDbFactory.CHECKPOINT_INTERVAL)).updateBatch(anyList(), eq(true));
+        verify(account).updateBatch(eq(Collections.emptyList()), eq(true));
+        for (int i = 0; i < BatchDbFactory.CHECKPOINT_INTERVAL; i++) {
+            assertNull(temporaryDBFactory.getDB(DbName.INDEX).get(BatchDbFactory.journalKey(i)));
+        }
+    }
+
+    @Test
+    public void testRollback() {
+        Db db = factory.getDB(DbName.ACCOUNT);
+        temporaryDBFactory.getDB(DbName.ACCOUNT).put(Bytes.of("k1"), Bytes.of("v1"));
+
+        db.delete(Bytes.of("k1"));
+        assertNull(db.get(Bytes.of("k1")));
+
+        factory.rollback();
+        assertArrayEquals(Bytes.of("v1"), db.get(Bytes.of("k1")));
+    }
+
+    @Test
+    public void testIterator() {
+        Db stored = temporaryDBFactory.getDB(DbName.DELEGATE);
+        stored.put(Bytes.of("a"), Bytes.of("1"));
+        stored.put(Bytes.of("c"), Bytes.of("3"));
+        stored.put(Bytes.of("d"), Bytes.of("4"));
+
+        Db db = factory.getDB(DbName.DELEGATE);
+        db.put(Bytes.of("b"), Bytes.of("2"));
+        db.put(Bytes.of("c"), Bytes.of("5"));
+        db.delete(Bytes.of("d"));
+
+        List<String> list = new ArrayList<>();
+        ClosableIterator<Entry<byte[], byte[]>> itr = db.iterator();
+        while (itr.hasNext()) {
+            Entry<byte[], byte[]> e = itr.next();
+            list.add(Bytes.toString(e.getKey()) + Bytes.toString(e.getValue()));
+        }
+        itr.close();
+
+        assertEquals("[a1, b2, c5]", list.toString());
+    }
+
+    @Test
+    public void testRecover() {
+        EnumMap<DbName, List<Pair<byte[], byte[]>>> first = new EnumMap<>(DbName.class);
+        List<Pair<byte[], byte[]>> block = new ArrayList<>();
+        block.add(Pair.of(Bytes.of("k1"), Bytes.of("v1")));
+        first.put(DbName.BLOCK, block);
+        List<Pair<byte[], byte[]>> index = new ArrayList<>();
+        index.add(Pair.of(Bytes.of("k2"), null));
+        first.put(DbName.INDEX, index);
+
+        EnumMap<DbName, List<Pair<byte[], byte[]>>> second = new EnumMap<>(DbName.class);
+        block = new ArrayList<>();
+        block.add(Pair.of(Bytes.of("k1"), Bytes.of("v3")));
+        second.put(DbName.BLOCK, block);
+
+        // simulate a crash before the state writes of both commits are durable
+        temporaryDBFactory.getDB(DbName.INDEX).put(Bytes.of("k2"), Bytes.of("v2"));
+        temporaryDBFactory.getDB(DbName.INDEX).put(BatchDbFactory.journalKey(0), factory.encodeJournal(first));
+        temporaryDBFactory.getDB(DbName.INDEX).put(BatchDbFactory.journalKey(1), factory.encodeJournal(second));
+
+        // the journals are replayed in order
+        new BatchDbFactory(temporaryDBFactory);
+        assertArrayEquals(Bytes.of("v3"), temporaryDBFactory.getDB(DbName.BLOCK).get(Bytes.of("k1")));
+        assertNull(temporaryDBFactory.getDB(DbName.INDEX).get(Bytes.of("k2")));
+        assertNull(temporaryDBFactory.getDB(DbName.INDEX).get(BatchDbFactory.journalKey(0)));
+        assertNull(temporaryDBFactory.getDB(DbName.INDEX).get(BatchDbFactory.journalKey(1)));
+    }
+}
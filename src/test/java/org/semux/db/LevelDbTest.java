@@ -7,6 +7,7 @@
 package org.semux.db;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -19,6 +20,7 @@ import java.util.List;
 import java.util.Map.Entry;
 
 import org.apache.commons.lang3.tuple.Pair;
+import org.iq80.leveldb.CompressionType;
 import org.iq80.leveldb.DBException;
 import org.iq80.leveldb.Options;
 import org.junit.After;
@@ -53,6 +55,20 @@ public class LevelDbTest {
         db.recover(options);
     }
 
+    @Test
+    public void testCreateOptions() {
+        db.close();
+        db = new LevelDb(new File(Constants.DEFAULT_DATA_DIR, Constants.DATABASE_DIR + File.separator + "test"),
+                DbOptions.defaults(DbName.BLOCK).cacheSize(1024L * 1024L).verifyChecksums(false));
+
+        Options options = db.createOptions();
+        assertEquals(CompressionType.SNAPPY, options.compressionType());
+        assertEquals(64 * 1024, options.blockSize());
+        assertEquals(1024L * 1024L, options.cacheSize());
+        assertFalse(options.verifyChecksums());
+        assertTrue(options.paranoidChecks());
+    }
+
     @Test
     public void testGetAndPut() {
         try {
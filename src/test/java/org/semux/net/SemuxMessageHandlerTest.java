@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.net;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.semux.Network;
+import org.semux.config.Config;
+import org.semux.config.Constants;
+import org.semux.config.DevnetConfig;
+import org.semux.core.Transaction;
+import org.semux.core.TransactionType;
+import org.semux.crypto.Key;
+import org.semux.net.msg.Message;
+import org.semux.net.msg.p2p.PingMessage;
+import org.semux.net.msg.p2p.TransactionsMessage;
+import org.semux.util.Bytes;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class SemuxMessageHandlerTest {
+
+    private static final int FRAME_BODY_SIZE = 1024;
+
+    private Config config;
+
+    @Before
+    public void setUp() {
+        config = spy(new DevnetConfig(Constants.DEFAULT_DATA_DIR));
+        when(config.netMaxFrameBodySize()).thenReturn(FRAME_BODY_SIZE);
+    }
+
+    private EmbeddedChannel newChannel() {
+        return new EmbeddedChannel(new SemuxFrameHandler(config), new SemuxMessageHandler(config));
+    }
+
+    private List<ByteBuf> encode(Message msg) {
+        EmbeddedChannel channel = newChannel();
+        assertTrue(channel.writeOutbound(msg));
+
+        List<ByteBuf> bufs = new ArrayList<>();
+        ByteBuf buf;
+        while ((buf = channel.readOutbound()) != null) {
+            bufs.add(buf);
+        }
+        assertFalse(channel.finish());
+        return bufs;
+    }
+
+    private Message decode(List<ByteBuf> bufs) {
+        EmbeddedChannel channel = newChannel();
+        for (ByteBuf buf : bufs) {
+            channel.writeInbound(buf);
+        }
+        Message msg = channel.readInbound();
+        assertFalse(channel.finish());
+
+        // all the frames are released
+        for (ByteBuf buf : bufs) {
+            assertEquals(0, buf.refCnt());
+        }
+        return msg;
+    }
+
+    @Test
+    public void testSingleFrame() {
+        PingMessage msg = new PingMessage();
+
+        List<ByteBuf> bufs = encode(msg);
+        assertEquals(1, bufs.size());
+
+        Message received = decode(bufs);
+        assertTrue(received instanceof PingMessage);
+        assertArrayEquals(msg.getEncoded(), received.getEncoded());
+    }
+
+    @Test
+    public void testChunkedFrames() {
+        TransactionsMessage msg = new TransactionsMessage(createTransactions());
+
+        // random fields don't compress, so the packet spans several frames
+        List<ByteBuf> bufs = encode(msg);
+        assertTrue(bufs.size() > 1);
+
+        Message received = decode(bufs);
+        assertTrue(received instanceof TransactionsMessage);
+        assertArrayEquals(msg.getEncoded(), received.getEncoded());
+    }
+
+    @Test
+    public void testIncompletePacketsReleased() {
+        // the first frame of one packet more than kept
+        EmbeddedChannel sender = newChannel();
+        List<ByteBuf> firstFrames = new ArrayList<>();
+        for (int i = 0; i < 17; i++) {
+            assertTrue(sender.writeOutbound(new TransactionsMessage(createTransactions())));
+            List<ByteBuf> bufs = new ArrayList<>();
+            ByteBuf buf;
+            while ((buf = sender.readOutbound()) != null) {
+                bufs.add(buf);
+            }
+            assertTrue(bufs.size() > 1);
+            firstFrames.add(bufs.remove(0));
+            bufs.forEach(ByteBuf::release);
+        }
+        assertFalse(sender.finish());
+
+        EmbeddedChannel receiver = newChannel();
+        for (ByteBuf buf : firstFrames) {
+            receiver.writeInbound(buf);
+        }
+        assertTrue(receiver.inboundMessages().isEmpty());
+
+        // the oldest packet is released when evicted
+        assertEquals(0, firstFrames.get(0).refCnt());
+        assertTrue(firstFrames.get(1).refCnt() > 0);
+
+        // the others when the channel is closed
+        assertFalse(receiver.finish());
+        for (ByteBuf buf : firstFrames) {
+            assertEquals(0, buf.refCnt());
+        }
+    }
+
+    @Test
+    public void testInconsistentPacketSize() {
+        List<ByteBuf> bufs = encode(new TransactionsMessage(createTransactions()));
+        assertTrue(bufs.size() > 1);
+
+        // the second frame claims a larger packet than the first one
+        ByteBuf second = bufs.get(1);
+        second.setInt(second.readerIndex() + 8, Integer.MAX_VALUE);
+
+        EmbeddedChannel channel = newChannel();
+        channel.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                ctx.close();
+            }
+        });
+        channel.writeInbound(bufs.get(0));
+        assertTrue(channel.isOpen());
+        channel.writeInbound(second);
+        assertFalse(channel.isOpen());
+        assertTrue(channel.inboundMessages().isEmpty());
+
+        // the frames are released with the connection
+        assertEquals(0, bufs.get(0).refCnt());
+        assertEquals(0, second.refCnt());
+        bufs.subList(2, bufs.size()).forEach(ByteBuf::release);
+    }
+
+    private List<Transaction> createTransactions() {
+        Key key = new Key();
+        List<Transaction> txs = new ArrayList<>();
+        for (int nonce = 0; nonce < 64; nonce++) {
+            txs.add(new Transaction(Network.DEVNET, TransactionType.TRANSFER, Bytes.random(20), 2, 50_000_000L, nonce,
+                    System.currentTimeMillis(), Bytes.random(32)).sign(key));
+        }
+        return txs;
+    }
+}
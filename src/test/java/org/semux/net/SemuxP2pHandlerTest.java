@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.net;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+import org.semux.Kernel;
+import org.semux.core.Block;
+import org.semux.core.BlockHeader;
+import org.semux.core.Blockchain;
+import org.semux.crypto.Key;
+import org.semux.net.msg.MessageQueue;
+import org.semux.net.msg.ReasonCode;
+import org.semux.net.msg.consensus.BlockHeaderMessage;
+import org.semux.net.msg.consensus.BlockMessage;
+import org.semux.net.msg.consensus.GetBlockHeaderMessage;
+import org.semux.net.msg.consensus.GetBlockMessage;
+import org.semux.net.msg.consensus.GetBlocksMessage;
+import org.semux.util.Bytes;
+import org.semux.util.MerkleUtil;
+
+import io.netty.channel.ChannelHandlerContext;
+
+/**
+ * Tests the block requests when the block server rejects them.
+ */
+public class SemuxP2pHandlerTest {
+
+    private ExecutorService blockServer;
+
+    private Blockchain chain;
+    private MessageQueue msgQueue;
+    private SemuxP2pHandler handler;
+    private ChannelHandlerContext ctx = mock(ChannelHandlerContext.class);
+
+    @Before
+    public void setUp() {
+        blockServer = Whitebox.getInternalState(SemuxP2pHandler.class, "blockServer");
+        ExecutorService rejecting = mock(ExecutorService.class);
+        doThrow(new RejectedExecutionException()).when(rejecting).execute(any());
+        Whitebox.setInternalState(SemuxP2pHandler.class, "blockServer", rejecting);
+
+        chain = mock(Blockchain.class);
+        Kernel kernel = mock(Kernel.class);
+        when(kernel.getBlockchain()).thenReturn(chain);
+
+        msgQueue = mock(MessageQueue.class);
+        Channel channel = mock(Channel.class);
+        when(channel.getMessageQueue()).thenReturn(msgQueue);
+
+        handler = new SemuxP2pHandler(channel, kernel);
+        Whitebox.setInternalState(handler, "isHandshakeDone", true);
+    }
+
+    @After
+    public void tearDown() {
+        Whitebox.setInternalState(SemuxP2pHandler.class, "blockServer", blockServer);
+    }
+
+    private Block createBlock() {
+        Key key = new Key();
+        BlockHeader header = new BlockHeader(1, key.toAddress(), Bytes.random(32), System.currentTimeMillis(),
+                MerkleUtil.computeTransactionsRoot(Collections.emptyList()),
+                MerkleUtil.computeResultsRoot(Collections.emptyList()), Bytes.EMPTY_HASH, Bytes.EMPTY_BYTES);
+        return new Block(header, Collections.emptyList(), Collections.emptyList());
+    }
+
+    @Test
+    public void testRejectedGetBlockServedInline() throws InterruptedException {
+        when(chain.getBlockBytes(1)).thenReturn(createBlock().toBytes());
+
+        handler.channelRead0(ctx, new GetBlockMessage(1));
+
+        verify(msgQueue).sendMessage(any(BlockMessage.class));
+    }
+
+    @Test
+    public void testRejectedGetBlockHeaderServedInline() throws InterruptedException {
+        when(chain.getBlockHeader(1)).thenReturn(createBlock().getHeader());
+
+        handler.channelRead0(ctx, new GetBlockHeaderMessage(1));
+
+        verify(msgQueue).sendMessage(any(BlockHeaderMessage.class));
+    }
+
+    @Test
+    public void testMissingBlockDisconnects() throws InterruptedException {
+        handler.channelRead0(ctx, new GetBlockMessage(1));
+
+        verify(msgQueue, never()).sendMessage(any());
+        verify(msgQueue).disconnect(ReasonCode.BAD_PEER);
+    }
+
+    @Test
+    public void testRejectedGetBlocksDropped() throws InterruptedException {
+        when(chain.getBlockBytes(anyLong())).thenReturn(createBlock().toBytes());
+
+        handler.channelRead0(ctx, new GetBlocksMessage(1, 10));
+
+        verify(msgQueue, never()).sendMessage(any());
+        verify(msgQueue, never()).disconnect(any());
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.net;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.semux.KernelMock;
+import org.semux.config.Config;
+import org.semux.core.Transaction;
+import org.semux.core.TransactionType;
+import org.semux.core.Unit;
+import org.semux.crypto.Key;
+import org.semux.net.NodeManager.Node;
+import org.semux.rules.KernelRule;
+import org.semux.util.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Relays transactions through a network of three fully connected nodes, with
+ * and without {@link Capability#TX_INVENTORY}, and compares the traffic.
+ */
+public class TransactionRelayTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionRelayTest.class);
+
+    private static final int NUMBER_OF_TRANSACTIONS = 300;
+
+    @Rule
+    public KernelRule legacyRule1 = new KernelRule(51661, 51761);
+    @Rule
+    public KernelRule legacyRule2 = new KernelRule(51662, 51762);
+    @Rule
+    public KernelRule legacyRule3 = new KernelRule(51663, 51763);
+
+    @Rule
+    public KernelRule inventoryRule1 = new KernelRule(51664, 51764);
+    @Rule
+    public KernelRule inventoryRule2 = new KernelRule(51665, 51765);
+    @Rule
+    public KernelRule inventoryRule3 = new KernelRule(51666, 51766);
+
+    private List<PeerServerMock> servers = new ArrayList<>();
+
+    /**
+     * Traffic of one network.
+     */
+    private static class Traffic {
+        long messages;
+        long bytes;
+        long cpuTime;
+    }
+
+    @Test
+    public void testRelay() throws InterruptedException {
+        List<KernelMock> legacy = Arrays.asList(legacyRule1.getKernel(), legacyRule2.getKernel(),
+                legacyRule3.getKernel());
+        for (KernelMock kernel : legacy) {
+            when(kernel.getConfig().capabilitySet())
+                    .thenReturn(CapabilitySet.of(Capability.SEM_TESTNET, Capability.BATCH_SYNC));
+        }
+        Traffic t1 = relay(legacy);
+
+        List<KernelMock> inventory = Arrays.asList(inventoryRule1.getKernel(), inventoryRule2.getKernel(),
+                inventoryRule3.getKernel());
+        Traffic t2 = relay(inventory);
+
+        logger.info("Legacy relay: messages = {}, bytes = {}, cpu = {} ms", t1.messages, t1.bytes,
+                t1.cpuTime / 1_000_000);
+        logger.info("Inventory relay: messages = {}, bytes = {}, cpu = {} ms", t2.messages, t2.bytes,
+                t2.cpuTime / 1_000_000);
+        assertTrue(t2.bytes < t1.bytes);
+        assertTrue(t2.messages < t1.messages);
+    }
+
+    /**
+     * Starts a fully connected network, injects transactions into the first node,
+     * and waits until all the nodes have them.
+     */
+    private Traffic relay(List<KernelMock> kernels) throws InterruptedException {
+        Key sender = new Key();
+        for (KernelMock kernel : kernels) {
+            PeerServerMock server = new PeerServerMock(kernel);
+            server.start();
+            servers.add(server);
+
+            kernel.getBlockchain().getAccountState().adjustAvailable(sender.toAddress(), 1000 * Unit.SEM);
+            kernel.getPendingManager().start();
+        }
+
+        for (int i = 0; i < kernels.size(); i++) {
+            for (int j = i + 1; j < kernels.size(); j++) {
+                Config config = kernels.get(j).getConfig();
+                Node node = new Node(config.p2pListenIp(), config.p2pListenPort());
+                kernels.get(i).getClient().connect(node, new SemuxChannelInitializer(kernels.get(i), node)).sync();
+            }
+        }
+        await().atMost(20, TimeUnit.SECONDS).until(() -> kernels.stream()
+                .allMatch(k -> k.getChannelManager().getActiveChannels().size() == kernels.size() - 1));
+
+        long cpu1 = getProcessCpuTime();
+        KernelMock origin = kernels.get(0);
+        for (int nonce = 0; nonce < NUMBER_OF_TRANSACTIONS; nonce++) {
+            Transaction tx = new Transaction(origin.getConfig().network(), TransactionType.TRANSFER,
+                    Bytes.random(20), 1, origin.getConfig().minTransactionFee(), nonce, System.currentTimeMillis(),
+                    Bytes.EMPTY_BYTES).sign(sender);
+            origin.getPendingManager().addTransaction(tx);
+        }
+        await().atMost(60, TimeUnit.SECONDS).until(() -> kernels.stream()
+                .allMatch(k -> k.getPendingManager().getPendingTransactions().size() == NUMBER_OF_TRANSACTIONS));
+        long cpu2 = getProcessCpuTime();
+
+        Traffic traffic = new Traffic();
+        for (KernelMock kernel : kernels) {
+            for (Channel c : kernel.getChannelManager().getActiveChannels()) {
+                traffic.messages += c.getMessageQueue().getMessagesSent();
+                traffic.bytes += c.getMessageQueue().getBytesSent();
+            }
+        }
+        traffic.cpuTime = cpu2 - cpu1;
+        return traffic;
+    }
+
+    private static long getProcessCpuTime() {
+        java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return 0;
+    }
+
+    @After
+    public void tearDown() {
+        for (PeerServerMock server : servers) {
+            server.getKernel().getPendingManager().stop();
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.net.msg.consensus;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+
+import org.junit.Test;
+import org.semux.Network;
+import org.semux.core.Block;
+import org.semux.core.BlockHeader;
+import org.semux.core.Transaction;
+import org.semux.core.TransactionResult;
+import org.semux.core.TransactionType;
+import org.semux.crypto.Key;
+import org.semux.util.Bytes;
+import org.semux.util.MerkleUtil;
+
+public class BlockMessageTest {
+
+    private Block createBlock() {
+        Key key = new Key();
+        Transaction tx = new Transaction(Network.DEVNET, TransactionType.TRANSFER, Bytes.random(20), 1, 1, 0,
+                System.currentTimeMillis(), Bytes.EMPTY_BYTES).sign(key);
+        TransactionResult res = new TransactionResult(true);
+
+        BlockHeader header = new BlockHeader(1, key.toAddress(), Bytes.random(32), System.currentTimeMillis(),
+                MerkleUtil.computeTransactionsRoot(Collections.singletonList(tx)),
+                MerkleUtil.computeResultsRoot(Collections.singletonList(res)), Bytes.EMPTY_HASH, Bytes.EMPTY_BYTES);
+        return new Block(header, Collections.singletonList(tx), Collections.singletonList(res));
+    }
+
+    @Test
+    public void testSerialization() {
+        Block block = createBlock();
+
+        BlockMessage m = new BlockMessage(block);
+        BlockMessage m2 = new BlockMessage(m.getEncoded());
+
+        assertArrayEquals(block.getHash(), m2.getBlock().getHash());
+        assertEquals(1, m2.getBlock().getTransactions().size());
+    }
+
+    @Test
+    public void testFromBlockBytes() {
+        Block block = createBlock();
+
+        BlockMessage m = BlockMessage.fromBlockBytes(block.toBytes());
+        assertArrayEquals(new BlockMessage(block).getEncoded(), m.getEncoded());
+        assertArrayEquals(block.getHash(), m.getBlock().getHash());
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.net.msg.consensus;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.semux.Network;
+import org.semux.consensus.Proof;
+import org.semux.consensus.Proposal;
+import org.semux.core.BlockHeader;
+import org.semux.core.Transaction;
+import org.semux.core.TransactionType;
+import org.semux.crypto.Key;
+import org.semux.util.Bytes;
+import org.semux.util.MerkleUtil;
+import org.semux.util.SimpleEncoder;
+import org.semux.util.exception.SimpleCodecException;
+
+public class CompactProposalMessageTest {
+
+    @Test
+    public void testSerialization() {
+        Key key = new Key();
+        List<Transaction> txs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            txs.add(new Transaction(Network.DEVNET, TransactionType.TRANSFER, Bytes.random(20), 1, 1, i,
+                    System.currentTimeMillis(), Bytes.EMPTY_BYTES).sign(key));
+        }
+        BlockHeader header = new BlockHeader(1, key.toAddress(), Bytes.random(32), System.currentTimeMillis(),
+                MerkleUtil.computeTransactionsRoot(txs), MerkleUtil.computeResultsRoot(Collections.emptyList()),
+                Bytes.EMPTY_HASH, Bytes.EMPTY_BYTES);
+        Proposal proposal = new Proposal(new Proof(1, 1, Collections.emptyList()), header, txs).sign(key);
+
+        CompactProposalMessage msg = new CompactProposalMessage(proposal);
+        CompactProposalMessage msg2 = new CompactProposalMessage(msg.getEncoded());
+
+        assertTrue(msg2.validate());
+        assertEquals(1, msg2.getHeight());
+        assertEquals(1, msg2.getView());
+        assertArrayEquals(header.getHash(), msg2.getBlockHeader().getHash());
+        assertEquals(proposal.getSignature(), msg2.getSignature());
+        assertEquals(3, msg2.getShortIds().length);
+        for (int i = 0; i < txs.size(); i++) {
+            assertEquals(CompactProposalMessage.shortId(txs.get(i).getHash()), msg2.getShortIds()[i]);
+        }
+
+        // the proposal rebuilt from the transactions verifies
+        Proposal p = new Proposal(msg2.getProof(), msg2.getBlockHeader(), txs, msg2.getSignature());
+        assertTrue(p.validate());
+    }
+
+    @Test(expected = SimpleCodecException.class)
+    public void testForgedCount() {
+        Key key = new Key();
+        BlockHeader header = new BlockHeader(1, key.toAddress(), Bytes.random(32), System.currentTimeMillis(),
+                Bytes.EMPTY_HASH, Bytes.EMPTY_HASH, Bytes.EMPTY_HASH, Bytes.EMPTY_BYTES);
+
+        SimpleEncoder enc = new SimpleEncoder();
+        enc.writeBytes(new Proof(1, 0).toBytes());
+        enc.writeBytes(header.toBytes());
+        enc.writeInt(0x7FFFFFF7);
+        enc.writeLong(0);
+
+        new CompactProposalMessage(enc.toBytes());
+    }
+}
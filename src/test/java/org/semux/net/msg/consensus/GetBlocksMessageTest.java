@@ -0,0 +1,29 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.net.msg.consensus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+import org.semux.net.msg.MessageCode;
+
+public class GetBlocksMessageTest {
+
+    @Test
+    public void testSerialization() {
+        long from = 1;
+        long to = 100;
+
+        GetBlocksMessage m = new GetBlocksMessage(from, to);
+        assertThat(m.getCode()).isEqualTo(MessageCode.GET_BLOCKS);
+        assertThat(m.getResponseMessageClass()).isNull();
+
+        GetBlocksMessage m2 = new GetBlocksMessage(m.getEncoded());
+        assertThat(m2.getFrom()).isEqualTo(from);
+        assertThat(m2.getTo()).isEqualTo(to);
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.net.msg.consensus;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.semux.net.msg.MessageCode;
+import org.semux.net.msg.MessageException;
+import org.semux.net.msg.MessageFactory;
+import org.semux.util.SimpleEncoder;
+import org.semux.util.exception.SimpleCodecException;
+
+public class GetProposalTransactionsMessageTest {
+
+    @Test
+    public void testSerialization() {
+        int[] indexes = { 0, 5, 1023 };
+
+        GetProposalTransactionsMessage msg = new GetProposalTransactionsMessage(10, 2, indexes);
+        GetProposalTransactionsMessage msg2 = new GetProposalTransactionsMessage(msg.getEncoded());
+
+        assertEquals(10, msg2.getHeight());
+        assertEquals(2, msg2.getView());
+        assertArrayEquals(indexes, msg2.getIndexes());
+    }
+
+    @Test(expected = SimpleCodecException.class)
+    public void testForgedCount() {
+        SimpleEncoder enc = new SimpleEncoder();
+        enc.writeLong(10);
+        enc.writeInt(2);
+        enc.writeInt(0x7FFFFFF7);
+
+        new GetProposalTransactionsMessage(enc.toBytes());
+    }
+
+    @Test(expected = MessageException.class)
+    public void testForgedCountFromFactory() throws MessageException {
+        SimpleEncoder enc = new SimpleEncoder();
+        enc.writeLong(10);
+        enc.writeInt(2);
+        enc.writeInt(0x7FFFFFF7);
+
+        new MessageFactory().create(MessageCode.BFT_GET_PROPOSAL_TXS.toByte(), enc.toBytes());
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.net.msg.consensus;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.semux.Network;
+import org.semux.core.Transaction;
+import org.semux.core.TransactionType;
+import org.semux.crypto.Key;
+import org.semux.util.Bytes;
+
+public class ProposalTransactionsMessageTest {
+
+    @Test
+    public void testSerialization() {
+        Key key = new Key();
+        List<Transaction> txs = Arrays.asList(
+                new Transaction(Network.DEVNET, TransactionType.TRANSFER, Bytes.random(20), 1, 1, 0,
+                        System.currentTimeMillis(), Bytes.EMPTY_BYTES).sign(key),
+                new Transaction(Network.DEVNET, TransactionType.TRANSFER, Bytes.random(20), 2, 1, 1,
+                        System.currentTimeMillis(), Bytes.EMPTY_BYTES).sign(key));
+
+        ProposalTransactionsMessage msg = new ProposalTransactionsMessage(10, 2, txs);
+        ProposalTransactionsMessage msg2 = new ProposalTransactionsMessage(msg.getEncoded());
+
+        assertEquals(10, msg2.getHeight());
+        assertEquals(2, msg2.getView());
+        assertEquals(2, msg2.getTransactions().size());
+        for (int i = 0; i < txs.size(); i++) {
+            assertArrayEquals(txs.get(i).toBytes(), msg2.getTransactions().get(i).toBytes());
+        }
+    }
+}
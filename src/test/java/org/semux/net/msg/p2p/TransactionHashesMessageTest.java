@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.net.msg.p2p;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.semux.util.Bytes;
+
+public class TransactionHashesMessageTest {
+
+    @Test
+    public void testSerialization() {
+        List<byte[]> hashes = Arrays.asList(Bytes.random(32), Bytes.random(32));
+
+        TransactionHashesMessage msg = new TransactionHashesMessage(hashes);
+        TransactionHashesMessage msg2 = new TransactionHashesMessage(msg.getEncoded());
+        assertTrue(msg2.validate());
+        assertEquals(2, msg2.getHashes().size());
+        assertArrayEquals(hashes.get(1), msg2.getHashes().get(1));
+
+        GetTransactionsMessage req = new GetTransactionsMessage(hashes);
+        GetTransactionsMessage req2 = new GetTransactionsMessage(req.getEncoded());
+        assertTrue(req2.validate());
+        assertArrayEquals(hashes.get(0), req2.getHashes().get(0));
+    }
+
+    @Test
+    public void testValidate() {
+        List<byte[]> hashes = new ArrayList<>();
+        for (int i = 0; i <= TransactionHashesMessage.MAX_HASHES; i++) {
+            hashes.add(Bytes.random(32));
+        }
+        assertFalse(new TransactionHashesMessage(hashes).validate());
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.net.msg.p2p;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.semux.Network;
+import org.semux.core.Transaction;
+import org.semux.core.TransactionType;
+import org.semux.crypto.Key;
+import org.semux.util.Bytes;
+
+public class TransactionsMessageTest {
+    @Test
+    public void testSerialization() {
+        Key key = new Key();
+        List<Transaction> txs = new ArrayList<>();
+        for (int nonce = 0; nonce < 3; nonce++) {
+            txs.add(new Transaction(Network.DEVNET, TransactionType.TRANSFER, Bytes.random(20), 2, 50_000_000L, nonce,
+                    System.currentTimeMillis(), Bytes.EMPTY_BYTES).sign(key));
+        }
+
+        TransactionsMessage msg = new TransactionsMessage(txs);
+        TransactionsMessage msg2 = new TransactionsMessage(msg.getEncoded());
+        assertTrue(msg2.validate());
+        assertThat(msg2.getTransactions().size(), equalTo(3));
+        assertThat(msg2.getTransactions().get(2).getHash(), equalTo(txs.get(2).getHash()));
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) 2017-2018 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BloomFilterTest {
+
+    @Test
+    public void testMightContain() {
+        BloomFilter filter = new BloomFilter(1000, 0.001);
+
+        List<byte[]> keys = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            byte[] key = Bytes.random(32);
+            keys.add(key);
+            filter.add(key);
+        }
+        for (byte[] key : keys) {
+            assertTrue(filter.mightContain(key));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain(Bytes.random(32))) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 50);
+
+        filter.clear();
+        assertFalse(filter.mightContain(keys.get(0)));
+    }
+
+    @Test
+    public void testRolling() {
+        BloomFilter filter = new BloomFilter(100, 0.001);
+
+        byte[] first = Bytes.random(32);
+        filter.add(first);
+        for (int i = 0; i < 199; i++) {
+            filter.add(Bytes.random(32));
+        }
+        assertTrue(filter.mightContain(first));
+
+        // forgotten with the second generation
+        for (int i = 0; i < 100; i++) {
+            filter.add(Bytes.random(32));
+        }
+        assertFalse(filter.mightContain(first));
+    }
+}
@@ -7,8 +7,10 @@
 package org.semux.util;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -75,4 +77,71 @@ public class MerkleTreeTest {
         assertArrayEquals(hash33, proof.get(1));
         assertArrayEquals(hash3, proof.get(2));
     }
+
+    @Test
+    public void testFourElements() {
+        byte[] hash4 = Hex.decode0x("0x4444444444444444444444444444444444444444444444444444444444444444");
+        byte[] hash12 = Hash.h256(hash1, hash2);
+        byte[] hash34 = Hash.h256(hash3, hash4);
+        byte[] hash1234 = Hash.h256(hash12, hash34);
+
+        MerkleTree tree = new MerkleTree(Arrays.asList(hash1, hash2, hash3, hash4));
+        assertArrayEquals(hash1234, tree.getRootHash());
+
+        List<byte[]> proof = tree.getProof(1);
+        assertTrue(proof.size() == 3);
+        assertArrayEquals(hash1234, proof.get(0));
+        assertArrayEquals(hash12, proof.get(1));
+        assertArrayEquals(hash2, proof.get(2));
+
+        proof = tree.getProof(2);
+        assertArrayEquals(hash34, proof.get(1));
+        assertArrayEquals(hash3, proof.get(2));
+    }
+
+    @Test
+    public void testComputeRoot() {
+        // sizes around the parallel threshold included
+        for (int size : new int[] { 0, 1, 2, 3, 5, 8, 13, 1023, 1024, 1025, 3001 }) {
+            List<byte[]> hashes = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                hashes.add(Hash.h256(Bytes.of(i)));
+            }
+            MerkleTree tree = new MerkleTree(hashes);
+            byte[] root = computeRootNaive(hashes);
+
+            assertEquals(size, tree.size());
+            assertArrayEquals(root, tree.getRootHash());
+            assertArrayEquals(root, MerkleTree.computeRoot(Bytes.merge(hashes)));
+            for (int i = 0; i < size; i++) {
+                List<byte[]> proof = tree.getProof(i);
+                assertArrayEquals(root, proof.get(0));
+                assertArrayEquals(hashes.get(i), proof.get(proof.size() - 1));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLeaves() {
+        MerkleTree.computeRoot(new byte[33]);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testProofOutOfRange() {
+        new MerkleTree(Arrays.asList(hash1, hash2, hash3)).getProof(3);
+    }
+
+    private byte[] computeRootNaive(List<byte[]> hashes) {
+        if (hashes.isEmpty()) {
+            return new byte[32];
+        }
+        while (hashes.size() > 1) {
+            List<byte[]> next = new ArrayList<>();
+            for (int i = 0; i < hashes.size(); i += 2) {
+                next.add(i + 1 < hashes.size() ? Hash.h256(hashes.get(i), hashes.get(i + 1)) : hashes.get(i));
+            }
+            hashes = next;
+        }
+        return hashes.get(0);
+    }
 }
@@ -8,9 +8,13 @@ package org.semux.util;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
 
 import org.junit.Test;
 import org.semux.crypto.Hex;
+import org.semux.util.exception.SimpleCodecException;
 
 public class SimpleDecoderTest {
 
@@ -79,4 +83,59 @@ public class SimpleDecoderTest {
         }
         assertEquals(bytes.length, dec.getReadIndex());
     }
+
+    @Test
+    public void testReadSlice() {
+        byte[] bytes1 = Bytes.random(32);
+        byte[] bytes2 = Bytes.random(200);
+
+        SimpleEncoder enc = new SimpleEncoder();
+        enc.writeBytes(bytes1);
+        enc.writeBytes(bytes2);
+        enc.writeInt(7);
+        byte[] encoded = enc.toBytes();
+
+        SimpleDecoder dec = new SimpleDecoder(encoded);
+        ByteBuffer slice1 = dec.readSlice();
+        ByteBuffer slice2 = dec.readSlice();
+        assertEquals(7, dec.readInt());
+
+        // the slices are views of the input
+        assertEquals(ByteBuffer.wrap(bytes1), slice1);
+        assertEquals(ByteBuffer.wrap(bytes2), slice2);
+        assertSame(encoded, slice2.array());
+
+        // and can be decoded in place
+        dec = new SimpleDecoder(ByteBuffer.wrap(encoded, 33, encoded.length - 33).slice());
+        assertArrayEquals(bytes2, dec.readBytes());
+        assertEquals(7, dec.readInt());
+    }
+
+    @Test
+    public void testReadLength() {
+        SimpleEncoder enc = new SimpleEncoder();
+        enc.writeInt(2);
+        enc.writeLong(1);
+        enc.writeLong(2);
+
+        assertEquals(2, new SimpleDecoder(enc.toBytes()).readLength(8));
+    }
+
+    @Test(expected = SimpleCodecException.class)
+    public void testReadLengthExceedingInput() {
+        SimpleEncoder enc = new SimpleEncoder();
+        enc.writeInt(3);
+        enc.writeLong(1);
+        enc.writeLong(2);
+
+        new SimpleDecoder(enc.toBytes()).readLength(8);
+    }
+
+    @Test(expected = SimpleCodecException.class)
+    public void testReadNegativeLength() {
+        SimpleEncoder enc = new SimpleEncoder();
+        enc.writeInt(-1);
+
+        new SimpleDecoder(enc.toBytes()).readLength(4);
+    }
 }
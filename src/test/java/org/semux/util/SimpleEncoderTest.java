@@ -7,8 +7,14 @@
 package org.semux.util;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 
+import java.util.Arrays;
+
 import org.junit.Test;
 
 public class SimpleEncoderTest {
@@ -22,4 +28,49 @@ public class SimpleEncoderTest {
 
         assertThat(enc.toBytes(), equalTo(Bytes.merge(append, Bytes.of((byte) 1), Bytes.of("s"))));
     }
+
+    @Test
+    public void testSizeHint() {
+        byte[] bytes = Bytes.random(200);
+
+        SimpleEncoder enc = new SimpleEncoder(SimpleEncoder.sizeOfBytes(bytes) + 8);
+        enc.writeBytes(bytes);
+        enc.writeLong(1L);
+
+        // exactly sized, the buffer is returned as is
+        byte[] encoded = enc.toBytes();
+        assertSame(encoded, enc.toBytes());
+        assertEquals(2 + 200 + 8, encoded.length);
+
+        // writing more grows into a new array, and leaves the result untouched
+        enc.writeInt(-1);
+        byte[] encoded2 = enc.toBytes();
+        assertNotSame(encoded, encoded2);
+        assertArrayEquals(encoded, Arrays.copyOf(encoded2, encoded.length));
+        assertEquals(2 + 200 + 8 + 4, encoded2.length);
+    }
+
+    @Test
+    public void testGrow() {
+        SimpleEncoder enc = new SimpleEncoder(1);
+        for (int i = 0; i < 1000; i++) {
+            enc.writeInt(i);
+        }
+        assertEquals(4000, enc.getWriteIndex());
+
+        SimpleDecoder dec = new SimpleDecoder(enc.toBytes());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, dec.readInt());
+        }
+    }
+
+    @Test
+    public void testSizeOfSize() {
+        int[] sizes = { 0x00, 0x7F, 0x80, 0x3FFF, 0x4000, 0x1FFFFF, 0x200000, 0x0fffffff };
+        for (int size : sizes) {
+            SimpleEncoder enc = new SimpleEncoder();
+            enc.writeSize(size);
+            assertEquals(enc.getWriteIndex(), SimpleEncoder.sizeOfSize(size));
+        }
+    }
 }